@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) Huawei Technologies Co., Ltd. 2012-2022. All rights reserved.
+ */
+
+package org.opengauss.monitor.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 指标采集并发配置
+ *
+ * @author liu
+ * @since 2022-10-01
+ */
+@Component
+@ConfigurationProperties(prefix = "collect")
+public class CollectConfig {
+    private static int maxInflight = 32;
+
+    private static int instanceInflight = 2;
+
+    private static int queueCapacity = 1000;
+
+    private static int breakerFailures = 3;
+
+    private static long breakerOpenMillis = 30000L;
+
+    private static int queryTimeout = 30;
+
+    private static boolean isBatch = false;
+
+    private static long batchWindow = 50L;
+
+    private static int staleIntervals = 3;
+
+    private static long staleDefaultMillis = 300000L;
+
+    private static long rateIdleMillis = 3600000L;
+
+    private static boolean isDedup = true;
+
+    private static long dedupWindow = 1000L;
+
+    private static int sinkQueueCapacity = 1000;
+
+    private static int resultCacheRows = 100000;
+
+    public static int getMaxInflight() {
+        return maxInflight;
+    }
+
+    public void setMaxInflight(int maxInflight) {
+        CollectConfig.maxInflight = maxInflight;
+    }
+
+    public static int getInstanceInflight() {
+        return instanceInflight;
+    }
+
+    public void setInstanceInflight(int instanceInflight) {
+        CollectConfig.instanceInflight = instanceInflight;
+    }
+
+    public static int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public void setQueueCapacity(int queueCapacity) {
+        CollectConfig.queueCapacity = queueCapacity;
+    }
+
+    public static int getBreakerFailures() {
+        return breakerFailures;
+    }
+
+    public void setBreakerFailures(int breakerFailures) {
+        CollectConfig.breakerFailures = breakerFailures;
+    }
+
+    public static long getBreakerOpenMillis() {
+        return breakerOpenMillis;
+    }
+
+    public void setBreakerOpenMillis(long breakerOpenMillis) {
+        CollectConfig.breakerOpenMillis = breakerOpenMillis;
+    }
+
+    public static int getQueryTimeout() {
+        return queryTimeout;
+    }
+
+    public void setQueryTimeout(int queryTimeout) {
+        CollectConfig.queryTimeout = queryTimeout;
+    }
+
+    public static boolean isBatch() {
+        return isBatch;
+    }
+
+    public void setBatch(boolean isBatch) {
+        CollectConfig.isBatch = isBatch;
+    }
+
+    public static long getBatchWindow() {
+        return batchWindow;
+    }
+
+    public void setBatchWindow(long batchWindow) {
+        CollectConfig.batchWindow = batchWindow;
+    }
+
+    public static int getStaleIntervals() {
+        return staleIntervals;
+    }
+
+    public void setStaleIntervals(int staleIntervals) {
+        CollectConfig.staleIntervals = staleIntervals;
+    }
+
+    public static long getStaleDefaultMillis() {
+        return staleDefaultMillis;
+    }
+
+    public void setStaleDefaultMillis(long staleDefaultMillis) {
+        CollectConfig.staleDefaultMillis = staleDefaultMillis;
+    }
+
+    public static long getRateIdleMillis() {
+        return rateIdleMillis;
+    }
+
+    public void setRateIdleMillis(long rateIdleMillis) {
+        CollectConfig.rateIdleMillis = rateIdleMillis;
+    }
+
+    public static boolean isDedup() {
+        return isDedup;
+    }
+
+    public void setDedup(boolean isDedup) {
+        CollectConfig.isDedup = isDedup;
+    }
+
+    public static long getDedupWindow() {
+        return dedupWindow;
+    }
+
+    public void setDedupWindow(long dedupWindow) {
+        CollectConfig.dedupWindow = dedupWindow;
+    }
+
+    public static int getSinkQueueCapacity() {
+        return sinkQueueCapacity;
+    }
+
+    public void setSinkQueueCapacity(int sinkQueueCapacity) {
+        CollectConfig.sinkQueueCapacity = sinkQueueCapacity;
+    }
+
+    public static int getResultCacheRows() {
+        return resultCacheRows;
+    }
+
+    public void setResultCacheRows(int resultCacheRows) {
+        CollectConfig.resultCacheRows = resultCacheRows;
+    }
+}
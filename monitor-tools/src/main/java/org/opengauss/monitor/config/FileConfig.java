@@ -22,6 +22,10 @@ public class FileConfig {
 
     private static String taskConfig;
 
+    private static long flushDelay = 200L;
+
+    private static int compactSize = 1000;
+
     public static String getRelationConfig() {
         return relationConfig;
     }
@@ -45,4 +49,20 @@ public class FileConfig {
     public void setTaskConfig(String taskConfig) {
         FileConfig.taskConfig = taskConfig;
     }
+
+    public static long getFlushDelay() {
+        return flushDelay;
+    }
+
+    public void setFlushDelay(long flushDelay) {
+        FileConfig.flushDelay = flushDelay;
+    }
+
+    public static int getCompactSize() {
+        return compactSize;
+    }
+
+    public void setCompactSize(int compactSize) {
+        FileConfig.compactSize = compactSize;
+    }
 }
@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) Huawei Technologies Co., Ltd. 2012-2022. All rights reserved.
+ */
+
+package org.opengauss.monitor.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 本地历史数据配置
+ *
+ * @author liu
+ * @since 2022-10-01
+ */
+@Component
+@ConfigurationProperties(prefix = "history")
+public class HistoryConfig {
+    private static boolean enable = true;
+
+    private static int retentionHours = 6;
+
+    private static int rollupHours = 24;
+
+    private static int chunkPoints = 120;
+
+    private static long maxBytes = 67108864L;
+
+    public static boolean isEnable() {
+        return enable;
+    }
+
+    public void setEnable(boolean enable) {
+        HistoryConfig.enable = enable;
+    }
+
+    public static int getRetentionHours() {
+        return retentionHours;
+    }
+
+    public void setRetentionHours(int retentionHours) {
+        HistoryConfig.retentionHours = retentionHours;
+    }
+
+    public static int getRollupHours() {
+        return rollupHours;
+    }
+
+    public void setRollupHours(int rollupHours) {
+        HistoryConfig.rollupHours = rollupHours;
+    }
+
+    public static int getChunkPoints() {
+        return chunkPoints;
+    }
+
+    public void setChunkPoints(int chunkPoints) {
+        HistoryConfig.chunkPoints = chunkPoints;
+    }
+
+    public static long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public void setMaxBytes(long maxBytes) {
+        HistoryConfig.maxBytes = maxBytes;
+    }
+}
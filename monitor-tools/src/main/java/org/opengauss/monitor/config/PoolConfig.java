@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) Huawei Technologies Co., Ltd. 2012-2022. All rights reserved.
+ */
+
+package org.opengauss.monitor.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 实例连接池配置
+ *
+ * @author liu
+ * @since 2022-10-01
+ */
+@Component
+@ConfigurationProperties(prefix = "pool")
+public class PoolConfig {
+    private static int initialSize = 1;
+
+    private static int minIdle = 1;
+
+    private static int maxActive = 4;
+
+    private static long maxWait = 10000L;
+
+    private static long idleTimeout = 600000L;
+
+    public static int getInitialSize() {
+        return initialSize;
+    }
+
+    public void setInitialSize(int initialSize) {
+        PoolConfig.initialSize = initialSize;
+    }
+
+    public static int getMinIdle() {
+        return minIdle;
+    }
+
+    public void setMinIdle(int minIdle) {
+        PoolConfig.minIdle = minIdle;
+    }
+
+    public static int getMaxActive() {
+        return maxActive;
+    }
+
+    public void setMaxActive(int maxActive) {
+        PoolConfig.maxActive = maxActive;
+    }
+
+    public static long getMaxWait() {
+        return maxWait;
+    }
+
+    public void setMaxWait(long maxWait) {
+        PoolConfig.maxWait = maxWait;
+    }
+
+    public static long getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    public void setIdleTimeout(long idleTimeout) {
+        PoolConfig.idleTimeout = idleTimeout;
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) Huawei Technologies Co., Ltd. 2012-2022. All rights reserved.
+ */
+
+package org.opengauss.monitor.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * prometheus remote write推送配置
+ *
+ * @author liu
+ * @since 2022-10-01
+ */
+@Component
+@ConfigurationProperties(prefix = "remote")
+public class RemoteWriteConfig {
+    private static boolean enable = false;
+
+    private static String url = "";
+
+    private static int shards = 2;
+
+    private static int batchSize = 500;
+
+    private static long flushInterval = 1000L;
+
+    private static int queueCapacity = 16;
+
+    private static int timeout = 10000;
+
+    private static int maxRetries = 3;
+
+    private static long retryBackoff = 500L;
+
+    private static long maxBackoff = 30000L;
+
+    private static String spoolDir = "spool";
+
+    private static long spoolMaxBytes = 104857600L;
+
+    public static boolean isEnable() {
+        return enable;
+    }
+
+    public void setEnable(boolean enable) {
+        RemoteWriteConfig.enable = enable;
+    }
+
+    public static String getUrl() {
+        return url;
+    }
+
+    public void setUrl(String url) {
+        RemoteWriteConfig.url = url;
+    }
+
+    public static int getShards() {
+        return shards;
+    }
+
+    public void setShards(int shards) {
+        RemoteWriteConfig.shards = shards;
+    }
+
+    public static int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        RemoteWriteConfig.batchSize = batchSize;
+    }
+
+    public static long getFlushInterval() {
+        return flushInterval;
+    }
+
+    public void setFlushInterval(long flushInterval) {
+        RemoteWriteConfig.flushInterval = flushInterval;
+    }
+
+    public static int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public void setQueueCapacity(int queueCapacity) {
+        RemoteWriteConfig.queueCapacity = queueCapacity;
+    }
+
+    public static int getTimeout() {
+        return timeout;
+    }
+
+    public void setTimeout(int timeout) {
+        RemoteWriteConfig.timeout = timeout;
+    }
+
+    public static int getMaxRetries() {
+        return maxRetries;
+    }
+
+    public void setMaxRetries(int maxRetries) {
+        RemoteWriteConfig.maxRetries = maxRetries;
+    }
+
+    public static long getRetryBackoff() {
+        return retryBackoff;
+    }
+
+    public void setRetryBackoff(long retryBackoff) {
+        RemoteWriteConfig.retryBackoff = retryBackoff;
+    }
+
+    public static long getMaxBackoff() {
+        return maxBackoff;
+    }
+
+    public void setMaxBackoff(long maxBackoff) {
+        RemoteWriteConfig.maxBackoff = maxBackoff;
+    }
+
+    public static String getSpoolDir() {
+        return spoolDir;
+    }
+
+    public void setSpoolDir(String spoolDir) {
+        RemoteWriteConfig.spoolDir = spoolDir;
+    }
+
+    public static long getSpoolMaxBytes() {
+        return spoolMaxBytes;
+    }
+
+    public void setSpoolMaxBytes(long spoolMaxBytes) {
+        RemoteWriteConfig.spoolMaxBytes = spoolMaxBytes;
+    }
+}
@@ -108,4 +108,14 @@ public class DataController {
     public ResponseVO getNagiosConfig() {
         return monitorService.selectNagiosConfig();
     }
+
+    /**
+     * getPoolCount
+     *
+     * @return ResponseVO
+     */
+    @GetMapping("/pool/count")
+    public ResponseVO getPoolCount() {
+        return monitorService.getPoolCount();
+    }
 }
@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) Huawei Technologies Co., Ltd. 2012-2022. All rights reserved.
+ */
+
+package org.opengauss.monitor.controller;
+
+import org.opengauss.monitor.entity.ResponseVO;
+import org.opengauss.monitor.service.HistoryService;
+import java.util.HashMap;
+import java.util.Map;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * 本地历史数据查询,name/start/end/step以外的参数作为标签过滤
+ *
+ * @author liu
+ * @since 2022-10-01
+ */
+@RestController
+@RequestMapping("/history")
+public class HistoryController {
+    private static final String[] RESERVED = {"name", "start", "end", "step"};
+
+    @Autowired
+    private HistoryService historyService;
+
+    /**
+     * query
+     *
+     * @param name   指标名
+     * @param start  开始时间(毫秒),默认结束时间前1小时
+     * @param end    结束时间(毫秒),默认当前时间
+     * @param step   聚合步长(毫秒),默认1分钟
+     * @param params 全部请求参数
+     * @return ResponseVO
+     */
+    @GetMapping("/query")
+    public ResponseVO query(@RequestParam String name, @RequestParam(required = false) Long start,
+                            @RequestParam(required = false) Long end, @RequestParam(required = false) Long step,
+                            @RequestParam Map<String, String> params) {
+        Map<String, String> labels = new HashMap<>(params);
+        for (String key : RESERVED) {
+            labels.remove(key);
+        }
+        return historyService.query(name, labels, start, end, step);
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) Huawei Technologies Co., Ltd. 2012-2022. All rights reserved.
+ */
+
+package org.opengauss.monitor.controller;
+
+import org.opengauss.monitor.manager.ExpositionCache;
+import org.opengauss.monitor.manager.ExpositionFormat;
+import java.io.IOException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * prometheus抓取接口,替代actuator的prometheus端点,按Accept协商文本、OpenMetrics或protobuf格式,直接输出缓存的编码结果
+ *
+ * @author liu
+ * @since 2022-10-01
+ */
+@RestController
+public class MetricsController {
+    private static final String GZIP = "gzip";
+
+    @Autowired
+    private ExpositionCache expositionCache;
+
+    /**
+     * prometheus
+     *
+     * @param request  request
+     * @param response response
+     * @throws IOException IOException
+     */
+    @GetMapping("/prometheus")
+    public void prometheus(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        ExpositionFormat format = ExpositionFormat.negotiate(request.getHeader(HttpHeaders.ACCEPT));
+        String encoding = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+        boolean isGzip = encoding != null && encoding.contains(GZIP);
+        byte[] body = expositionCache.get(format, isGzip);
+        response.setContentType(format.getContentType());
+        if (isGzip) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, GZIP);
+        }
+        response.setContentLength(body.length);
+        response.getOutputStream().write(body);
+    }
+}
@@ -111,4 +111,19 @@ public class BasicEntity {
     public void setParamMap(Map<String, Object> paramMap) {
         this.paramMap = paramMap;
     }
+
+    /**
+     * 把公共字段复制到target,paramMap复制一份,不经过懒创建的getter
+     *
+     * @param target target
+     */
+    public void copyBasicTo(BasicEntity target) {
+        target.searchContent = searchContent;
+        target.createBy = createBy;
+        target.createTime = createTime;
+        target.updateBy = updateBy;
+        target.updateTime = updateTime;
+        target.description = description;
+        target.paramMap = paramMap == null ? null : new HashMap<>(paramMap);
+    }
 }
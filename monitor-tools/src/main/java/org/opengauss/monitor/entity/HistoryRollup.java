@@ -0,0 +1,38 @@
+/*
+ * Copyright (c) Huawei Technologies Co., Ltd. 2012-2022. All rights reserved.
+ */
+
+package org.opengauss.monitor.entity;
+
+import java.util.Map;
+import lombok.Data;
+
+/**
+ * 一个序列按step聚合后的历史数据,timestamps为各时间桶的开始时间
+ *
+ * @author liu
+ * @since 2022-10-01
+ */
+@Data
+public class HistoryRollup {
+    private String name;
+
+    private Map<String, String> labels;
+
+    /**
+     * 实际步长,超出细粒度数据保留时间时会大于请求的步长
+     */
+    private long step;
+
+    private long[] timestamps;
+
+    private double[] min;
+
+    private double[] max;
+
+    private double[] avg;
+
+    private double[] last;
+
+    private long[] count;
+}
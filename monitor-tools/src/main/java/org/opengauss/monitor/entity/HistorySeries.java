@@ -0,0 +1,25 @@
+/*
+ * Copyright (c) Huawei Technologies Co., Ltd. 2012-2022. All rights reserved.
+ */
+
+package org.opengauss.monitor.entity;
+
+import java.util.Map;
+import lombok.Data;
+
+/**
+ * 一个序列在查询时间范围内的历史数据
+ *
+ * @author liu
+ * @since 2022-10-01
+ */
+@Data
+public class HistorySeries {
+    private String name;
+
+    private Map<String, String> labels;
+
+    private long[] timestamps;
+
+    private double[] values;
+}
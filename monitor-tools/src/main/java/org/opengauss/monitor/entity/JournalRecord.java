@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) Huawei Technologies Co., Ltd. 2012-2022. All rights reserved.
+ */
+
+package org.opengauss.monitor.entity;
+
+import org.opengauss.monitor.quartz.domain.SysJob;
+import java.util.Date;
+import java.util.List;
+import lombok.Data;
+
+/**
+ * 变更日志记录,每条记录对应一次修改,重放时按顺序应用到快照上
+ *
+ * @author liu
+ * @since 2022-10-01
+ */
+@Data
+public class JournalRecord {
+    /**
+     * 修改任务状态
+     */
+    public static final String JOB_STATUS = "jobStatus";
+
+    /**
+     * 新增任务
+     */
+    public static final String JOB_INSERT = "jobInsert";
+
+    /**
+     * 删除任务
+     */
+    public static final String JOB_DELETE = "jobDelete";
+
+    /**
+     * 保存主机发布关系
+     */
+    public static final String RELATION_SAVE = "relationSave";
+
+    /**
+     * 删除主机发布关系
+     */
+    public static final String RELATION_DELETE = "relationDelete";
+
+    /**
+     * 从所有主机发布关系中移除任务
+     */
+    public static final String RELATION_REMOVE_JOB = "relationRemoveJob";
+
+    private String type;
+
+    private Long id;
+
+    private String status;
+
+    private List<Long> ids;
+
+    private Date time;
+
+    private SysJob sysJob;
+
+    private SysSourceTarget sysSourceTarget;
+}
@@ -1,32 +0,0 @@
-/*
- * Copyright (c) Huawei Technologies Co., Ltd. 2012-2022. All rights reserved.
- */
-
-package org.opengauss.monitor.entity;
-
-import io.prometheus.client.Gauge;
-import lombok.Data;
-
-/**
- * 功能描述
- *
- * @author liu
- * @since 2022-10-01
- */
-@Data
-public class Prom {
-    private Gauge gaugs;
-
-    private String gaugeName;
-
-    /**
-     * Prom
-     */
-    public Prom() {
-    }
-
-    public Prom(Gauge gaugs, String gaugeName) {
-        this.gaugs = gaugs;
-        this.gaugeName = gaugeName;
-    }
-}
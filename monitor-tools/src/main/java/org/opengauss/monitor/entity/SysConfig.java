@@ -60,6 +60,11 @@ public class SysConfig {
 
     private String dataBaseName;
 
+    /**
+     * 实例连接池最大连接数,为空时使用pool.maxActive
+     */
+    private Integer poolSize;
+
     /**
      * 监控平台
      */
@@ -0,0 +1,25 @@
+/*
+ * Copyright (c) Huawei Technologies Co., Ltd. 2012-2022. All rights reserved.
+ */
+
+package org.opengauss.monitor.exception;
+
+import org.springframework.dao.DataAccessException;
+
+/**
+ * 共用其他任务的查询失败,失败已由执行查询的任务计入熔断和超时统计
+ *
+ * @author liu
+ * @since 2022-10-01
+ */
+public class SharedQueryException extends DataAccessException {
+    /**
+     * SharedQueryException
+     *
+     * @param message message
+     * @param cause   执行查询的任务遇到的异常
+     */
+    public SharedQueryException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) Huawei Technologies Co., Ltd. 2012-2022. All rights reserved.
+ */
+
+package org.opengauss.monitor.manager;
+
+import org.opengauss.monitor.config.CollectConfig;
+import org.opengauss.monitor.entity.SysConfig;
+import io.prometheus.client.CollectorRegistry;
+import io.prometheus.client.Gauge;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.TransientDataAccessResourceException;
+import org.springframework.stereotype.Component;
+
+/**
+ * 实例熔断,按dataSourceId记录连接失败,熔断期间跳过采集,到期后放行一次探测
+ *
+ * @author liu
+ * @since 2022-10-01
+ */
+@Slf4j
+@Component
+public class CircuitBreakerManager {
+    private static final String INSTANCE_UP = "instance_up";
+
+    @Autowired
+    private CollectorRegistry collectorRegistry;
+
+    private final Map<Long, Breaker> breakers = new ConcurrentHashMap<>();
+
+    private Gauge instanceUp;
+
+    /**
+     * 注册instance_up指标
+     */
+    @PostConstruct
+    public void init() {
+        instanceUp = Gauge.build()
+                .name(INSTANCE_UP)
+                .help("Whether the monitored instance is reachable, 0 while the circuit breaker is open.")
+                .labelNames("instance")
+                .register(collectorRegistry);
+    }
+
+    /**
+     * 是否允许本次采集,熔断中返回false,熔断到期后只放行一个探测;
+     * 探测在queryTimeout(至少breakerOpenMillis)内没有记录结果时视为丢失,再放行下一个探测
+     *
+     * @param sysConfig    sysConfig
+     * @param queryTimeout 探测的查询超时时间(秒)
+     * @return boolean
+     */
+    public boolean allow(SysConfig sysConfig, int queryTimeout) {
+        Breaker breaker = breakers.computeIfAbsent(sysConfig.getDataSourceId(), key -> new Breaker());
+        long probeMillis = Math.max(TimeUnit.SECONDS.toMillis(queryTimeout), CollectConfig.getBreakerOpenMillis());
+        return breaker.allow(System.currentTimeMillis(), probeMillis);
+    }
+
+    /**
+     * 采集成功,关闭熔断
+     *
+     * @param sysConfig sysConfig
+     */
+    public void success(SysConfig sysConfig) {
+        Breaker breaker = breakers.computeIfAbsent(sysConfig.getDataSourceId(), key -> new Breaker());
+        if (breaker.success()) {
+            log.info("circuit breaker closed-->{}", sysConfig.getConnectName());
+        }
+        instanceUp.labels(sysConfig.getConnectName()).set(1);
+    }
+
+    /**
+     * 采集失败,连接类异常计入熔断,sql本身的错误说明实例可达
+     *
+     * @param sysConfig sysConfig
+     * @param exception exception
+     */
+    public void failure(SysConfig sysConfig, DataAccessException exception) {
+        if (!isUnreachable(exception)) {
+            success(sysConfig);
+            return;
+        }
+        Breaker breaker = breakers.computeIfAbsent(sysConfig.getDataSourceId(), key -> new Breaker());
+        if (breaker.failure(System.currentTimeMillis())) {
+            log.warn("circuit breaker open-->{}, {}", sysConfig.getConnectName(), exception.getMessage());
+        }
+        instanceUp.labels(sysConfig.getConnectName()).set(0);
+    }
+
+    /**
+     * 实例删除或修改时清除熔断状态
+     *
+     * @param sysConfig sysConfig
+     */
+    public void remove(SysConfig sysConfig) {
+        breakers.remove(sysConfig.getDataSourceId());
+        instanceUp.remove(sysConfig.getConnectName());
+    }
+
+    /**
+     * 是否为实例不可达类异常;查询超时说明实例可达,只计入该任务的query_timeouts
+     *
+     * @param exception exception
+     * @return boolean
+     */
+    public static boolean isUnreachable(DataAccessException exception) {
+        if (CollectManager.isTimeout(exception)) {
+            // 57014会被转换为DataAccessResourceFailureException,需先排除
+            return false;
+        }
+        return exception instanceof DataAccessResourceFailureException
+                || exception instanceof TransientDataAccessResourceException;
+    }
+
+    /**
+     * 单个实例的熔断状态
+     */
+    private static final class Breaker {
+        private int failures;
+
+        private long openUntil;
+
+        private boolean isOpen;
+
+        private boolean isProbing;
+
+        private long probeUntil;
+
+        synchronized boolean allow(long now, long probeMillis) {
+            if (!isOpen) {
+                return true;
+            }
+            if (now < openUntil || (isProbing && now < probeUntil)) {
+                return false;
+            }
+            // 半开:放行一次探测,探测因非数据库异常等原因没有调用success/failure时,到期后重新放行
+            isProbing = true;
+            probeUntil = now + probeMillis;
+            return true;
+        }
+
+        /**
+         * 成功
+         *
+         * @return 是否由熔断恢复
+         */
+        synchronized boolean success() {
+            boolean wasOpen = isOpen;
+            failures = 0;
+            isOpen = false;
+            isProbing = false;
+            return wasOpen;
+        }
+
+        /**
+         * 失败
+         *
+         * @param now now
+         * @return 是否本次进入熔断
+         */
+        synchronized boolean failure(long now) {
+            failures++;
+            if (isProbing || failures >= CollectConfig.getBreakerFailures()) {
+                boolean wasOpen = isOpen;
+                isOpen = true;
+                isProbing = false;
+                openUntil = now + CollectConfig.getBreakerOpenMillis();
+                return !wasOpen;
+            }
+            return false;
+        }
+    }
+}
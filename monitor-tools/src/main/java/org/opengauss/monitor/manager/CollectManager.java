@@ -0,0 +1,240 @@
+/*
+ * Copyright (c) Huawei Technologies Co., Ltd. 2012-2022. All rights reserved.
+ */
+
+package org.opengauss.monitor.manager;
+
+import org.opengauss.monitor.config.CollectConfig;
+import org.opengauss.monitor.util.MonitorThreads;
+import io.prometheus.client.CollectorRegistry;
+import io.prometheus.client.Counter;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import javax.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.stereotype.Component;
+
+/**
+ * 实例采集线程池,每个实例独立限制在途查询数,慢实例不影响其他实例
+ *
+ * @author liu
+ * @since 2022-10-01
+ */
+@Slf4j
+@Component
+public class CollectManager {
+    private static final long KEEP_ALIVE_SECONDS = 60L;
+
+    private static final String QUERY_TIMEOUTS = "query_timeouts";
+
+    private static final String QUERY_CANCELED = "57014";
+
+    /**
+     * 保证collect配置先于线程池创建完成绑定
+     */
+    @Autowired
+    private CollectConfig collectConfig;
+
+    @Autowired
+    private CollectorRegistry collectorRegistry;
+
+    private final Map<Long, Semaphore> bulkheads = new ConcurrentHashMap<>();
+
+    /**
+     * (jobId, 实例id)对应的未完成采集数,该实例上一次触发未完成时跳过该实例本次的采集
+     */
+    private final Map<String, Integer> running = new ConcurrentHashMap<>();
+
+    /**
+     * 同一实例同一周期内等待合并执行的任务
+     */
+    private final Map<String, List<Object>> batches = new HashMap<>();
+
+    private ThreadPoolExecutor collectExecutor;
+
+    private ScheduledExecutorService batchExecutor;
+
+    private Counter queryTimeouts;
+
+    /**
+     * 创建采集线程池,线程数即全局在途查询上限
+     */
+    @PostConstruct
+    public void init() {
+        collectExecutor = new ThreadPoolExecutor(CollectConfig.getMaxInflight(), CollectConfig.getMaxInflight(),
+                KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>(CollectConfig.getQueueCapacity()),
+                new BasicThreadFactory.Builder().namingPattern("collect-pool-%d").daemon(true).build(),
+                new ThreadPoolExecutor.AbortPolicy());
+        collectExecutor.allowCoreThreadTimeOut(true);
+        batchExecutor = Executors.newSingleThreadScheduledExecutor(
+                new BasicThreadFactory.Builder().namingPattern("collect-batch-%d").daemon(true).build());
+        queryTimeouts = Counter.build()
+                .name(QUERY_TIMEOUTS)
+                .help("Collection queries cancelled after exceeding the query timeout.")
+                .labelNames("job")
+                .register(collectorRegistry);
+    }
+
+    /**
+     * 任务在该实例上的上一次采集是否仍在执行
+     *
+     * @param jobId        jobId
+     * @param dataSourceId dataSourceId
+     * @return boolean
+     */
+    public boolean isRunning(Long jobId, Long dataSourceId) {
+        return running.containsKey(runningKey(jobId, dataSourceId));
+    }
+
+    private static String runningKey(Long jobId, Long dataSourceId) {
+        return jobId + "#" + dataSourceId;
+    }
+
+    /**
+     * 提交实例采集任务,实例在途任务达到collect.instanceInflight或队列已满时放弃本次采集
+     *
+     * @param jobId        jobId
+     * @param dataSourceId dataSourceId
+     * @param task         task
+     * @return 是否已提交
+     */
+    public boolean submit(Long jobId, Long dataSourceId, Runnable task) {
+        return submit(Collections.singletonList(jobId), dataSourceId, task);
+    }
+
+    /**
+     * 提交一次覆盖多个任务的实例采集
+     *
+     * @param jobIds       jobIds
+     * @param dataSourceId dataSourceId
+     * @param task         task
+     * @return 是否已提交
+     */
+    public boolean submit(List<Long> jobIds, Long dataSourceId, Runnable task) {
+        Semaphore bulkhead = bulkheads.computeIfAbsent(dataSourceId,
+                key -> new Semaphore(CollectConfig.getInstanceInflight()));
+        if (!bulkhead.tryAcquire()) {
+            log.warn("collect skip, instance busy-->{}", dataSourceId);
+            return false;
+        }
+        for (Long jobId : jobIds) {
+            running.merge(runningKey(jobId, dataSourceId), 1, Integer::sum);
+        }
+        try {
+            collectExecutor.execute(() -> {
+                try {
+                    task.run();
+                } finally {
+                    finish(jobIds, dataSourceId);
+                    bulkhead.release();
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException exception) {
+            finish(jobIds, dataSourceId);
+            bulkhead.release();
+            log.warn("collect skip, queue full-->{}", dataSourceId);
+            return false;
+        }
+    }
+
+    private void finish(List<Long> jobIds, Long dataSourceId) {
+        for (Long jobId : jobIds) {
+            running.computeIfPresent(runningKey(jobId, dataSourceId), (key, count) -> count > 1 ? count - 1 : null);
+        }
+    }
+
+    /**
+     * 加入合并批次,同一key在collect.batchWindow毫秒内加入的任务一起交给flush执行
+     *
+     * @param key   批次key,如实例id与cron表达式
+     * @param item  item
+     * @param flush 批次到期后的执行方法,只使用首个加入者传入的flush
+     * @param <T>   item类型
+     */
+    @SuppressWarnings("unchecked")
+    public <T> void batch(String key, T item, Consumer<List<T>> flush) {
+        synchronized (batches) {
+            List<Object> items = batches.get(key);
+            if (items != null) {
+                items.add(item);
+                return;
+            }
+            items = new ArrayList<>();
+            items.add(item);
+            batches.put(key, items);
+        }
+        batchExecutor.schedule(() -> {
+            List<Object> items;
+            synchronized (batches) {
+                items = batches.remove(key);
+            }
+            try {
+                flush.accept((List<T>) items);
+            } catch (RuntimeException exception) {
+                log.error("collect batch {} fail-->{}", key, exception.getMessage());
+            }
+        }, CollectConfig.getBatchWindow(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 记录一次查询超时
+     *
+     * @param jobName jobName
+     */
+    public void recordTimeout(String jobName) {
+        queryTimeouts.labels(jobName).inc();
+    }
+
+    /**
+     * 是否为查询超时,驱动取消查询后sqlState为57014
+     *
+     * @param exception exception
+     * @return boolean
+     */
+    public static boolean isTimeout(DataAccessException exception) {
+        if (exception instanceof QueryTimeoutException) {
+            return true;
+        }
+        Throwable cause = exception.getCause();
+        if (cause instanceof SQLTimeoutException) {
+            return true;
+        }
+        return cause instanceof SQLException && QUERY_CANCELED.equals(((SQLException) cause).getSQLState());
+    }
+
+    /**
+     * 当前正在执行的采集数
+     *
+     * @return int
+     */
+    public int getActiveCount() {
+        return collectExecutor.getActiveCount();
+    }
+
+    /**
+     * 停止采集线程池
+     */
+    public void shutdown() {
+        batchExecutor.shutdownNow();
+        MonitorThreads.monitorShutdown(collectExecutor);
+    }
+}
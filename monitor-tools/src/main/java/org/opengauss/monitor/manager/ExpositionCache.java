@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) Huawei Technologies Co., Ltd. 2012-2022. All rights reserved.
+ */
+
+package org.opengauss.monitor.manager;
+
+import io.prometheus.client.CollectorRegistry;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.zip.GZIPOutputStream;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * /prometheus输出缓存,任务快照部分由SnapshotCollector按代次和格式缓存,其余注册指标每次编码;
+ * gzip输出由多个gzip成员拼接而成,快照部分的压缩结果在快照变化前一直复用
+ *
+ * @author liu
+ * @since 2022-10-01
+ */
+@Slf4j
+@Component
+public class ExpositionCache {
+    @Autowired
+    private CollectorRegistry collectorRegistry;
+
+    @Autowired
+    private SnapshotCollector snapshotCollector;
+
+    private final Object lock = new Object();
+
+    /**
+     * 按ExpositionFormat序号保存最近一次的快照部分及其gzip压缩结果
+     */
+    private final byte[][] snapshotParts = new byte[ExpositionFormat.values().length][];
+
+    private final byte[][] gzipParts = new byte[ExpositionFormat.values().length][];
+
+    /**
+     * 获取输出
+     *
+     * @param format format
+     * @param isGzip 是否返回gzip压缩结果
+     * @return byte[]
+     */
+    public byte[] get(ExpositionFormat format, boolean isGzip) {
+        int index = format.ordinal();
+        byte[] registry = encodeRegistry(format);
+        byte[] snapshot;
+        byte[] gzipSnapshot = null;
+        synchronized (lock) {
+            long start = System.nanoTime();
+            snapshot = snapshotCollector.exposition(format);
+            if (snapshot != snapshotParts[index]) {
+                snapshotParts[index] = snapshot;
+                gzipParts[index] = null;
+                log.debug("exposition {} re-encoded {} bytes in {} us", format, snapshot.length,
+                        (System.nanoTime() - start) / 1000);
+            }
+            if (isGzip) {
+                if (gzipParts[index] == null) {
+                    gzipParts[index] = gzip(snapshot);
+                }
+                gzipSnapshot = gzipParts[index];
+            }
+        }
+        byte[] trailer = format.trailer();
+        if (!isGzip) {
+            return concat(registry, snapshot, trailer);
+        }
+        return concat(gzip(registry), gzipSnapshot, trailer.length == 0 ? trailer : gzip(trailer));
+    }
+
+    private byte[] encodeRegistry(ExpositionFormat format) {
+        try {
+            return format.encode(Collections.list(collectorRegistry.metricFamilySamples()));
+        } catch (IOException exception) {
+            log.error("encodeRegistry-->{}", exception.getMessage());
+            return new byte[0];
+        }
+    }
+
+    private static byte[] concat(byte[] first, byte[] second, byte[] third) {
+        byte[] result = new byte[first.length + second.length + third.length];
+        System.arraycopy(first, 0, result, 0, first.length);
+        System.arraycopy(second, 0, result, first.length, second.length);
+        System.arraycopy(third, 0, result, first.length + second.length, third.length);
+        return result;
+    }
+
+    private static byte[] gzip(byte[] data) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream(Math.max(data.length / 4, 64));
+        try (GZIPOutputStream gzip = new GZIPOutputStream(output)) {
+            gzip.write(data);
+        } catch (IOException exception) {
+            log.error("gzip-->{}", exception.getMessage());
+        }
+        return output.toByteArray();
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) Huawei Technologies Co., Ltd. 2012-2022. All rights reserved.
+ */
+
+package org.opengauss.monitor.manager;
+
+import org.opengauss.monitor.util.ProtobufFormat;
+import io.prometheus.client.Collector;
+import io.prometheus.client.exporter.common.TextFormat;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * /prometheus支持的输出格式,各格式的编码结果均可直接拼接,OpenMetrics的结束标记由trailer单独输出
+ *
+ * @author liu
+ * @since 2022-10-01
+ */
+public enum ExpositionFormat {
+    TEXT(TextFormat.CONTENT_TYPE_004),
+    OPENMETRICS(TextFormat.CONTENT_TYPE_OPENMETRICS_100),
+    PROTOBUF(ProtobufFormat.CONTENT_TYPE);
+
+    private static final String PROTOBUF_ACCEPT = "application/vnd.google.protobuf";
+
+    private static final String PROTOBUF_PROTO = "io.prometheus.client.MetricFamily";
+
+    private static final String OPENMETRICS_ACCEPT = "application/openmetrics-text";
+
+    private static final String OPENMETRICS_VERSION = "1.0.0";
+
+    private static final String EOF = "# EOF\n";
+
+    private final String contentType;
+
+    ExpositionFormat(String contentType) {
+        this.contentType = contentType;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    /**
+     * 根据Accept请求头选择格式:按q值取权重最高的支持格式,权重相同取先出现的,都不支持时使用TEXT
+     *
+     * @param accept accept
+     * @return ExpositionFormat
+     */
+    public static ExpositionFormat negotiate(String accept) {
+        if (accept == null) {
+            return TEXT;
+        }
+        ExpositionFormat result = TEXT;
+        double best = 0;
+        for (String range : accept.split(",")) {
+            String[] parts = range.split(";");
+            ExpositionFormat format = match(parts);
+            double weight = getWeight(parts);
+            if (format != null && weight > best) {
+                result = format;
+                best = weight;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 媒体范围对应的格式
+     *
+     * @param parts 媒体类型及参数
+     * @return 不支持时返回null
+     */
+    private static ExpositionFormat match(String[] parts) {
+        String type = parts[0].trim().toLowerCase(Locale.ROOT);
+        switch (type) {
+            case PROTOBUF_ACCEPT:
+                return PROTOBUF_PROTO.equals(getParameter(parts, "proto")) ? PROTOBUF : null;
+            case OPENMETRICS_ACCEPT:
+                String version = getParameter(parts, "version");
+                return version == null || OPENMETRICS_VERSION.equals(version) ? OPENMETRICS : null;
+            case "text/plain":
+            case "text/*":
+            case "*/*":
+                return TEXT;
+            default:
+                return null;
+        }
+    }
+
+    private static double getWeight(String[] parts) {
+        String quality = getParameter(parts, "q");
+        if (quality == null) {
+            return 1;
+        }
+        try {
+            return Double.parseDouble(quality);
+        } catch (NumberFormatException exception) {
+            return 0;
+        }
+    }
+
+    private static String getParameter(String[] parts, String name) {
+        for (int i = 1; i < parts.length; i++) {
+            int index = parts[i].indexOf('=');
+            if (index > 0 && parts[i].substring(0, index).trim().equalsIgnoreCase(name)) {
+                return parts[i].substring(index + 1).trim();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 编码,不含trailer
+     *
+     * @param families families
+     * @return byte[]
+     * @throws IOException IOException
+     */
+    public byte[] encode(List<Collector.MetricFamilySamples> families) throws IOException {
+        if (families.isEmpty()) {
+            return new byte[0];
+        }
+        if (this == PROTOBUF) {
+            return ProtobufFormat.write(families);
+        }
+        StringWriter writer = new StringWriter();
+        if (this == OPENMETRICS) {
+            TextFormat.writeOpenMetrics100(writer, Collections.enumeration(families));
+            writer.getBuffer().setLength(writer.getBuffer().length() - EOF.length());
+        } else {
+            TextFormat.write004(writer, Collections.enumeration(families));
+        }
+        return writer.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 输出末尾的结束标记
+     *
+     * @return byte[]
+     */
+    public byte[] trailer() {
+        return this == OPENMETRICS ? EOF.getBytes(StandardCharsets.UTF_8) : new byte[0];
+    }
+}
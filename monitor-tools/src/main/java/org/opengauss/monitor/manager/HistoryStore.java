@@ -0,0 +1,544 @@
+/*
+ * Copyright (c) Huawei Technologies Co., Ltd. 2012-2022. All rights reserved.
+ */
+
+package org.opengauss.monitor.manager;
+
+import org.opengauss.monitor.config.HistoryConfig;
+import org.opengauss.monitor.entity.HistoryRollup;
+import org.opengauss.monitor.entity.HistorySeries;
+import org.opengauss.monitor.util.Rollup;
+import org.opengauss.monitor.util.XorChunk;
+import io.prometheus.client.Collector;
+import io.prometheus.client.CollectorRegistry;
+import io.prometheus.client.Counter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * 本地历史数据,保存每个序列最近history.retentionHours小时的样本,
+ * 每个序列是一组压缩块组成的环形队列,总占用超过history.maxBytes时淘汰最久未更新的序列;
+ * 样本到达时同时累加1m/5m/1h预聚合,长时间范围的查询直接读取预聚合,不扫描原始点
+ *
+ * @author liu
+ * @since 2022-10-01
+ */
+@Slf4j
+@Component
+public class HistoryStore {
+    private static final String HISTORY_EVICTED_SERIES = "history_evicted_series";
+
+    private static final long SWEEP_MILLIS = 60000L;
+
+    /**
+     * 预聚合精度:1m、5m、1h
+     */
+    private static final long[] RESOLUTIONS = {60000L, 300000L, 3600000L};
+
+    /**
+     * 估算的每个序列除压缩块以外的固定开销
+     */
+    private static final int SERIES_OVERHEAD = 256;
+
+    @Autowired
+    private CollectorRegistry collectorRegistry;
+
+    /**
+     * 按访问顺序排列,头部为最久未追加的序列
+     */
+    private final LinkedHashMap<String, Series> seriesMap = new LinkedHashMap<>(1024, 0.75f, true);
+
+    private final Map<String, Set<Series>> byName = new HashMap<>();
+
+    private final AtomicLong bytes = new AtomicLong();
+
+    private volatile long nextSweep;
+
+    private Counter evictedSeries;
+
+    /**
+     * 注册history_evicted_series
+     */
+    @PostConstruct
+    public void init() {
+        evictedSeries = Counter.build()
+                .name(HISTORY_EVICTED_SERIES)
+                .help("Series dropped from local history to stay within history.maxBytes.")
+                .register(collectorRegistry);
+    }
+
+    /**
+     * 追加一次发布的全部样本
+     *
+     * @param families  families
+     * @param timestamp 采集时间(毫秒)
+     */
+    public void append(List<Collector.MetricFamilySamples> families, long timestamp) {
+        if (!HistoryConfig.isEnable()) {
+            return;
+        }
+        List<Collector.MetricFamilySamples.Sample> samples = new ArrayList<>();
+        for (Collector.MetricFamilySamples family : families) {
+            samples.addAll(family.samples);
+        }
+        Series[] targets = new Series[samples.size()];
+        synchronized (seriesMap) {
+            for (int i = 0; i < targets.length; i++) {
+                targets[i] = getOrCreate(samples.get(i));
+            }
+        }
+        for (int i = 0; i < targets.length; i++) {
+            Collector.MetricFamilySamples.Sample sample = samples.get(i);
+            long time = sample.timestampMs == null ? timestamp : sample.timestampMs;
+            bytes.addAndGet(targets[i].append(time, sample.value, timestamp));
+        }
+        if (bytes.get() > HistoryConfig.getMaxBytes()) {
+            evict();
+        }
+        if (timestamp >= nextSweep) {
+            nextSweep = timestamp + SWEEP_MILLIS;
+            sweep(timestamp);
+        }
+    }
+
+    private Series getOrCreate(Collector.MetricFamilySamples.Sample sample) {
+        String key = getKey(sample.name, sample.labelNames, sample.labelValues);
+        Series series = seriesMap.get(key);
+        if (series == null) {
+            series = new Series(sample.name, sample.labelNames, sample.labelValues);
+            seriesMap.put(key, series);
+            byName.computeIfAbsent(sample.name, item -> new LinkedHashSet<>()).add(series);
+            bytes.addAndGet(SERIES_OVERHEAD);
+        }
+        return series;
+    }
+
+    private static String getKey(String name, List<String> labelNames, List<String> labelValues) {
+        StringBuilder builder = new StringBuilder(name);
+        for (int i = 0; i < labelNames.size(); i++) {
+            builder.append('\u0000').append(labelNames.get(i)).append('=').append(labelValues.get(i));
+        }
+        return builder.toString();
+    }
+
+    /**
+     * 从最久未更新的序列开始淘汰,直到回到内存上限以内
+     */
+    private void evict() {
+        int count = 0;
+        synchronized (seriesMap) {
+            Iterator<Series> iterator = seriesMap.values().iterator();
+            while (bytes.get() > HistoryConfig.getMaxBytes() && iterator.hasNext()) {
+                Series series = iterator.next();
+                iterator.remove();
+                unlink(series);
+                count++;
+            }
+        }
+        if (count > 0) {
+            evictedSeries.inc(count);
+            log.debug("history evict-->{}", count);
+        }
+    }
+
+    /**
+     * 删除超出保留时间的块,不再更新的序列在全部过期后移除
+     */
+    private void sweep(long now) {
+        synchronized (seriesMap) {
+            Iterator<Series> iterator = seriesMap.values().iterator();
+            while (iterator.hasNext()) {
+                Series series = iterator.next();
+                bytes.addAndGet(series.trim(now));
+                if (series.isEmpty()) {
+                    iterator.remove();
+                    unlink(series);
+                }
+            }
+        }
+    }
+
+    private void unlink(Series series) {
+        Set<Series> named = byName.get(series.name);
+        if (named != null) {
+            named.remove(series);
+            if (named.isEmpty()) {
+                byName.remove(series.name);
+            }
+        }
+        bytes.addAndGet(series.remove() - SERIES_OVERHEAD);
+    }
+
+    /**
+     * 查询指标在时间范围内的历史数据
+     *
+     * @param name     指标名
+     * @param matchers 需要相等的标签,为空时返回该指标的全部序列
+     * @param start    开始时间(毫秒,含)
+     * @param end      结束时间(毫秒,含)
+     * @return List<HistorySeries>
+     */
+    public List<HistorySeries> query(String name, Map<String, String> matchers, long start, long end) {
+        List<Series> candidates;
+        synchronized (seriesMap) {
+            candidates = new ArrayList<>(byName.getOrDefault(name, Collections.emptySet()));
+        }
+        List<HistorySeries> result = new ArrayList<>();
+        for (Series series : candidates) {
+            if (series.matches(matchers)) {
+                result.add(series.read(start, end));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 按step聚合指标在时间范围内的数据,step是某个预聚合精度的整数倍时读取该精度中最粗的一级,否则聚合原始点;
+     * 原始点和1m只保留history.retentionHours,所选精度的数据晚于start而更粗的一级能覆盖更早的时间时改用更粗的一级,
+     * 步长取该精度的整数倍,实际步长见返回结果的step
+     *
+     * @param name     指标名
+     * @param matchers 需要相等的标签,为空时返回该指标的全部序列
+     * @param start    开始时间(毫秒)
+     * @param end      结束时间(毫秒)
+     * @param step     聚合步长(毫秒)
+     * @return List<HistoryRollup>
+     */
+    public List<HistoryRollup> rollup(String name, Map<String, String> matchers, long start, long end, long step) {
+        int level = -1;
+        for (int i = RESOLUTIONS.length - 1; i >= 0 && level < 0; i--) {
+            if (step % RESOLUTIONS[i] == 0) {
+                level = i;
+            }
+        }
+        List<Series> candidates;
+        synchronized (seriesMap) {
+            candidates = new ArrayList<>(byName.getOrDefault(name, Collections.emptySet()));
+        }
+        List<HistoryRollup> result = new ArrayList<>();
+        for (Series series : candidates) {
+            if (series.matches(matchers)) {
+                result.add(series.rollup(start, end, step, level));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 当前占用的字节数(估算)
+     *
+     * @return long
+     */
+    public long getBytes() {
+        return bytes.get();
+    }
+
+    /**
+     * 一个序列,已写满的块按时间顺序排在队列中,最新的块单独追加
+     */
+    private static final class Series {
+        private final String name;
+
+        private final List<String> labelNames;
+
+        private final List<String> labelValues;
+
+        private final ArrayDeque<XorChunk> chunks = new ArrayDeque<>();
+
+        private XorChunk head;
+
+        private final Rollup[] rollups = new Rollup[RESOLUTIONS.length];
+
+        private long lastTime = Long.MIN_VALUE;
+
+        private long bytes;
+
+        private boolean isRemoved;
+
+        private Series(String name, List<String> labelNames, List<String> labelValues) {
+            this.name = name;
+            this.labelNames = labelNames;
+            this.labelValues = labelValues;
+            for (int i = 0; i < RESOLUTIONS.length; i++) {
+                rollups[i] = new Rollup(RESOLUTIONS[i]);
+            }
+        }
+
+        /**
+         * 追加样本并累加到各精度的预聚合,返回占用字节数的变化
+         */
+        private synchronized long append(long time, double value, long now) {
+            if (isRemoved || time <= lastTime) {
+                return 0;
+            }
+            lastTime = time;
+            long before = bytes;
+            if (head == null || head.getCount() >= HistoryConfig.getChunkPoints()) {
+                if (head != null) {
+                    bytes -= head.getBytes();
+                    head.seal();
+                    bytes += head.getBytes();
+                    chunks.addLast(head);
+                }
+                head = new XorChunk();
+                bytes += head.getBytes();
+            }
+            bytes -= head.getBytes();
+            head.append(time, value);
+            bytes += head.getBytes();
+            for (Rollup rollup : rollups) {
+                bytes += rollup.add(time, value, HistoryConfig.getChunkPoints());
+            }
+            dropExpired(now);
+            return bytes - before;
+        }
+
+        /**
+         * 原始数据与1m预聚合保留history.retentionHours,更粗的预聚合保留history.rollupHours
+         */
+        private void dropExpired(long now) {
+            long cutoff = now - TimeUnit.HOURS.toMillis(HistoryConfig.getRetentionHours());
+            while (!chunks.isEmpty() && chunks.peekFirst().getLastTime() < cutoff) {
+                bytes -= chunks.pollFirst().getBytes();
+            }
+            if (chunks.isEmpty() && head != null && head.getLastTime() < cutoff) {
+                bytes -= head.getBytes();
+                head = null;
+            }
+            long rollupCutoff = now - TimeUnit.HOURS.toMillis(
+                    Math.max(HistoryConfig.getRollupHours(), HistoryConfig.getRetentionHours()));
+            for (Rollup rollup : rollups) {
+                bytes += rollup.trim(rollup.getResolution() < RESOLUTIONS[1] ? cutoff : rollupCutoff);
+            }
+        }
+
+        private synchronized long trim(long now) {
+            long before = bytes;
+            dropExpired(now);
+            return bytes - before;
+        }
+
+        private synchronized boolean isEmpty() {
+            for (Rollup rollup : rollups) {
+                if (!rollup.isEmpty()) {
+                    return false;
+                }
+            }
+            return head == null;
+        }
+
+        /**
+         * 标记删除,返回释放的字节数(负数)
+         */
+        private synchronized long remove() {
+            isRemoved = true;
+            long released = -bytes;
+            chunks.clear();
+            head = null;
+            bytes = 0;
+            return released;
+        }
+
+        private boolean matches(Map<String, String> matchers) {
+            if (matchers == null) {
+                return true;
+            }
+            for (Map.Entry<String, String> matcher : matchers.entrySet()) {
+                int index = labelNames.indexOf(matcher.getKey());
+                if (index < 0 || !labelValues.get(index).equals(matcher.getValue())) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private synchronized HistorySeries read(long start, long end) {
+            long[] timestamps = new long[16];
+            double[] values = new double[16];
+            int size = 0;
+            List<XorChunk> overlapping = new ArrayList<>(chunks);
+            if (head != null) {
+                overlapping.add(head);
+            }
+            for (XorChunk chunk : overlapping) {
+                if (chunk.getLastTime() < start || chunk.getFirstTime() > end) {
+                    continue;
+                }
+                XorChunk.Reader reader = chunk.reader();
+                while (reader.next() && reader.getTime() <= end) {
+                    if (reader.getTime() < start) {
+                        continue;
+                    }
+                    if (size == timestamps.length) {
+                        timestamps = Arrays.copyOf(timestamps, size * 2);
+                        values = Arrays.copyOf(values, size * 2);
+                    }
+                    timestamps[size] = reader.getTime();
+                    values[size] = reader.getValue();
+                    size++;
+                }
+            }
+            HistorySeries series = new HistorySeries();
+            series.setName(name);
+            series.setLabels(getLabels());
+            series.setTimestamps(Arrays.copyOf(timestamps, size));
+            series.setValues(Arrays.copyOf(values, size));
+            return series;
+        }
+
+        private synchronized HistoryRollup rollup(long start, long end, long step, int level) {
+            int chosen = level;
+            long first = getFirstTime(level);
+            for (int i = level + 1; i < RESOLUTIONS.length && first > start; i++) {
+                long coarser = getFirstTime(i);
+                // 更粗一级的桶完整地早于当前数据才说明保留了更早的时间,只是桶对齐更早的不算
+                if (coarser != Long.MAX_VALUE && coarser + RESOLUTIONS[i] <= first) {
+                    chosen = i;
+                    first = coarser;
+                }
+            }
+            long resolution = chosen >= 0 ? RESOLUTIONS[chosen] : 1L;
+            Merger merger = new Merger((step + resolution - 1) / resolution * resolution);
+            if (chosen >= 0) {
+                rollups[chosen].read(start, end, merger);
+            } else {
+                List<XorChunk> overlapping = new ArrayList<>(chunks);
+                if (head != null) {
+                    overlapping.add(head);
+                }
+                for (XorChunk chunk : overlapping) {
+                    if (chunk.getLastTime() < start || chunk.getFirstTime() > end) {
+                        continue;
+                    }
+                    XorChunk.Reader reader = chunk.reader();
+                    while (reader.next() && reader.getTime() <= end) {
+                        if (reader.getTime() >= start) {
+                            double value = reader.getValue();
+                            boolean isNaN = Double.isNaN(value);
+                            merger.visit(reader.getTime(), value, value, isNaN ? 0 : value, value, isNaN ? 0 : 1);
+                        }
+                    }
+                }
+            }
+            HistoryRollup rollup = merger.toRollup();
+            rollup.setName(name);
+            rollup.setLabels(getLabels());
+            return rollup;
+        }
+
+        /**
+         * 指定精度最早的数据时间,-1为原始点
+         */
+        private long getFirstTime(int level) {
+            if (level >= 0) {
+                return rollups[level].getFirstTime();
+            }
+            if (!chunks.isEmpty()) {
+                return chunks.peekFirst().getFirstTime();
+            }
+            return head == null ? Long.MAX_VALUE : head.getFirstTime();
+        }
+
+        private Map<String, String> getLabels() {
+            Map<String, String> labels = new LinkedHashMap<>();
+            for (int i = 0; i < labelNames.size(); i++) {
+                labels.put(labelNames.get(i), labelValues.get(i));
+            }
+            return labels;
+        }
+    }
+
+    /**
+     * 把按时间顺序到达的时间桶合并为step宽的时间桶
+     */
+    private static final class Merger implements Rollup.Visitor {
+        private final long step;
+
+        private long[] timestamps = new long[16];
+
+        private double[] min = new double[16];
+
+        private double[] max = new double[16];
+
+        private double[] sum = new double[16];
+
+        private double[] last = new double[16];
+
+        private long[] count = new long[16];
+
+        private int size;
+
+        private Merger(long step) {
+            this.step = step;
+        }
+
+        @Override
+        public void visit(long start, double bucketMin, double bucketMax, double bucketSum, double bucketLast,
+                          long bucketCount) {
+            long time = start - Math.floorMod(start, step);
+            int index = size - 1;
+            if (size == 0 || timestamps[index] != time) {
+                grow();
+                index = size++;
+                timestamps[index] = time;
+                min[index] = bucketMin;
+                max[index] = bucketMax;
+                sum[index] = bucketSum;
+                last[index] = bucketLast;
+                count[index] = bucketCount;
+                return;
+            }
+            if (bucketCount > 0) {
+                min[index] = count[index] == 0 ? bucketMin : Math.min(min[index], bucketMin);
+                max[index] = count[index] == 0 ? bucketMax : Math.max(max[index], bucketMax);
+            }
+            sum[index] += bucketSum;
+            last[index] = bucketLast;
+            count[index] += bucketCount;
+        }
+
+        private void grow() {
+            if (size < timestamps.length) {
+                return;
+            }
+            int capacity = size * 2;
+            timestamps = Arrays.copyOf(timestamps, capacity);
+            min = Arrays.copyOf(min, capacity);
+            max = Arrays.copyOf(max, capacity);
+            sum = Arrays.copyOf(sum, capacity);
+            last = Arrays.copyOf(last, capacity);
+            count = Arrays.copyOf(count, capacity);
+        }
+
+        private HistoryRollup toRollup() {
+            double[] avg = new double[size];
+            for (int i = 0; i < size; i++) {
+                avg[i] = count[i] == 0 ? Double.NaN : sum[i] / count[i];
+            }
+            HistoryRollup rollup = new HistoryRollup();
+            rollup.setStep(step);
+            rollup.setTimestamps(Arrays.copyOf(timestamps, size));
+            rollup.setMin(Arrays.copyOf(min, size));
+            rollup.setMax(Arrays.copyOf(max, size));
+            rollup.setAvg(avg);
+            rollup.setLast(Arrays.copyOf(last, size));
+            rollup.setCount(Arrays.copyOf(count, size));
+            return rollup;
+        }
+    }
+}
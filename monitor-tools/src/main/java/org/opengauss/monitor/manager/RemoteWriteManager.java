@@ -0,0 +1,430 @@
+/*
+ * Copyright (c) Huawei Technologies Co., Ltd. 2012-2022. All rights reserved.
+ */
+
+package org.opengauss.monitor.manager;
+
+import org.opengauss.monitor.config.RemoteWriteConfig;
+import org.opengauss.monitor.util.ProtobufWriter;
+import org.opengauss.monitor.util.SnappyUtil;
+import io.prometheus.client.Collector;
+import io.prometheus.client.CollectorRegistry;
+import io.prometheus.client.Counter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * prometheus remote write推送,按序列哈希分到remote.shards个分片,每个分片单线程按顺序发送,
+ * 失败时指数退避重试,重试耗尽或队列已满时写入remote.spoolDir,接收端恢复后按写入顺序补发
+ *
+ * @author liu
+ * @since 2022-10-01
+ */
+@Slf4j
+@Component
+public class RemoteWriteManager {
+    private static final String REMOTE_WRITE_BATCHES = "remote_write_batches";
+
+    private static final String SPOOL_SUFFIX = ".snappy";
+
+    private static final String NAME_LABEL = "__name__";
+
+    private static final long JOIN_MILLIS = 5000L;
+
+    @Autowired
+    private CollectorRegistry collectorRegistry;
+
+    private Shard[] shards = new Shard[0];
+
+    private Counter batches;
+
+    private final AtomicLong spoolSequence = new AtomicLong();
+
+    /**
+     * 启用时创建分片发送线程
+     */
+    @PostConstruct
+    public void init() {
+        if (!RemoteWriteConfig.isEnable()) {
+            return;
+        }
+        batches = Counter.build()
+                .name(REMOTE_WRITE_BATCHES)
+                .help("Remote write batches by result: sent, retried, spooled or dropped.")
+                .labelNames("result")
+                .register(collectorRegistry);
+        BasicThreadFactory factory = new BasicThreadFactory.Builder()
+                .namingPattern("remote-write-%d").daemon(true).build();
+        Shard[] created = new Shard[Math.max(RemoteWriteConfig.getShards(), 1)];
+        for (int i = 0; i < created.length; i++) {
+            created[i] = new Shard(new File(RemoteWriteConfig.getSpoolDir(), "shard-" + i));
+            created[i].thread = factory.newThread(created[i]::run);
+            created[i].thread.start();
+        }
+        shards = created;
+    }
+
+    /**
+     * 是否启用
+     *
+     * @return boolean
+     */
+    public boolean isEnable() {
+        return shards.length > 0;
+    }
+
+    /**
+     * 加入一次发布的全部样本
+     *
+     * @param families  families
+     * @param timestamp 采集时间(毫秒)
+     */
+    public void offer(List<Collector.MetricFamilySamples> families, long timestamp) {
+        if (!isEnable()) {
+            return;
+        }
+        ProtobufWriter series = new ProtobufWriter(256);
+        ProtobufWriter message = new ProtobufWriter(64);
+        for (Collector.MetricFamilySamples family : families) {
+            for (Collector.MetricFamilySamples.Sample sample : family.samples) {
+                series.reset();
+                writeLabels(series, message, sample);
+                message.reset();
+                message.writeDouble(1, sample.value);
+                message.writeVarint(2, sample.timestampMs == null ? timestamp : sample.timestampMs);
+                series.writeMessage(2, message);
+                int hash = 31 * sample.name.hashCode() + sample.labelValues.hashCode();
+                shards[(hash & Integer.MAX_VALUE) % shards.length].add(series);
+            }
+        }
+    }
+
+    /**
+     * 标签按名称排序,__name__为指标名
+     */
+    private static void writeLabels(ProtobufWriter series, ProtobufWriter message,
+                                    Collector.MetricFamilySamples.Sample sample) {
+        Integer[] order = new Integer[sample.labelNames.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparing(sample.labelNames::get));
+        boolean isNameWritten = false;
+        for (Integer index : order) {
+            String labelName = sample.labelNames.get(index);
+            if (!isNameWritten && labelName.compareTo(NAME_LABEL) > 0) {
+                writeLabel(series, message, NAME_LABEL, sample.name);
+                isNameWritten = true;
+            }
+            writeLabel(series, message, labelName, sample.labelValues.get(index));
+        }
+        if (!isNameWritten) {
+            writeLabel(series, message, NAME_LABEL, sample.name);
+        }
+    }
+
+    private static void writeLabel(ProtobufWriter series, ProtobufWriter message, String name, String value) {
+        message.reset();
+        message.writeString(1, name);
+        message.writeString(2, value);
+        series.writeMessage(1, message);
+    }
+
+    /**
+     * 停止发送,未发送的批次写入spool
+     */
+    public void shutdown() {
+        for (Shard shard : shards) {
+            shard.isRunning = false;
+            shard.thread.interrupt();
+        }
+        for (Shard shard : shards) {
+            try {
+                shard.thread.join(JOIN_MILLIS);
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+            }
+            shard.spoolPending();
+        }
+    }
+
+    private void record(String result) {
+        batches.labels(result).inc();
+    }
+
+    /**
+     * 一个分片,同一序列总在同一分片内按顺序发送
+     */
+    private final class Shard {
+        private final File spoolDir;
+
+        private final ProtobufWriter request = new ProtobufWriter(64 * 1024);
+
+        private final BlockingQueue<byte[]> outbox = new ArrayBlockingQueue<>(
+                Math.max(RemoteWriteConfig.getQueueCapacity(), 1));
+
+        private final Object spoolLock = new Object();
+
+        private int samples;
+
+        private long firstTime;
+
+        private volatile boolean isRunning = true;
+
+        private Thread thread;
+
+        private Shard(File spoolDir) {
+            this.spoolDir = spoolDir;
+        }
+
+        private void add(ProtobufWriter series) {
+            byte[] payload = null;
+            synchronized (this) {
+                if (samples == 0) {
+                    firstTime = System.currentTimeMillis();
+                }
+                request.writeMessage(1, series);
+                samples++;
+                if (samples >= RemoteWriteConfig.getBatchSize()) {
+                    payload = cut();
+                }
+            }
+            if (payload != null && !outbox.offer(payload)) {
+                spool(payload);
+            }
+        }
+
+        private synchronized byte[] cut() {
+            if (samples == 0) {
+                return null;
+            }
+            byte[] payload = SnappyUtil.compress(request.toByteArray());
+            request.reset();
+            samples = 0;
+            return payload;
+        }
+
+        private synchronized byte[] cutIfDue() {
+            if (samples == 0 || System.currentTimeMillis() - firstTime < RemoteWriteConfig.getFlushInterval()) {
+                return null;
+            }
+            return cut();
+        }
+
+        private void run() {
+            while (isRunning) {
+                byte[] payload = null;
+                try {
+                    payload = outbox.poll(RemoteWriteConfig.getFlushInterval(), TimeUnit.MILLISECONDS);
+                    if (payload == null) {
+                        payload = cutIfDue();
+                    }
+                    if (payload != null) {
+                        deliver(payload);
+                    } else if (hasSpool()) {
+                        drainSpool();
+                    }
+                } catch (InterruptedException exception) {
+                    if (payload != null) {
+                        spool(payload);
+                    }
+                    return;
+                } catch (RuntimeException exception) {
+                    log.error("remote write-->{}", exception.getMessage());
+                }
+            }
+        }
+
+        /**
+         * spool中有积压时新批次排在积压之后,保证同一序列按时间顺序到达
+         */
+        private void deliver(byte[] payload) throws InterruptedException {
+            if (hasSpool()) {
+                spool(payload);
+                drainSpool();
+                return;
+            }
+            if (!send(payload)) {
+                spool(payload);
+            }
+        }
+
+        /**
+         * 发送,返回false表示需要写入spool
+         */
+        private boolean send(byte[] payload) throws InterruptedException {
+            long backoff = RemoteWriteConfig.getRetryBackoff();
+            for (int attempt = 0; ; attempt++) {
+                try {
+                    int code = post(payload);
+                    if (code / 100 == 2) {
+                        record("sent");
+                        return true;
+                    }
+                    if (code / 100 == 4 && code != 429) {
+                        // 请求本身有误,重试也不会成功
+                        log.error("remote write rejected-->{}", code);
+                        record("dropped");
+                        return true;
+                    }
+                    log.warn("remote write fail-->{}", code);
+                } catch (IOException exception) {
+                    log.warn("remote write fail-->{}", exception.getMessage());
+                }
+                if (attempt >= RemoteWriteConfig.getMaxRetries()) {
+                    return false;
+                }
+                record("retried");
+                Thread.sleep(backoff);
+                backoff = Math.min(backoff * 2, RemoteWriteConfig.getMaxBackoff());
+            }
+        }
+
+        private boolean hasSpool() {
+            String[] names = spoolDir.list();
+            return names != null && names.length > 0;
+        }
+
+        private File[] spoolFiles() {
+            File[] files = spoolDir.listFiles((dir, name) -> name.endsWith(SPOOL_SUFFIX));
+            if (files == null) {
+                return new File[0];
+            }
+            Arrays.sort(files, Comparator.comparing(File::getName));
+            return files;
+        }
+
+        /**
+         * 按写入顺序补发,遇到失败停止,等待下次
+         */
+        private void drainSpool() throws InterruptedException {
+            for (File file : spoolFiles()) {
+                byte[] payload;
+                try {
+                    payload = Files.readAllBytes(file.toPath());
+                } catch (IOException exception) {
+                    log.error("remote write spool read {}-->{}", file.getName(), exception.getMessage());
+                    deleteSpool(file);
+                    continue;
+                }
+                if (!send(payload)) {
+                    return;
+                }
+                deleteSpool(file);
+            }
+        }
+
+        private void spool(byte[] payload) {
+            synchronized (spoolLock) {
+                if (!spoolDir.exists() && !spoolDir.mkdirs()) {
+                    log.error("remote write spool dir-->{}", spoolDir.getPath());
+                    record("dropped");
+                    return;
+                }
+                String name = String.format("%013d-%09d", System.currentTimeMillis(),
+                        spoolSequence.incrementAndGet());
+                File temp = new File(spoolDir, name + ".tmp");
+                try {
+                    Files.write(temp.toPath(), payload);
+                    Files.move(temp.toPath(), new File(spoolDir, name + SPOOL_SUFFIX).toPath(),
+                            StandardCopyOption.ATOMIC_MOVE);
+                    record("spooled");
+                } catch (IOException exception) {
+                    log.error("remote write spool-->{}", exception.getMessage());
+                    record("dropped");
+                    return;
+                }
+                trimSpool();
+            }
+        }
+
+        /**
+         * spool超过上限时删除最早的批次
+         */
+        private void trimSpool() {
+            long limit = RemoteWriteConfig.getSpoolMaxBytes() / shards.length;
+            File[] files = spoolFiles();
+            long total = 0;
+            for (File file : files) {
+                total += file.length();
+            }
+            for (int i = 0; i < files.length - 1 && total > limit; i++) {
+                total -= files[i].length();
+                deleteSpool(files[i]);
+                record("dropped");
+            }
+        }
+
+        private void deleteSpool(File file) {
+            synchronized (spoolLock) {
+                if (!file.delete()) {
+                    log.error("remote write spool delete-->{}", file.getName());
+                }
+            }
+        }
+
+        /**
+         * 停止后把队列和缓冲中的批次写入spool
+         */
+        private void spoolPending() {
+            List<byte[]> pending = new ArrayList<>();
+            outbox.drainTo(pending);
+            byte[] rest = cut();
+            if (rest != null) {
+                pending.add(rest);
+            }
+            for (byte[] payload : pending) {
+                spool(payload);
+            }
+        }
+    }
+
+    private static int post(byte[] payload) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(RemoteWriteConfig.getUrl()).openConnection();
+        try {
+            connection.setRequestMethod("POST");
+            connection.setDoOutput(true);
+            connection.setConnectTimeout(RemoteWriteConfig.getTimeout());
+            connection.setReadTimeout(RemoteWriteConfig.getTimeout());
+            connection.setRequestProperty("Content-Type", "application/x-protobuf");
+            connection.setRequestProperty("Content-Encoding", "snappy");
+            connection.setRequestProperty("X-Prometheus-Remote-Write-Version", "0.1.0");
+            connection.setFixedLengthStreamingMode(payload.length);
+            try (OutputStream output = connection.getOutputStream()) {
+                output.write(payload);
+            }
+            int code = connection.getResponseCode();
+            try (InputStream input = code >= HttpURLConnection.HTTP_BAD_REQUEST
+                    ? connection.getErrorStream() : connection.getInputStream()) {
+                if (input != null) {
+                    byte[] buffer = new byte[1024];
+                    while (input.read(buffer) != -1) {
+                        continue;
+                    }
+                }
+            }
+            return code;
+        } finally {
+            connection.disconnect();
+        }
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) Huawei Technologies Co., Ltd. 2012-2022. All rights reserved.
+ */
+
+package org.opengauss.monitor.manager;
+
+import org.opengauss.monitor.config.CollectConfig;
+import org.opengauss.monitor.quartz.domain.SysJob;
+import org.opengauss.monitor.util.SqlUtil;
+import io.prometheus.client.CollectorRegistry;
+import io.prometheus.client.Counter;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * 任务查询结果缓存,配置了cacheTtl的任务在有效期内按缓存的结果发布而不查询实例;
+ * 按(实例id, 任务id, 规范化sql)缓存,总行数超过collect.resultCacheRows时淘汰最久未使用的结果
+ *
+ * @author liu
+ * @since 2022-10-01
+ */
+@Component
+public class ResultCacheManager {
+    private static final String RESULT_CACHE = "result_cache";
+
+    private static final long SWEEP_MILLIS = 60000L;
+
+    @Autowired
+    private CollectorRegistry collectorRegistry;
+
+    private final LinkedHashMap<String, Cached> results = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long rows;
+
+    private long nextSweep;
+
+    private Counter resultCache;
+
+    /**
+     * 注册result_cache
+     */
+    @PostConstruct
+    public void init() {
+        resultCache = Counter.build()
+                .name(RESULT_CACHE)
+                .help("Job results by source: served from the result cache, loaded from the instance or evicted.")
+                .labelNames("result")
+                .register(collectorRegistry);
+    }
+
+    /**
+     * 是否对任务启用缓存
+     *
+     * @param sysJob sysJob
+     * @return boolean
+     */
+    public static boolean isCached(SysJob sysJob) {
+        return sysJob.getCacheTtl() != null && sysJob.getCacheTtl() > 0;
+    }
+
+    /**
+     * 取有效期内的缓存结果
+     *
+     * @param dataSourceId dataSourceId
+     * @param sysJob       sysJob
+     * @param sql          sql
+     * @return 结果副本,未缓存或已过期时返回null
+     */
+    public List<Map<String, Object>> get(Long dataSourceId, SysJob sysJob, String sql) {
+        if (!isCached(sysJob)) {
+            return null;
+        }
+        String key = key(dataSourceId, sysJob, sql);
+        long now = System.currentTimeMillis();
+        List<Map<String, Object>> cached;
+        synchronized (results) {
+            Cached item = results.get(key);
+            if (item == null) {
+                return null;
+            }
+            if (item.expireTime <= now) {
+                results.remove(key);
+                rows -= item.rows.size();
+                return null;
+            }
+            cached = item.rows;
+        }
+        resultCache.labels("hit").inc();
+        return SharedQueryManager.copy(cached);
+    }
+
+    /**
+     * 缓存任务的查询结果,有效期为任务的cacheTtl
+     *
+     * @param dataSourceId dataSourceId
+     * @param sysJob       sysJob
+     * @param sql          sql
+     * @param list         查询结果,缓存保存副本
+     */
+    public void put(Long dataSourceId, SysJob sysJob, String sql, List<Map<String, Object>> list) {
+        if (!isCached(sysJob)) {
+            return;
+        }
+        resultCache.labels("loaded").inc();
+        if (list.size() > CollectConfig.getResultCacheRows()) {
+            return;
+        }
+        String key = key(dataSourceId, sysJob, sql);
+        long now = System.currentTimeMillis();
+        Cached item = new Cached(SharedQueryManager.copy(list),
+                now + TimeUnit.SECONDS.toMillis(sysJob.getCacheTtl()));
+        int evicted = 0;
+        synchronized (results) {
+            if (now >= nextSweep) {
+                nextSweep = now + SWEEP_MILLIS;
+                sweep(now);
+            }
+            Cached old = results.put(key, item);
+            if (old != null) {
+                rows -= old.rows.size();
+            }
+            rows += item.rows.size();
+            Iterator<Cached> iterator = results.values().iterator();
+            while (rows > CollectConfig.getResultCacheRows() && iterator.hasNext()) {
+                rows -= iterator.next().rows.size();
+                iterator.remove();
+                evicted++;
+            }
+        }
+        if (evicted > 0) {
+            resultCache.labels("evicted").inc(evicted);
+        }
+    }
+
+    private void sweep(long now) {
+        Iterator<Cached> iterator = results.values().iterator();
+        while (iterator.hasNext()) {
+            Cached item = iterator.next();
+            if (item.expireTime <= now) {
+                rows -= item.rows.size();
+                iterator.remove();
+            }
+        }
+    }
+
+    private static String key(Long dataSourceId, SysJob sysJob, String sql) {
+        return dataSourceId + "#" + sysJob.getJobId() + "#" + SqlUtil.normalize(sql);
+    }
+
+    /**
+     * 一次缓存的结果
+     */
+    private static final class Cached {
+        private final List<Map<String, Object>> rows;
+
+        private final long expireTime;
+
+        private Cached(List<Map<String, Object>> rows, long expireTime) {
+            this.rows = rows;
+            this.expireTime = expireTime;
+        }
+    }
+}
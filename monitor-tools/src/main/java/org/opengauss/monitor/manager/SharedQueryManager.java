@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) Huawei Technologies Co., Ltd. 2012-2022. All rights reserved.
+ */
+
+package org.opengauss.monitor.manager;
+
+import org.opengauss.monitor.config.CollectConfig;
+import org.opengauss.monitor.exception.SharedQueryException;
+import org.opengauss.monitor.util.ColumnPlan;
+import org.opengauss.monitor.util.SqlUtil;
+import io.prometheus.client.CollectorRegistry;
+import io.prometheus.client.Counter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+import javax.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.util.LinkedCaseInsensitiveMap;
+
+/**
+ * 同一实例上相同sql的共享执行,按(实例id, 规范化sql)合并:执行中的查询由后到的任务等待共用,
+ * 完成后collect.dedupWindow毫秒内触发的任务直接复用结果,各任务拿到独立的结果副本
+ *
+ * @author liu
+ * @since 2022-10-01
+ */
+@Slf4j
+@Component
+public class SharedQueryManager {
+    private static final String SHARED_QUERIES = "shared_queries";
+
+    /**
+     * 等待共享查询时在查询超时之外多等的时间
+     */
+    private static final long WAIT_GRACE_MILLIS = 5000L;
+
+    private static final long SWEEP_MILLIS = 1000L;
+
+    @Autowired
+    private CollectorRegistry collectorRegistry;
+
+    private final Map<String, Shared> queries = new ConcurrentHashMap<>();
+
+    private volatile long nextSweep;
+
+    private Counter sharedQueries;
+
+    /**
+     * 注册shared_queries
+     */
+    @PostConstruct
+    public void init() {
+        sharedQueries = Counter.build()
+                .name(SHARED_QUERIES)
+                .help("Collection queries by result: executed against the instance or shared from another job.")
+                .labelNames("result")
+                .register(collectorRegistry);
+    }
+
+    /**
+     * 执行或共用查询
+     *
+     * @param dataSourceId dataSourceId
+     * @param sql          sql
+     * @param jobId        jobId
+     * @param timeout      查询超时时间(秒)
+     * @param loader       实际执行查询,失败时抛出DataAccessException
+     * @return 本任务独立的结果副本
+     * @throws SharedQueryException 共用的查询失败,本任务不应再计入熔断和超时
+     */
+    public List<Map<String, Object>> execute(Long dataSourceId, String sql, Long jobId, int timeout,
+                                             Supplier<List<Map<String, Object>>> loader) {
+        if (!CollectConfig.isDedup()) {
+            return loader.get();
+        }
+        long now = System.currentTimeMillis();
+        if (now >= nextSweep) {
+            nextSweep = now + SWEEP_MILLIS;
+            queries.values().removeIf(item -> item.isExpired(now));
+        }
+        String key = dataSourceId + "#" + SqlUtil.normalize(sql);
+        Shared created = new Shared(jobId);
+        Shared current = queries.compute(key, (item, old) -> old == null || old.isExpired(now) ? created : old);
+        if (current == created) {
+            List<Map<String, Object>> rows;
+            try {
+                rows = loader.get();
+            } catch (RuntimeException exception) {
+                queries.remove(key, created);
+                created.future.completeExceptionally(exception);
+                throw exception;
+            }
+            created.completeTime = System.currentTimeMillis();
+            created.future.complete(rows);
+            sharedQueries.labels("executed").inc();
+            return copy(rows);
+        }
+        List<Map<String, Object>> rows = current.await(timeout);
+        ColumnPlan.share(current.jobId, jobId, dataSourceId, sql);
+        sharedQueries.labels("shared").inc();
+        return copy(rows);
+    }
+
+    /**
+     * 复制结果,发布过程会修改行内的值
+     *
+     * @param rows rows
+     * @return List<Map<String, Object>>
+     */
+    public static List<Map<String, Object>> copy(List<Map<String, Object>> rows) {
+        List<Map<String, Object>> result = new ArrayList<>(rows.size());
+        for (Map<String, Object> row : rows) {
+            if (row instanceof LinkedCaseInsensitiveMap) {
+                result.add(((LinkedCaseInsensitiveMap<Object>) row).clone());
+            } else {
+                result.add(new LinkedHashMap<>(row));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 一次共享的查询
+     */
+    private static final class Shared {
+        private final Long jobId;
+
+        private final CompletableFuture<List<Map<String, Object>>> future = new CompletableFuture<>();
+
+        private volatile long completeTime;
+
+        private Shared(Long jobId) {
+            this.jobId = jobId;
+        }
+
+        private boolean isExpired(long now) {
+            return completeTime > 0 && now - completeTime > CollectConfig.getDedupWindow();
+        }
+
+        /**
+         * 等待执行的任务完成,失败时抛出SharedQueryException,由执行的任务统计一次
+         */
+        private List<Map<String, Object>> await(int timeout) {
+            try {
+                return future.get(TimeUnit.SECONDS.toMillis(timeout) + WAIT_GRACE_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (ExecutionException exception) {
+                throw new SharedQueryException(exception.getCause().getMessage(), exception.getCause());
+            } catch (TimeoutException exception) {
+                throw new SharedQueryException("shared query wait timeout", exception);
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+                throw new SharedQueryException("shared query wait interrupted", exception);
+            }
+        }
+    }
+}
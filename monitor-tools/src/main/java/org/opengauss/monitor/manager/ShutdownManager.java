@@ -4,7 +4,12 @@
 
 package org.opengauss.monitor.manager;
 
+import org.opengauss.monitor.manager.sink.SinkManager;
+import org.opengauss.monitor.util.JsonUtilData;
+import org.opengauss.monitor.util.jdbc.PoolManager;
+import org.opengauss.monitor.util.jdbc.SourcePoolManager;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.PreDestroy;
@@ -18,12 +23,26 @@ import javax.annotation.PreDestroy;
 @Slf4j
 @Component
 public class ShutdownManager {
+    @Autowired
+    private CollectManager collectManager;
+
+    @Autowired
+    private SinkManager sinkManager;
+
+    @Autowired
+    private RemoteWriteManager remoteWriteManager;
+
     /**
      * destroy
      */
     @PreDestroy
     public void destroy() {
         shutdownAsyncManager();
+        shutdownCollect();
+        shutdownSourcePool();
+        shutdownSink();
+        shutdownRemoteWrite();
+        flushJsonFile();
     }
 
     /**
@@ -33,4 +52,45 @@ public class ShutdownManager {
         log.info("====stop Executior====");
         MonitorManager.mine().stopTask();
     }
+
+    /**
+     * 停止实例采集,需在关闭连接池之前
+     */
+    private void shutdownCollect() {
+        log.info("====stop collect====");
+        collectManager.shutdown();
+    }
+
+    /**
+     * 停止输出端,队列中的采集结果写完后再停止remote write
+     */
+    private void shutdownSink() {
+        log.info("====stop sink====");
+        sinkManager.shutdown();
+    }
+
+    /**
+     * 停止remote write推送,未发送的批次写入spool,需在停止采集之后
+     */
+    private void shutdownRemoteWrite() {
+        log.info("====stop remote write====");
+        remoteWriteManager.shutdown();
+    }
+
+    /**
+     * 写入尚未落盘的配置文件
+     */
+    private void flushJsonFile() {
+        log.info("====flush json file====");
+        JsonUtilData.flushAll();
+    }
+
+    /**
+     * 关闭实例连接池
+     */
+    private void shutdownSourcePool() {
+        log.info("====close sourcePool====");
+        SourcePoolManager.closeAll();
+        PoolManager.closeAll();
+    }
 }
@@ -0,0 +1,382 @@
+/*
+ * Copyright (c) Huawei Technologies Co., Ltd. 2012-2022. All rights reserved.
+ */
+
+package org.opengauss.monitor.manager;
+
+import org.opengauss.monitor.config.CollectConfig;
+import org.opengauss.monitor.mapper.SysSourceTargetMapper;
+import org.opengauss.monitor.quartz.domain.SysJob;
+import io.prometheus.client.Collector.MetricFamilySamples;
+import io.prometheus.client.Collector.Type;
+import io.prometheus.client.CollectorRegistry;
+import io.prometheus.client.Counter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+import javax.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.quartz.CronExpression;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * 各任务最新采集结果的快照,每个任务每个实例保存一份不可变快照,发布时整体替换,
+ * 超过collect.staleIntervals个调度周期未更新的快照视为过期并移除;抓取时由ExpositionCache按格式输出
+ *
+ * @author liu
+ * @since 2022-10-01
+ */
+@Slf4j
+@Component
+public class SnapshotCollector {
+    private static final String HELP = "Active transactions.";
+
+    private static final String EVICTED_SERIES = "evicted_series";
+
+    private static final Pattern METRIC_NAME = Pattern.compile("[a-zA-Z_:][a-zA-Z0-9_:]*");
+
+    private static final Pattern LABEL_NAME = Pattern.compile("[a-zA-Z_][a-zA-Z0-9_]*");
+
+    @Autowired
+    private CollectorRegistry collectorRegistry;
+
+    @Autowired
+    private SysSourceTargetMapper sourceTargetMapper;
+
+    /**
+     * jobId#dataSourceId到最新快照
+     */
+    private final Map<String, Snapshot> snapshots = new ConcurrentHashMap<>();
+
+    /**
+     * cron表达式到调度周期(毫秒)
+     */
+    private final Map<String, Long> intervals = new ConcurrentHashMap<>();
+
+    private Counter evictedSeries;
+
+    /**
+     * 快照集合每次变化加一,用于判断输出是否需要重建
+     */
+    private final AtomicLong generation = new AtomicLong();
+
+    private final Object expositionLock = new Object();
+
+    /**
+     * 按ExpositionFormat序号缓存的编码结果及其代次
+     */
+    private final byte[][] expositions = new byte[ExpositionFormat.values().length][];
+
+    private final long[] expositionGenerations = new long[ExpositionFormat.values().length];
+
+    /**
+     * 注册evicted_series,快照本身不注册到CollectorRegistry,由ExpositionCache与其余指标拼接输出
+     */
+    @PostConstruct
+    public void init() {
+        evictedSeries = Counter.build()
+                .name(EVICTED_SERIES)
+                .help("Series dropped because their job stopped updating them within the staleness TTL.")
+                .labelNames("job")
+                .register(collectorRegistry);
+    }
+
+    /**
+     * 创建快照构建器
+     *
+     * @return Builder
+     */
+    public Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * 替换任务在实例上的快照
+     *
+     * @param sysJob       sysJob
+     * @param dataSourceId dataSourceId
+     * @param builder      builder
+     * @return 本次快照的指标族
+     */
+    public List<MetricFamilySamples> update(SysJob sysJob, Long dataSourceId, Builder builder) {
+        long now = System.currentTimeMillis();
+        long expireTime = now + getStaleTtl(sysJob.getCronExpression(), now);
+        List<MetricFamilySamples> families = builder.build();
+        snapshots.put(sysJob.getJobId() + "#" + dataSourceId,
+                new Snapshot(sysJob.getJobId(), sysJob.getJobName(), dataSourceId, expireTime, families));
+        generation.incrementAndGet();
+        return families;
+    }
+
+    /**
+     * 过期时间为调度周期的collect.staleIntervals倍,无法解析周期时使用collect.staleDefaultMillis
+     *
+     * @param cron cron
+     * @param now  now
+     * @return long
+     */
+    private long getStaleTtl(String cron, long now) {
+        if (CollectConfig.getStaleIntervals() <= 0) {
+            return Long.MAX_VALUE / 2;
+        }
+        Long interval = cron == null ? null : intervals.computeIfAbsent(cron, key -> getInterval(key, now));
+        if (interval == null || interval <= 0) {
+            return CollectConfig.getStaleDefaultMillis();
+        }
+        return interval * CollectConfig.getStaleIntervals();
+    }
+
+    private static Long getInterval(String cron, long now) {
+        try {
+            CronExpression expression = new CronExpression(cron);
+            Date next = expression.getNextValidTimeAfter(new Date(now));
+            Date after = next == null ? null : expression.getNextValidTimeAfter(next);
+            return after == null ? 0L : after.getTime() - next.getTime();
+        } catch (ParseException exception) {
+            log.error("stale interval {}-->{}", cron, exception.getMessage());
+            return 0L;
+        }
+    }
+
+    /**
+     * 清理已从实例取消发布、已删除或已过期的快照
+     */
+    private void purge() {
+        long now = System.currentTimeMillis();
+        Iterator<Snapshot> iterator = snapshots.values().iterator();
+        while (iterator.hasNext()) {
+            Snapshot snapshot = iterator.next();
+            if (!sourceTargetMapper.getSourceIdByJobId(snapshot.jobId).contains(snapshot.dataSourceId)) {
+                iterator.remove();
+                generation.incrementAndGet();
+            } else if (now > snapshot.expireTime) {
+                iterator.remove();
+                generation.incrementAndGet();
+                evictedSeries.labels(snapshot.jobName).inc(snapshot.size());
+            }
+        }
+    }
+
+    /**
+     * 按格式输出,快照未变化时直接返回上次结果;每个快照每种格式只在首次输出时编码一次,同名指标跨快照时合并后编码
+     *
+     * @param format format
+     * @return byte[] 不含格式的trailer
+     */
+    public byte[] exposition(ExpositionFormat format) {
+        synchronized (expositionLock) {
+            purge();
+            long current = generation.get();
+            int index = format.ordinal();
+            if (expositions[index] != null && current == expositionGenerations[index]) {
+                return expositions[index];
+            }
+            Map<String, Integer> owners = new HashMap<>();
+            for (Snapshot snapshot : snapshots.values()) {
+                for (MetricFamilySamples family : snapshot.families) {
+                    owners.merge(family.name, 1, Integer::sum);
+                }
+            }
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            Map<String, MetricFamilySamples> shared = new LinkedHashMap<>();
+            for (Snapshot snapshot : snapshots.values()) {
+                if (snapshot.isShared(owners)) {
+                    for (MetricFamilySamples family : snapshot.families) {
+                        if (owners.get(family.name) > 1) {
+                            shared.merge(family.name, family, SnapshotCollector::merge);
+                        } else {
+                            write(output, format, Collections.singletonList(family));
+                        }
+                    }
+                } else {
+                    byte[] encoded = snapshot.encoded(format);
+                    output.write(encoded, 0, encoded.length);
+                }
+            }
+            write(output, format, new ArrayList<>(shared.values()));
+            expositions[index] = output.toByteArray();
+            expositionGenerations[index] = current;
+            return expositions[index];
+        }
+    }
+
+    private static void write(ByteArrayOutputStream output, ExpositionFormat format,
+                              List<MetricFamilySamples> families) {
+        byte[] encoded = encode(format, families);
+        output.write(encoded, 0, encoded.length);
+    }
+
+    private static byte[] encode(ExpositionFormat format, List<MetricFamilySamples> families) {
+        try {
+            return format.encode(families);
+        } catch (IOException exception) {
+            log.error("snapshot encode-->{}", exception.getMessage());
+            return new byte[0];
+        }
+    }
+
+    /**
+     * 多个任务输出同名指标时合并,标签完全相同的样本后者覆盖前者
+     *
+     * @param first  first
+     * @param second second
+     * @return MetricFamilySamples
+     */
+    private static MetricFamilySamples merge(MetricFamilySamples first, MetricFamilySamples second) {
+        Map<List<String>, MetricFamilySamples.Sample> samples = new LinkedHashMap<>();
+        for (MetricFamilySamples.Sample sample : first.samples) {
+            samples.put(sampleKey(sample), sample);
+        }
+        for (MetricFamilySamples.Sample sample : second.samples) {
+            samples.put(sampleKey(sample), sample);
+        }
+        return new MetricFamilySamples(first.name, Type.GAUGE, HELP, new ArrayList<>(samples.values()));
+    }
+
+    private static List<String> sampleKey(MetricFamilySamples.Sample sample) {
+        List<String> key = new ArrayList<>(sample.labelNames);
+        key.addAll(sample.labelValues);
+        return key;
+    }
+
+    /**
+     * 一个任务在一个实例上的最新结果
+     */
+    private static final class Snapshot {
+        private final Long jobId;
+
+        private final String jobName;
+
+        private final Long dataSourceId;
+
+        private final long expireTime;
+
+        private final List<MetricFamilySamples> families;
+
+        /**
+         * 按ExpositionFormat序号保存的编码结果,快照不可变,首次以该格式输出时生成
+         */
+        private final byte[][] encoded = new byte[ExpositionFormat.values().length][];
+
+        private Snapshot(Long jobId, String jobName, Long dataSourceId, long expireTime,
+                         List<MetricFamilySamples> families) {
+            this.jobId = jobId;
+            this.jobName = jobName;
+            this.dataSourceId = dataSourceId;
+            this.expireTime = expireTime;
+            this.families = families;
+        }
+
+        private byte[] encoded(ExpositionFormat format) {
+            int index = format.ordinal();
+            if (encoded[index] == null) {
+                encoded[index] = encode(format, families);
+            }
+            return encoded[index];
+        }
+
+        private boolean isShared(Map<String, Integer> owners) {
+            for (MetricFamilySamples family : families) {
+                if (owners.get(family.name) > 1) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private int size() {
+            int size = 0;
+            for (MetricFamilySamples family : families) {
+                size += family.samples.size();
+            }
+            return size;
+        }
+    }
+
+    /**
+     * 快照构建器,同一指标同一组标签值的样本后者覆盖前者
+     */
+    public static final class Builder {
+        private final Map<String, Map<List<String>, MetricFamilySamples.Sample>> families = new LinkedHashMap<>();
+
+        private Builder() {
+        }
+
+        /**
+         * 添加样本,指标名或标签名不合法时跳过
+         *
+         * @param name        name
+         * @param labelNames  labelNames
+         * @param labelValues labelValues
+         * @param value       value
+         */
+        public void add(String name, String[] labelNames, String[] labelValues, double value) {
+            Map<List<String>, MetricFamilySamples.Sample> samples = families.get(name);
+            if (samples == null) {
+                try {
+                    checkMetricName(name);
+                } catch (IllegalArgumentException exception) {
+                    log.error("snapshot {} skip-->{}", name, exception.getMessage());
+                    return;
+                }
+                samples = new LinkedHashMap<>();
+                families.put(name, samples);
+            }
+            List<String> names = Arrays.asList(labelNames);
+            List<String> values = Arrays.asList(labelValues);
+            try {
+                for (String labelName : labelNames) {
+                    checkLabelName(labelName);
+                }
+            } catch (IllegalArgumentException exception) {
+                log.error("snapshot {} skip-->{}", name, exception.getMessage());
+                return;
+            }
+            List<String> key = new ArrayList<>(names);
+            key.addAll(values);
+            samples.put(key, new MetricFamilySamples.Sample(name, names, values, value));
+        }
+
+        private static void checkMetricName(String name) {
+            if (!METRIC_NAME.matcher(name).matches()) {
+                throw new IllegalArgumentException("Invalid metric name: " + name);
+            }
+        }
+
+        /**
+         * 与Collector的校验一致,双下划线开头的标签名为保留名称
+         *
+         * @param name name
+         */
+        private static void checkLabelName(String name) {
+            if (!LABEL_NAME.matcher(name).matches() || name.startsWith("__")) {
+                throw new IllegalArgumentException("Invalid metric label name: " + name);
+            }
+        }
+
+        private List<MetricFamilySamples> build() {
+            List<MetricFamilySamples> result = new ArrayList<>(families.size());
+            for (Map.Entry<String, Map<List<String>, MetricFamilySamples.Sample>> entry : families.entrySet()) {
+                if (entry.getValue().isEmpty()) {
+                    continue;
+                }
+                result.add(new MetricFamilySamples(entry.getKey(), Type.GAUGE, HELP,
+                        Collections.unmodifiableList(new ArrayList<>(entry.getValue().values()))));
+            }
+            return Collections.unmodifiableList(result);
+        }
+    }
+}
@@ -9,10 +9,8 @@ import org.opengauss.monitor.mapper.SysSourceTargetMapper;
 import org.opengauss.monitor.quartz.domain.SysJob;
 import org.opengauss.monitor.quartz.task.MonitorTask;
 import org.opengauss.monitor.quartz.util.spring.MonitSpringUtils;
-import org.opengauss.monitor.service.impl.MeterServiceImpl;
 import org.opengauss.monitor.service.impl.SysJobServiceImpl;
 import java.util.List;
-import java.util.Map;
 import java.util.TimerTask;
 
 /**
@@ -41,24 +39,6 @@ public class AsyncFactory {
         };
     }
 
-    /**
-     * removeRegistry
-     *
-     * @param gaugeName gaugeName
-     * @return TimerTask
-     */
-    public static TimerTask removeRegistry(final List<String> gaugeName) {
-        return new TimerTask() {
-            /**
-             * run
-             */
-            @Override
-            public void run() {
-                MonitSpringUtils.getClass(MeterServiceImpl.class).removeRegister(gaugeName);
-            }
-        };
-    }
-
     /**
      * removeJobId
      *
@@ -94,24 +74,6 @@ public class AsyncFactory {
         };
     }
 
-    /**
-     * reportNagios
-     *
-     * @param nagiosMap nagiosMap
-     * @return TimerTask
-     */
-    public static TimerTask reportNagios(final Map<String, Object> nagiosMap) {
-        return new TimerTask() {
-            /**
-             * run
-             */
-            @Override
-            public void run() {
-                MonitSpringUtils.getClass(MeterServiceImpl.class).reportNagios(nagiosMap);
-            }
-        };
-    }
-
     /**
      * recordNagios
      *
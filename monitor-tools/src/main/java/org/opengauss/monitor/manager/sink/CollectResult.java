@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) Huawei Technologies Co., Ltd. 2012-2022. All rights reserved.
+ */
+
+package org.opengauss.monitor.manager.sink;
+
+import org.opengauss.monitor.entity.SysConfig;
+import org.opengauss.monitor.quartz.domain.SysJob;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 一个任务在一个实例上的一次采集结果,已拆分为标签和数值,各输出端只读共用
+ *
+ * @author liu
+ * @since 2022-10-01
+ */
+public class CollectResult {
+    private final SysJob sysJob;
+
+    private final SysConfig sysConfig;
+
+    private final String task;
+
+    private final long time;
+
+    private final List<Sample> samples = new ArrayList<>();
+
+    /**
+     * CollectResult
+     *
+     * @param sysJob    sysJob
+     * @param sysConfig sysConfig
+     * @param task      task
+     * @param time      采集时间(毫秒)
+     */
+    public CollectResult(SysJob sysJob, SysConfig sysConfig, String task, long time) {
+        this.sysJob = sysJob;
+        this.sysConfig = sysConfig;
+        this.task = task;
+        this.time = time;
+    }
+
+    /**
+     * 添加一个数值
+     *
+     * @param column      列名
+     * @param row         行号
+     * @param labelNames  labelNames
+     * @param labelValues labelValues
+     * @param cell        查询返回的原值,派生值与value相同
+     * @param value       value
+     */
+    public void add(String column, int row, String[] labelNames, String[] labelValues, Object cell, double value) {
+        samples.add(new Sample(column, row, labelNames, labelValues, cell, value));
+    }
+
+    public SysJob getSysJob() {
+        return sysJob;
+    }
+
+    public SysConfig getSysConfig() {
+        return sysConfig;
+    }
+
+    public String getTask() {
+        return task;
+    }
+
+    public long getTime() {
+        return time;
+    }
+
+    public List<Sample> getSamples() {
+        return samples;
+    }
+
+    /**
+     * 一行中的一个数值列
+     */
+    public static final class Sample {
+        private final String column;
+
+        private final int row;
+
+        private final String[] labelNames;
+
+        private final String[] labelValues;
+
+        private final Object cell;
+
+        private final double value;
+
+        private Sample(String column, int row, String[] labelNames, String[] labelValues, Object cell, double value) {
+            this.column = column;
+            this.row = row;
+            this.labelNames = labelNames;
+            this.labelValues = labelValues;
+            this.cell = cell;
+            this.value = value;
+        }
+
+        public String getColumn() {
+            return column;
+        }
+
+        public int getRow() {
+            return row;
+        }
+
+        public String[] getLabelNames() {
+            return labelNames;
+        }
+
+        public String[] getLabelValues() {
+            return labelValues;
+        }
+
+        public Object getCell() {
+            return cell;
+        }
+
+        public double getValue() {
+            return value;
+        }
+    }
+}
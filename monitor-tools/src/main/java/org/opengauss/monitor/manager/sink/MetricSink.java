@@ -0,0 +1,37 @@
+/*
+ * Copyright (c) Huawei Technologies Co., Ltd. 2012-2022. All rights reserved.
+ */
+
+package org.opengauss.monitor.manager.sink;
+
+import org.opengauss.monitor.quartz.domain.SysJob;
+
+/**
+ * 采集结果的输出端,注册为spring bean即生效,每个输出端有独立的队列和线程,互不阻塞
+ *
+ * @author liu
+ * @since 2022-10-01
+ */
+public interface MetricSink {
+    /**
+     * 输出端名称,用于线程名和指标标签
+     *
+     * @return String
+     */
+    String getName();
+
+    /**
+     * 是否接收该任务的采集结果
+     *
+     * @param sysJob sysJob
+     * @return boolean
+     */
+    boolean accept(SysJob sysJob);
+
+    /**
+     * 输出一次采集结果,在输出端自己的线程中按提交顺序调用
+     *
+     * @param result result
+     */
+    void write(CollectResult result);
+}
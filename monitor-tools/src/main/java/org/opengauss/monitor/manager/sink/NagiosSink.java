@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) Huawei Technologies Co., Ltd. 2012-2022. All rights reserved.
+ */
+
+package org.opengauss.monitor.manager.sink;
+
+import cn.hutool.core.util.ObjectUtil;
+import org.opengauss.monitor.common.contant.ConmmonShare;
+import org.opengauss.monitor.entity.SysConfig;
+import org.opengauss.monitor.mapper.SysConfigMapper;
+import org.opengauss.monitor.quartz.domain.SysJob;
+import org.opengauss.monitor.service.impl.NagiosServiceImpl;
+import java.util.HashMap;
+import java.util.Map;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * nagios输出端,按"列名_任务名_实例名_行号"写入nagios检查脚本;ssh写入较慢,在输出端线程中执行,不占用采集线程
+ *
+ * @author liu
+ * @since 2022-10-01
+ */
+@Component
+public class NagiosSink implements MetricSink {
+    @Autowired
+    private NagiosServiceImpl nagiosServiceImpl;
+
+    @Autowired
+    private SysConfigMapper sysConfigMapper;
+
+    @Override
+    public String getName() {
+        return "nagios";
+    }
+
+    @Override
+    public boolean accept(SysJob sysJob) {
+        return ConmmonShare.NAGIOS.equals(sysJob.getPlatform());
+    }
+
+    @Override
+    public void write(CollectResult result) {
+        if (result.getSamples().isEmpty()) {
+            return;
+        }
+        SysConfig nagiosConfig = sysConfigMapper.getNagiosConfig();
+        if (ObjectUtil.isEmpty(nagiosConfig)) {
+            return;
+        }
+        String suffix = "_" + result.getTask() + "_" + result.getSysConfig().getConnectName() + "_";
+        Map<String, Object> nagiosMap = new HashMap<>();
+        for (CollectResult.Sample sample : result.getSamples()) {
+            nagiosMap.put(sample.getColumn() + suffix + sample.getRow(), sample.getCell());
+        }
+        nagiosServiceImpl.writeSh(nagiosMap, nagiosConfig);
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) Huawei Technologies Co., Ltd. 2012-2022. All rights reserved.
+ */
+
+package org.opengauss.monitor.manager.sink;
+
+import org.opengauss.monitor.common.contant.ConmmonShare;
+import org.opengauss.monitor.manager.HistoryStore;
+import org.opengauss.monitor.manager.RemoteWriteManager;
+import org.opengauss.monitor.manager.SnapshotCollector;
+import org.opengauss.monitor.quartz.domain.SysJob;
+import io.prometheus.client.Collector;
+import java.util.List;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * prometheus输出端,替换任务在实例上的快照,并写入本地历史和remote write;
+ * zabbix通过http agent抓取/prometheus,同样使用该输出端
+ *
+ * @author liu
+ * @since 2022-10-01
+ */
+@Component
+public class PrometheusSink implements MetricSink {
+    @Autowired
+    private SnapshotCollector snapshotCollector;
+
+    @Autowired
+    private HistoryStore historyStore;
+
+    @Autowired
+    private RemoteWriteManager remoteWriteManager;
+
+    @Override
+    public String getName() {
+        return "prometheus";
+    }
+
+    @Override
+    public boolean accept(SysJob sysJob) {
+        return !ConmmonShare.NAGIOS.equals(sysJob.getPlatform());
+    }
+
+    @Override
+    public void write(CollectResult result) {
+        String suffix = "_" + result.getTask() + "_" + result.getSysConfig().getConnectName();
+        SnapshotCollector.Builder snapshot = snapshotCollector.builder();
+        for (CollectResult.Sample sample : result.getSamples()) {
+            snapshot.add(sample.getColumn() + suffix, sample.getLabelNames(), sample.getLabelValues(),
+                    sample.getValue());
+        }
+        // 整体替换该任务在该实例上的快照,本次结果中消失的行不再输出
+        List<Collector.MetricFamilySamples> families =
+                snapshotCollector.update(result.getSysJob(), result.getSysConfig().getDataSourceId(), snapshot);
+        historyStore.append(families, result.getTime());
+        remoteWriteManager.offer(families, result.getTime());
+    }
+}
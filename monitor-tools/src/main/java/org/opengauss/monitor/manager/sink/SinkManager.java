@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) Huawei Technologies Co., Ltd. 2012-2022. All rights reserved.
+ */
+
+package org.opengauss.monitor.manager.sink;
+
+import org.opengauss.monitor.config.CollectConfig;
+import io.prometheus.client.CollectorRegistry;
+import io.prometheus.client.Counter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * 把一次采集结果分发给所有接收该任务的输出端,每个输出端一个有界队列和一个线程,
+ * 慢输出端只会丢弃自己队列中放不下的结果,不影响采集和其他输出端
+ *
+ * @author liu
+ * @since 2022-10-01
+ */
+@Slf4j
+@Component
+public class SinkManager {
+    private static final String SINK_DROPPED = "sink_dropped";
+
+    private static final long JOIN_MILLIS = 5000L;
+
+    /**
+     * 停止标记,输出线程写完它之前入队的结果后退出
+     */
+    private static final CollectResult STOP = new CollectResult(null, null, null, 0L);
+
+    @Autowired
+    private CollectorRegistry collectorRegistry;
+
+    @Autowired
+    private List<MetricSink> sinks;
+
+    private final List<Worker> workers = new ArrayList<>();
+
+    private Counter dropped;
+
+    /**
+     * 为每个输出端启动线程
+     */
+    @PostConstruct
+    public void init() {
+        dropped = Counter.build()
+                .name(SINK_DROPPED)
+                .help("Collect results dropped because the sink queue was full.")
+                .labelNames("sink")
+                .register(collectorRegistry);
+        for (MetricSink sink : sinks) {
+            Worker worker = new Worker(sink);
+            worker.thread = new BasicThreadFactory.Builder().namingPattern("sink-" + sink.getName() + "-%d")
+                    .daemon(true).build().newThread(worker::run);
+            worker.thread.start();
+            workers.add(worker);
+        }
+    }
+
+    /**
+     * 分发采集结果
+     *
+     * @param result result
+     */
+    public void dispatch(CollectResult result) {
+        for (Worker worker : workers) {
+            if (!worker.sink.accept(result.getSysJob())) {
+                continue;
+            }
+            if (!worker.queue.offer(result)) {
+                dropped.labels(worker.sink.getName()).inc();
+                log.warn("sink {} queue full, drop-->{}", worker.sink.getName(), result.getTask());
+            }
+        }
+    }
+
+    /**
+     * 停止输出线程,队列中剩余的结果由输出线程写完后退出,需在停止采集之后调用;
+     * 只有输出线程已经退出时才在当前线程写剩余的结果,避免同一输出端被两个线程并发写
+     */
+    public void shutdown() {
+        for (Worker worker : workers) {
+            try {
+                if (!worker.queue.offer(STOP, JOIN_MILLIS, TimeUnit.MILLISECONDS)) {
+                    // 输出端卡住,队列一直是满的,中断线程
+                    worker.thread.interrupt();
+                }
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+                worker.thread.interrupt();
+            }
+        }
+        for (Worker worker : workers) {
+            try {
+                worker.thread.join(JOIN_MILLIS);
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+            }
+            if (worker.thread.isAlive()) {
+                log.warn("sink {} still writing, skip {} queued results", worker.sink.getName(),
+                        worker.queue.size());
+                continue;
+            }
+            List<CollectResult> rest = new ArrayList<>();
+            worker.queue.drainTo(rest);
+            rest.stream().filter(result -> result != STOP).forEach(worker::write);
+        }
+    }
+
+    /**
+     * 一个输出端的队列和线程
+     */
+    private static final class Worker {
+        private final MetricSink sink;
+
+        private final BlockingQueue<CollectResult> queue =
+                new ArrayBlockingQueue<>(Math.max(CollectConfig.getSinkQueueCapacity(), 1));
+
+        private Thread thread;
+
+        private Worker(MetricSink sink) {
+            this.sink = sink;
+        }
+
+        private void run() {
+            while (true) {
+                CollectResult result;
+                try {
+                    result = queue.take();
+                } catch (InterruptedException exception) {
+                    return;
+                }
+                if (result == STOP) {
+                    return;
+                }
+                write(result);
+            }
+        }
+
+        private void write(CollectResult result) {
+            try {
+                sink.write(result);
+            } catch (RuntimeException exception) {
+                log.error("sink {} fail-->{}", sink.getName(), exception.getMessage());
+            }
+        }
+    }
+}
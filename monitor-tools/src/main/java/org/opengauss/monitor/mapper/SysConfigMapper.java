@@ -15,18 +15,23 @@ import org.opengauss.monitor.config.ZabbixConfig;
 import org.opengauss.monitor.entity.JsonConfig;
 import org.opengauss.monitor.entity.SysConfig;
 import org.opengauss.monitor.entity.SysSourceTarget;
+import org.opengauss.monitor.manager.CircuitBreakerManager;
 import org.opengauss.monitor.service.MonitorFlake;
 import org.opengauss.monitor.service.impl.NagiosServiceImpl;
 import org.opengauss.monitor.util.Base64;
 import org.opengauss.monitor.util.ConnectionUtil;
 import org.opengauss.monitor.util.JsonUtilData;
+import org.opengauss.monitor.util.jdbc.JdbcUtil;
+import org.opengauss.monitor.util.jdbc.PoolManager;
+import org.opengauss.monitor.util.jdbc.SourcePoolManager;
 import java.io.IOException;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Objects;
+import java.util.Map;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
@@ -34,6 +39,8 @@ import java.util.concurrent.Future;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.stream.Collectors;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -66,17 +73,118 @@ public class SysConfigMapper {
     @Autowired
     private SysSourceTargetMapper sourceTargetMapper;
 
+    @Autowired
+    private CircuitBreakerManager breakerManager;
+
+    /**
+     * dataSourceId索引,config.json只在首次访问时加载,修改后延迟合并写回
+     */
+    private final Map<Long, SysConfig> configIndex = new LinkedHashMap<>();
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private volatile boolean isLoaded = false;
+
+    private void load() {
+        if (isLoaded) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (!isLoaded) {
+                JsonConfig jsonConfig =
+                        JsonUtilData.jsonFileToObject(FileConfig.getDataSourceConfig(), JsonConfig.class);
+                if (jsonConfig != null && CollectionUtil.isNotEmpty(jsonConfig.getSysConfigs())) {
+                    for (SysConfig sysConfig : jsonConfig.getSysConfigs()) {
+                        configIndex.putIfAbsent(sysConfig.getDataSourceId(), sysConfig);
+                    }
+                }
+                isLoaded = true;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 用sysConfigList替换全部配置并写回config.json
+     *
+     * @param sysConfigList sysConfigList
+     */
+    private void saveAll(List<SysConfig> sysConfigList) {
+        lock.writeLock().lock();
+        try {
+            configIndex.clear();
+            for (SysConfig sysConfig : sysConfigList) {
+                configIndex.put(sysConfig.getDataSourceId(), copy(sysConfig));
+            }
+            JsonConfig jsonConfig = new JsonConfig();
+            jsonConfig.setSysConfigs(new ArrayList<>(configIndex.values()));
+            JsonUtilData.objectToJsonFileLater(FileConfig.getDataSourceConfig(), jsonConfig);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 复制配置,调用方修改返回对象(如解码密码)不影响缓存
+     *
+     * @param sysConfig sysConfig
+     * @return SysConfig
+     */
+    private static SysConfig copy(SysConfig sysConfig) {
+        SysConfig result = new SysConfig();
+        result.setDataSourceId(sysConfig.getDataSourceId());
+        result.setConnectName(sysConfig.getConnectName());
+        result.setIp(sysConfig.getIp());
+        result.setContainerIp(sysConfig.getContainerIp());
+        result.setContainerPort(sysConfig.getContainerPort());
+        result.setServerIp(sysConfig.getServerIp());
+        result.setClientIp(sysConfig.getClientIp());
+        result.setPort(sysConfig.getPort());
+        result.setDriver(sysConfig.getDriver());
+        result.setUserName(sysConfig.getUserName());
+        result.setServerName(sysConfig.getServerName());
+        result.setClientName(sysConfig.getClientName());
+        result.setPassword(sysConfig.getPassword());
+        result.setServerPassword(sysConfig.getServerPassword());
+        result.setClientPassword(sysConfig.getClientPassword());
+        result.setClientPath(sysConfig.getClientPath());
+        result.setServerPath(sysConfig.getServerPath());
+        result.setUrl(sysConfig.getUrl());
+        result.setCreateTime(sysConfig.getCreateTime());
+        result.setDataBaseName(sysConfig.getDataBaseName());
+        result.setPoolSize(sysConfig.getPoolSize());
+        result.setPlatform(sysConfig.getPlatform());
+        result.setLastReleaseTime(sysConfig.getLastReleaseTime());
+        result.setTime(sysConfig.getTime());
+        result.setIsCreate(sysConfig.getIsCreate());
+        if (sysConfig.getJobIds() != null) {
+            result.setJobIds(new ArrayList<>(sysConfig.getJobIds()));
+        }
+        if (sysConfig.getTargets() != null) {
+            result.setTargets(new ArrayList<>(sysConfig.getTargets()));
+        }
+        return result;
+    }
+
     /**
      * getAllConfig
      *
      * @return list
      */
     public List<SysConfig> getAllConfig() {
-        JsonConfig jsonConfig = JsonUtilData.jsonFileToObject(FileConfig.getDataSourceConfig(), JsonConfig.class);
-        if (jsonConfig == null || CollectionUtil.isEmpty(jsonConfig.getSysConfigs())) {
-            return new ArrayList<>();
+        load();
+        lock.readLock().lock();
+        try {
+            List<SysConfig> result = new ArrayList<>(configIndex.size());
+            for (SysConfig sysConfig : configIndex.values()) {
+                result.add(copy(sysConfig));
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
         }
-        return jsonConfig.getSysConfigs();
     }
 
     /**
@@ -86,12 +194,14 @@ public class SysConfigMapper {
      * @return SysConfig
      */
     public SysConfig getConfigByid(Long id) {
-        List<SysConfig> sysConfigList = getAllConfig();
-        SysConfig config = null;
-        config = sysConfigList.stream()
-                .filter(s -> Objects.equals(s.getDataSourceId(), id))
-                .findFirst().orElse(null);
-        return config;
+        load();
+        lock.readLock().lock();
+        try {
+            SysConfig sysConfig = configIndex.get(id);
+            return sysConfig == null ? null : copy(sysConfig);
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
     /**
@@ -141,13 +251,17 @@ public class SysConfigMapper {
         if (CollectionUtil.isEmpty(ids)) {
             return result;
         }
-        List<SysConfig> sysConfigList = getAllConfig();
-        for (Long id : ids) {
-            for (SysConfig sysConfig : sysConfigList) {
-                if (id.equals(sysConfig.getDataSourceId())) {
-                    result.add(sysConfig);
+        load();
+        lock.readLock().lock();
+        try {
+            for (Long id : ids) {
+                SysConfig sysConfig = configIndex.get(id);
+                if (sysConfig != null) {
+                    result.add(copy(sysConfig));
                 }
             }
+        } finally {
+            lock.readLock().unlock();
         }
         return result;
     }
@@ -207,9 +321,9 @@ public class SysConfigMapper {
             sysConfigList = deleteBatchByIds(Arrays.asList(nagios.get(0).getDataSourceId()));
         }
         sysConfigList.add(sysConfig);
-        JsonConfig jsonConfig = new JsonConfig();
-        jsonConfig.setSysConfigs(sysConfigList);
-        JsonUtilData.objectToJsonFile(FileConfig.getDataSourceConfig(), jsonConfig);
+        // 配置变更后旧连接池失效
+        SourcePoolManager.removeSourcePool(sysConfig.getDataSourceId());
+        saveAll(sysConfigList);
         return "";
     }
 
@@ -331,9 +445,7 @@ public class SysConfigMapper {
         sysConfig.setPassword(Base64.encode(sysConfig.getPassword()));
         List<SysConfig> newList = deleteBatchByIds(Arrays.asList(sysConfig.getDataSourceId()));
         newList.add(sysConfig);
-        JsonConfig jsonConfig = new JsonConfig();
-        jsonConfig.setSysConfigs(newList);
-        JsonUtilData.objectToJsonFile(FileConfig.getDataSourceConfig(), jsonConfig);
+        saveAll(newList);
         return "";
     }
 
@@ -404,9 +516,14 @@ public class SysConfigMapper {
             }
         }
         sysConfigs.removeAll(result);
-        JsonConfig jsonConfig = new JsonConfig();
-        jsonConfig.setSysConfigs(sysConfigs);
-        JsonUtilData.objectToJsonFile(FileConfig.getDataSourceConfig(), jsonConfig);
+        saveAll(sysConfigs);
+        SourcePoolManager.removeSourcePool(ids);
+        for (SysConfig removed : result) {
+            breakerManager.remove(removed);
+            if (ConmmonShare.ZABBIX.equals(removed.getPlatform())) {
+                PoolManager.removeJdbcConnectionPool(JdbcUtil.getPoolKey(removed));
+            }
+        }
         return sysConfigs;
     }
 }
@@ -5,17 +5,22 @@
 package org.opengauss.monitor.mapper;
 
 import cn.hutool.core.collection.CollectionUtil;
-import cn.hutool.core.util.ObjectUtil;
 import org.opengauss.monitor.common.contant.ConmmonShare;
 import org.opengauss.monitor.config.FileConfig;
+import org.opengauss.monitor.entity.JournalRecord;
 import org.opengauss.monitor.entity.JsonTask;
 import org.opengauss.monitor.quartz.domain.SysJob;
 import org.opengauss.monitor.util.AssertUtil;
+import org.opengauss.monitor.util.ChangeJournal;
 import org.opengauss.monitor.util.JsonUtilData;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Objects;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.stream.Collectors;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
 /**
@@ -24,19 +29,156 @@ import org.springframework.stereotype.Service;
  * @author liu
  * @since 2022-10-01
  */
+@Slf4j
 @Service
 public class SysJobMapper {
+    /**
+     * jobId索引,task.json只在首次访问时加载,修改追加到task.json.journal,达到file.compactSize后合并回task.json
+     */
+    private final Map<Long, SysJob> jobIndex = new LinkedHashMap<>();
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private volatile boolean isLoaded = false;
+
+    private ChangeJournal journal;
+
+    private void load() {
+        if (isLoaded) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (!isLoaded) {
+                JsonTask jsonTask = JsonUtilData.jsonFileToObject(FileConfig.getTaskConfig(), JsonTask.class);
+                if (jsonTask != null && CollectionUtil.isNotEmpty(jsonTask.getSysJobs())) {
+                    for (SysJob sysJob : jsonTask.getSysJobs()) {
+                        jobIndex.putIfAbsent(sysJob.getJobId(), sysJob);
+                    }
+                }
+                journal = new ChangeJournal(FileConfig.getTaskConfig());
+                for (JournalRecord record : journal.replay()) {
+                    apply(record);
+                }
+                if (!journal.isEmpty()) {
+                    compactLocked();
+                }
+                isLoaded = true;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 重放一条变更记录,记录可能已包含在快照中,需保证重复应用结果不变
+     *
+     * @param record record
+     */
+    private void apply(JournalRecord record) {
+        if (JournalRecord.JOB_STATUS.equals(record.getType())) {
+            SysJob sysJob = jobIndex.get(record.getId());
+            if (sysJob != null) {
+                sysJob.setStatus(record.getStatus());
+            }
+        } else if (JournalRecord.JOB_INSERT.equals(record.getType())) {
+            jobIndex.put(record.getSysJob().getJobId(), record.getSysJob());
+        } else if (JournalRecord.JOB_DELETE.equals(record.getType())) {
+            for (Long id : record.getIds()) {
+                jobIndex.remove(id);
+            }
+        } else {
+            log.warn("task journal unknown record-->{}", record.getType());
+        }
+    }
+
+    private void record(JournalRecord record) {
+        if (journal.append(record)) {
+            journal.compactLater(this::compact);
+        }
+    }
+
+    private void compact() {
+        lock.readLock().lock();
+        try {
+            compactLocked();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 写入完整快照后清空日志,调用方需持有锁以阻止并发修改
+     */
+    private void compactLocked() {
+        JsonTask jsonTask = new JsonTask();
+        jsonTask.setSysJobs(new ArrayList<>(jobIndex.values()));
+        if (JsonUtilData.objectToJsonFile(FileConfig.getTaskConfig(), jsonTask)) {
+            journal.reset();
+        }
+    }
+
+    /**
+     * 复制任务,调用方修改返回对象不影响缓存
+     *
+     * @param sysJob sysJob
+     * @return SysJob
+     */
+    private static SysJob copy(SysJob sysJob) {
+        SysJob result = new SysJob();
+        sysJob.copyBasicTo(result);
+        result.setJobId(sysJob.getJobId());
+        result.setDataSourceId(sysJob.getDataSourceId());
+        result.setIsCreate(sysJob.getIsCreate());
+        result.setIsFalse(sysJob.getIsFalse());
+        result.setTarget(sysJob.getTarget());
+        result.setNum(sysJob.getNum());
+        result.setTimeType(sysJob.getTimeType());
+        result.setTime(sysJob.getTime());
+        result.setStartTime(sysJob.getStartTime());
+        result.setJobName(sysJob.getJobName());
+        result.setJobGroup(sysJob.getJobGroup());
+        result.setTargetGroup(sysJob.getTargetGroup());
+        result.setPlatform(sysJob.getPlatform());
+        result.setInvokeTarget(sysJob.getInvokeTarget());
+        result.setCronExpression(sysJob.getCronExpression());
+        result.setMisfirePolicy(sysJob.getMisfirePolicy());
+        result.setConcurrent(sysJob.getConcurrent());
+        result.setStatus(sysJob.getStatus());
+        result.setIsPbulish(sysJob.getIsPbulish());
+        result.setIsCanUpdate(sysJob.getIsCanUpdate());
+        result.setIsManagement(sysJob.getIsManagement());
+        result.setQueryTimeout(sysJob.getQueryTimeout());
+        result.setCacheTtl(sysJob.getCacheTtl());
+        if (sysJob.getColumn() != null) {
+            result.setColumn(new ArrayList<>(sysJob.getColumn()));
+        }
+        if (sysJob.getTimeInterval() != null) {
+            result.setTimeInterval(new ArrayList<>(sysJob.getTimeInterval()));
+        }
+        if (sysJob.getRateColumns() != null) {
+            result.setRateColumns(new ArrayList<>(sysJob.getRateColumns()));
+        }
+        return result;
+    }
+
     /**
      * 查询所有调度任务
      *
      * @return 调度任务列表
      */
     public List<SysJob> selectJobAll() {
-        JsonTask jsonTask = JsonUtilData.jsonFileToObject(FileConfig.getTaskConfig(), JsonTask.class);
-        if (jsonTask == null || CollectionUtil.isEmpty(jsonTask.getSysJobs())) {
-            return new ArrayList<>();
+        load();
+        lock.readLock().lock();
+        try {
+            List<SysJob> result = new ArrayList<>(jobIndex.size());
+            for (SysJob sysJob : jobIndex.values()) {
+                result.add(copy(sysJob));
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
         }
-        return jsonTask.getSysJobs();
     }
 
     /**
@@ -46,12 +188,14 @@ public class SysJobMapper {
      * @return 角色对象信息
      */
     public SysJob selectJobById(Long jobId) {
-        List<SysJob> sysJobList = selectJobAll();
-        SysJob sysJob = null;
-        if (CollectionUtil.isNotEmpty(sysJobList)) {
-            sysJob = sysJobList.stream().filter(s -> Objects.equals(s.getJobId(), jobId)).findFirst().orElse(null);
+        load();
+        lock.readLock().lock();
+        try {
+            SysJob sysJob = jobIndex.get(jobId);
+            return sysJob == null ? null : copy(sysJob);
+        } finally {
+            lock.readLock().unlock();
         }
-        return sysJob;
     }
 
     /**
@@ -61,19 +205,23 @@ public class SysJobMapper {
      * @return 角色对象信息
      */
     public List<SysJob> selectBatchJobByIds(List<Long> ids) {
-        List<SysJob> sysJobs = selectJobAll();
-        List<SysJob> result = new ArrayList<>();
         if (CollectionUtil.isEmpty(ids)) {
             return new ArrayList<>();
         }
-        for (Long id : ids) {
-            for (SysJob sysJob : sysJobs) {
-                if (id.equals(sysJob.getJobId())) {
-                    result.add(sysJob);
+        load();
+        lock.readLock().lock();
+        try {
+            List<SysJob> result = new ArrayList<>();
+            for (Long id : ids) {
+                SysJob sysJob = jobIndex.get(id);
+                if (sysJob != null) {
+                    result.add(copy(sysJob));
                 }
             }
+            return result;
+        } finally {
+            lock.readLock().unlock();
         }
-        return result;
     }
 
 
@@ -84,20 +232,21 @@ public class SysJobMapper {
      * @return 结果
      */
     public Boolean deleteJobByIds(List<Long> ids) {
-        List<SysJob> sysJobs = selectJobAll();
-        List<SysJob> result = new ArrayList<>();
-        for (SysJob sysJob : sysJobs) {
+        load();
+        lock.writeLock().lock();
+        try {
+            boolean isDelete = false;
             for (Long id : ids) {
-                if (id.equals(sysJob.getJobId())) {
-                    result.add(sysJob);
-                }
+                isDelete = jobIndex.remove(id) != null || isDelete;
             }
+            JournalRecord record = new JournalRecord();
+            record.setType(JournalRecord.JOB_DELETE);
+            record.setIds(new ArrayList<>(ids));
+            record(record);
+            return isDelete;
+        } finally {
+            lock.writeLock().unlock();
         }
-        Boolean isDelete = sysJobs.removeAll(result);
-        JsonTask jsonTask = new JsonTask();
-        jsonTask.setSysJobs(sysJobs);
-        JsonUtilData.objectToJsonFile(FileConfig.getTaskConfig(), jsonTask);
-        return isDelete;
     }
 
     /**
@@ -107,38 +256,46 @@ public class SysJobMapper {
      * @return 结果
      */
     public int updateJob(SysJob job) {
-        List<SysJob> sysJobs = selectJobAll();
-        AssertUtil.isTrue(CollectionUtil.isEmpty(sysJobs), "没有定时任务");
-        SysJob sysJob = sysJobs.stream()
-                .filter(item -> ObjectUtil.isNotEmpty(item) && item.getJobId().equals(job.getJobId()))
-                .findFirst().orElse(null);
-        if (sysJob == null) {
-            return 0;
-        }
-        for (SysJob item : sysJobs) {
-            if (item.getJobId().equals(job.getJobId())) {
-                item.setStatus(job.getStatus());
+        load();
+        lock.writeLock().lock();
+        try {
+            AssertUtil.isTrue(jobIndex.isEmpty(), "没有定时任务");
+            SysJob sysJob = jobIndex.get(job.getJobId());
+            if (sysJob == null) {
+                return 0;
             }
+            sysJob.setStatus(job.getStatus());
+            JournalRecord record = new JournalRecord();
+            record.setType(JournalRecord.JOB_STATUS);
+            record.setId(job.getJobId());
+            record.setStatus(job.getStatus());
+            record(record);
+            return 1;
+        } finally {
+            lock.writeLock().unlock();
         }
-        JsonTask jsonTask = new JsonTask();
-        jsonTask.setSysJobs(sysJobs);
-        JsonUtilData.objectToJsonFile(FileConfig.getTaskConfig(), jsonTask);
-        return 1;
     }
 
     /**
-     * 新增调度任务信息
+     * 新增调度任务信息,jobId已存在时覆盖
      *
      * @param job 调度任务信息
      * @return 结果
      */
     public int insertJob(SysJob job) {
-        List<SysJob> sysJobs = selectJobAll();
-        sysJobs.add(job);
-        JsonTask jsonTask = new JsonTask();
-        jsonTask.setSysJobs(sysJobs);
-        JsonUtilData.objectToJsonFile(FileConfig.getTaskConfig(), jsonTask);
-        return 1;
+        load();
+        lock.writeLock().lock();
+        try {
+            SysJob sysJob = copy(job);
+            jobIndex.put(job.getJobId(), sysJob);
+            JournalRecord record = new JournalRecord();
+            record.setType(JournalRecord.JOB_INSERT);
+            record.setSysJob(sysJob);
+            record(record);
+            return 1;
+        } finally {
+            lock.writeLock().unlock();
+        }
     }
 
     /**
@@ -147,12 +304,14 @@ public class SysJobMapper {
      * @return list
      */
     public List<String> getGroup() {
-        List<SysJob> sysJobs = selectJobAll();
-        if (CollectionUtil.isEmpty(sysJobs)) {
-            return new ArrayList<>();
+        load();
+        lock.readLock().lock();
+        try {
+            return jobIndex.values().stream()
+                    .filter(item -> !item.getTargetGroup().equals(ConmmonShare.SYSTEMTARGET))
+                    .map(SysJob::getTargetGroup).distinct().collect(Collectors.toList());
+        } finally {
+            lock.readLock().unlock();
         }
-        List<String> list = sysJobs.stream().filter(item -> !item.getTargetGroup().equals(ConmmonShare.SYSTEMTARGET))
-                .map(SysJob::getTargetGroup).distinct().collect(Collectors.toList());
-        return list;
     }
 }
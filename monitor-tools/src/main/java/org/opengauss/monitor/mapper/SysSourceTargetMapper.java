@@ -5,15 +5,23 @@
 package org.opengauss.monitor.mapper;
 
 import cn.hutool.core.collection.CollectionUtil;
-import cn.hutool.core.util.ObjectUtil;
 import org.opengauss.monitor.config.FileConfig;
+import org.opengauss.monitor.entity.JournalRecord;
 import org.opengauss.monitor.entity.JsonSourceTarget;
 import org.opengauss.monitor.entity.SysSourceTarget;
 import org.opengauss.monitor.quartz.domain.SysJob;
+import org.opengauss.monitor.util.ChangeJournal;
 import org.opengauss.monitor.util.JsonUtilData;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
 /**
@@ -22,20 +30,168 @@ import org.springframework.stereotype.Service;
  * @author liu
  * @since 2022-10-01
  */
+@Slf4j
 @Service
 public class SysSourceTargetMapper {
+    /**
+     * dataSourceId索引,relation.json只在首次访问时加载,修改追加到relation.json.journal,达到file.compactSize后合并回relation.json
+     */
+    private final Map<Long, SysSourceTarget> sourceIndex = new LinkedHashMap<>();
+
+    /**
+     * jobId到dataSourceId的反向索引,每次修改后重建
+     */
+    private Map<Long, List<Long>> jobIndex = new HashMap<>();
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private volatile boolean isLoaded = false;
+
+    private ChangeJournal journal;
+
+    private void load() {
+        if (isLoaded) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (!isLoaded) {
+                JsonSourceTarget jsonSourceTarget =
+                        JsonUtilData.jsonFileToObject(FileConfig.getRelationConfig(), JsonSourceTarget.class);
+                if (jsonSourceTarget != null && CollectionUtil.isNotEmpty(jsonSourceTarget.getSysSourceTarget())) {
+                    for (SysSourceTarget sysSourceTarget : jsonSourceTarget.getSysSourceTarget()) {
+                        sourceIndex.put(sysSourceTarget.getDataSourceId(), sysSourceTarget);
+                    }
+                }
+                journal = new ChangeJournal(FileConfig.getRelationConfig());
+                for (JournalRecord record : journal.replay()) {
+                    apply(record);
+                }
+                if (!journal.isEmpty()) {
+                    compactLocked();
+                }
+                buildJobIndex();
+                isLoaded = true;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void buildJobIndex() {
+        Map<Long, List<Long>> index = new HashMap<>();
+        for (SysSourceTarget sysSourceTarget : sourceIndex.values()) {
+            if (CollectionUtil.isEmpty(sysSourceTarget.getJobIds())) {
+                continue;
+            }
+            for (Long id : sysSourceTarget.getJobIds()) {
+                index.computeIfAbsent(id, key -> new ArrayList<>()).add(sysSourceTarget.getDataSourceId());
+            }
+        }
+        jobIndex = index;
+    }
+
+    /**
+     * 重放一条变更记录,记录可能已包含在快照中,需保证重复应用结果不变
+     *
+     * @param record record
+     */
+    private void apply(JournalRecord record) {
+        if (JournalRecord.RELATION_SAVE.equals(record.getType())) {
+            SysSourceTarget sysSourceTarget = record.getSysSourceTarget();
+            // 先删除再添加,保证最新发布的主机排在最后
+            sourceIndex.remove(sysSourceTarget.getDataSourceId());
+            sourceIndex.put(sysSourceTarget.getDataSourceId(), sysSourceTarget);
+        } else if (JournalRecord.RELATION_DELETE.equals(record.getType())) {
+            sourceIndex.remove(record.getId());
+        } else if (JournalRecord.RELATION_REMOVE_JOB.equals(record.getType())) {
+            removeJob(record.getId(), record.getTime());
+        } else {
+            log.warn("relation journal unknown record-->{}", record.getType());
+        }
+    }
+
+    private void removeJob(Long jobId, Date time) {
+        List<Long> sourceIds = new ArrayList<>();
+        for (SysSourceTarget sysSourceTarget : sourceIndex.values()) {
+            if (sysSourceTarget.getJobIds() != null && sysSourceTarget.getJobIds().contains(jobId)) {
+                sourceIds.add(sysSourceTarget.getDataSourceId());
+            }
+        }
+        for (Long id : sourceIds) {
+            SysSourceTarget sourceTarget = sourceIndex.remove(id);
+            sourceTarget.getJobIds().remove(jobId);
+            sourceTarget.setLastReleaseTime(time);
+            sourceIndex.put(id, sourceTarget);
+        }
+    }
+
+    private void record(JournalRecord record) {
+        buildJobIndex();
+        if (journal.append(record)) {
+            journal.compactLater(this::compact);
+        }
+    }
+
+    private void compact() {
+        lock.readLock().lock();
+        try {
+            compactLocked();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 写入完整快照后清空日志,调用方需持有锁以阻止并发修改
+     */
+    private void compactLocked() {
+        JsonSourceTarget jsonSourceTarget = new JsonSourceTarget();
+        jsonSourceTarget.setSysSourceTarget(new ArrayList<>(sourceIndex.values()));
+        if (JsonUtilData.objectToJsonFile(FileConfig.getRelationConfig(), jsonSourceTarget)) {
+            journal.reset();
+        }
+    }
+
+    private static SysSourceTarget copy(SysSourceTarget sysSourceTarget) {
+        SysSourceTarget result = new SysSourceTarget();
+        result.setDataSourceId(sysSourceTarget.getDataSourceId());
+        result.setLastReleaseTime(sysSourceTarget.getLastReleaseTime());
+        if (sysSourceTarget.getJobIds() != null) {
+            result.setJobIds(new ArrayList<>(sysSourceTarget.getJobIds()));
+        }
+        return result;
+    }
+
+    private List<SysSourceTarget> copyAll() {
+        List<SysSourceTarget> result = new ArrayList<>(sourceIndex.size());
+        for (SysSourceTarget sysSourceTarget : sourceIndex.values()) {
+            result.add(copy(sysSourceTarget));
+        }
+        return result;
+    }
+
     /**
      * save
      *
      * @param sysSourceTarget sysSourceTarget
      */
     public void save(SysSourceTarget sysSourceTarget) {
-        List<SysSourceTarget> sysSourceTargets = deleteBySourceId(sysSourceTarget.getDataSourceId());
-        sysSourceTarget.setLastReleaseTime(new Date());
-        sysSourceTargets.add(sysSourceTarget);
-        JsonSourceTarget jsonSourceTarget = new JsonSourceTarget();
-        jsonSourceTarget.setSysSourceTarget(sysSourceTargets);
-        JsonUtilData.objectToJsonFile(FileConfig.getRelationConfig(), jsonSourceTarget);
+        load();
+        lock.writeLock().lock();
+        try {
+            sysSourceTarget.setLastReleaseTime(new Date());
+            // 先删除再添加,保证最新发布的主机排在最后
+            SysSourceTarget saved = copy(sysSourceTarget);
+            sourceIndex.remove(sysSourceTarget.getDataSourceId());
+            sourceIndex.put(sysSourceTarget.getDataSourceId(), saved);
+            JournalRecord record = new JournalRecord();
+            record.setType(JournalRecord.RELATION_SAVE);
+            record.setSysSourceTarget(saved);
+            record(record);
+        } finally {
+            lock.writeLock().unlock();
+        }
     }
 
     /**
@@ -44,12 +200,13 @@ public class SysSourceTargetMapper {
      * @return list
      */
     public List<SysSourceTarget> getAll() {
-        JsonSourceTarget jsonSourceTarget =
-                JsonUtilData.jsonFileToObject(FileConfig.getRelationConfig(), JsonSourceTarget.class);
-        if (jsonSourceTarget == null || CollectionUtil.isEmpty(jsonSourceTarget.getSysSourceTarget())) {
-            return new ArrayList<>();
+        load();
+        lock.readLock().lock();
+        try {
+            return copyAll();
+        } finally {
+            lock.readLock().unlock();
         }
-        return jsonSourceTarget.getSysSourceTarget();
     }
 
     /**
@@ -58,16 +215,19 @@ public class SysSourceTargetMapper {
      * @return list
      */
     public List<Long> getPublishJobIds() {
-        List<SysSourceTarget> list = getAll();
-        List<Long> jobIds = new ArrayList<>();
-        if (CollectionUtil.isNotEmpty(list)) {
-            for (SysSourceTarget sysSourceTarget : list) {
-                if (ObjectUtil.isNotEmpty(sysSourceTarget) & CollectionUtil.isNotEmpty(sysSourceTarget.getJobIds())) {
+        load();
+        lock.readLock().lock();
+        try {
+            List<Long> jobIds = new ArrayList<>();
+            for (SysSourceTarget sysSourceTarget : sourceIndex.values()) {
+                if (CollectionUtil.isNotEmpty(sysSourceTarget.getJobIds())) {
                     jobIds.addAll(sysSourceTarget.getJobIds());
                 }
             }
+            return jobIds;
+        } finally {
+            lock.readLock().unlock();
         }
-        return jobIds;
     }
 
     /**
@@ -77,24 +237,12 @@ public class SysSourceTargetMapper {
      * @return list
      */
     public List<Long> getSourceIdByJobId(Long jobId) {
-        List<SysSourceTarget> sysSourceTargets = getAll();
-        List<Long> sourceId = new ArrayList<>();
-        if (CollectionUtil.isNotEmpty(sysSourceTargets)) {
-            for (SysSourceTarget sysSourceTarget : sysSourceTargets) {
-                List<Long> jobIds = sysSourceTarget.getJobIds();
-                addSourceId(jobIds, sourceId, jobId, sysSourceTarget);
-            }
-        }
-        return sourceId;
-    }
-
-    private void addSourceId(List<Long> jobIds, List<Long> sourceId, Long jobId, SysSourceTarget sysSourceTarget) {
-        if (CollectionUtil.isNotEmpty(jobIds)) {
-            for (Long id : jobIds) {
-                if (jobId.equals(id)) {
-                    sourceId.add(sysSourceTarget.getDataSourceId());
-                }
-            }
+        load();
+        lock.readLock().lock();
+        try {
+            return new ArrayList<>(jobIndex.getOrDefault(jobId, Collections.emptyList()));
+        } finally {
+            lock.readLock().unlock();
         }
     }
 
@@ -105,10 +253,17 @@ public class SysSourceTargetMapper {
      * @return list
      */
     public List<Long> getJobIdBySourceId(Long dataSourceId) {
-        return getAll().stream()
-                .filter(item -> dataSourceId.equals(item.getDataSourceId()))
-                .findFirst()
-                .orElse(new SysSourceTarget()).getJobIds();
+        load();
+        lock.readLock().lock();
+        try {
+            SysSourceTarget sysSourceTarget = sourceIndex.get(dataSourceId);
+            if (sysSourceTarget == null || sysSourceTarget.getJobIds() == null) {
+                return null;
+            }
+            return new ArrayList<>(sysSourceTarget.getJobIds());
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
     /**
@@ -118,16 +273,14 @@ public class SysSourceTargetMapper {
      * @return SysSourceTarget
      */
     public SysSourceTarget sysSourceTargetById(Long id) {
-        SysSourceTarget sourceTarget = new SysSourceTarget();
-        List<SysSourceTarget> all = getAll();
-        if (CollectionUtil.isNotEmpty(all)) {
-            for (SysSourceTarget sysSourceTarget : all) {
-                if (id.equals(sysSourceTarget.getDataSourceId())) {
-                    sourceTarget = sysSourceTarget;
-                }
-            }
+        load();
+        lock.readLock().lock();
+        try {
+            SysSourceTarget sysSourceTarget = sourceIndex.get(id);
+            return sysSourceTarget == null ? new SysSourceTarget() : copy(sysSourceTarget);
+        } finally {
+            lock.readLock().unlock();
         }
-        return sourceTarget;
     }
 
     /**
@@ -137,18 +290,18 @@ public class SysSourceTargetMapper {
      * @return list
      */
     public List<SysSourceTarget> deleteBySourceId(Long sourceId) {
-        List<SysSourceTarget> sysSourceTargets = getAll();
-        List<SysSourceTarget> result = new ArrayList<>();
-        for (SysSourceTarget sourceTarget : sysSourceTargets) {
-            if (sourceTarget.getDataSourceId().equals(sourceId)) {
-                result.add(sourceTarget);
-            }
+        load();
+        lock.writeLock().lock();
+        try {
+            sourceIndex.remove(sourceId);
+            JournalRecord record = new JournalRecord();
+            record.setType(JournalRecord.RELATION_DELETE);
+            record.setId(sourceId);
+            record(record);
+            return copyAll();
+        } finally {
+            lock.writeLock().unlock();
         }
-        sysSourceTargets.removeAll(result);
-        JsonSourceTarget jsonSourceTarget = new JsonSourceTarget();
-        jsonSourceTarget.setSysSourceTarget(sysSourceTargets);
-        JsonUtilData.objectToJsonFile(FileConfig.getRelationConfig(), jsonSourceTarget);
-        return sysSourceTargets;
     }
 
     /**
@@ -176,17 +329,21 @@ public class SysSourceTargetMapper {
      * @param jobId jobId
      */
     public void removeJobids(Long jobId) {
-        List<Long> sourceId = getSourceIdByJobId(jobId);
-        if (CollectionUtil.isNotEmpty(sourceId)) {
-            for (Long id : sourceId) {
-                SysSourceTarget sourceTarget = sysSourceTargetById(id);
-                if (sourceTarget != null && CollectionUtil.isNotEmpty(sourceTarget.getJobIds())) {
-                    List<Long> newId = sourceTarget.getJobIds();
-                    newId.remove(jobId);
-                    sourceTarget.setJobIds(newId);
-                    save(sourceTarget);
-                }
+        load();
+        lock.writeLock().lock();
+        try {
+            if (CollectionUtil.isEmpty(jobIndex.get(jobId))) {
+                return;
             }
+            Date now = new Date();
+            removeJob(jobId, now);
+            JournalRecord record = new JournalRecord();
+            record.setType(JournalRecord.RELATION_REMOVE_JOB);
+            record.setId(jobId);
+            record.setTime(now);
+            record(record);
+        } finally {
+            lock.writeLock().unlock();
         }
     }
 }
@@ -89,4 +89,19 @@ public class SysJob extends BasicEntity {
     private Boolean isManagement;
 
     private List<String> timeInterval;
+
+    /**
+     * 查询超时时间(秒),为空时使用collect.queryTimeout
+     */
+    private Integer queryTimeout;
+
+    /**
+     * 单调递增的计数器列,除原值外另发布"列名_rate"的每秒速率
+     */
+    private List<String> rateColumns;
+
+    /**
+     * 查询结果缓存时间(秒),期间按缓存的结果发布而不查询实例,为空或不大于0时不缓存
+     */
+    private Integer cacheTtl;
 }
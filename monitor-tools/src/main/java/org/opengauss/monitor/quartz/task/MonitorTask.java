@@ -6,20 +6,33 @@ package org.opengauss.monitor.quartz.task;
 
 import cn.hutool.core.collection.CollectionUtil;
 import cn.hutool.core.util.ObjectUtil;
+import org.opengauss.monitor.config.CollectConfig;
 import org.opengauss.monitor.entity.SysConfig;
+import org.opengauss.monitor.exception.SharedQueryException;
+import org.opengauss.monitor.manager.CircuitBreakerManager;
+import org.opengauss.monitor.manager.CollectManager;
+import org.opengauss.monitor.manager.ResultCacheManager;
+import org.opengauss.monitor.manager.SharedQueryManager;
 import org.opengauss.monitor.mapper.SysConfigMapper;
 import org.opengauss.monitor.mapper.SysJobMapper;
 import org.opengauss.monitor.mapper.SysSourceTargetMapper;
 import org.opengauss.monitor.quartz.domain.SysJob;
+import org.opengauss.monitor.service.impl.CommonServiceImpl;
 import org.opengauss.monitor.service.impl.MeterServiceImpl;
-import org.opengauss.monitor.service.impl.SysJobServiceImpl;
-import org.opengauss.monitor.util.Base64;
+import org.opengauss.monitor.util.ColumnPlan;
+import org.opengauss.monitor.util.SqlUtil;
+import org.opengauss.monitor.util.StringUtils;
+import org.opengauss.monitor.util.jdbc.SourcePoolManager;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.stream.Collectors;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.jdbc.datasource.DriverManagerDataSource;
 import org.springframework.stereotype.Component;
 
 /**
@@ -41,12 +54,22 @@ public class MonitorTask {
     private SysSourceTargetMapper sourceTargetMapper;
 
     @Autowired
-    private SysJobServiceImpl jobService;
+    private CommonServiceImpl commonService;
 
     @Autowired
     private MeterServiceImpl meterService;
 
-    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private CollectManager collectManager;
+
+    @Autowired
+    private CircuitBreakerManager breakerManager;
+
+    @Autowired
+    private SharedQueryManager sharedQueryManager;
+
+    @Autowired
+    private ResultCacheManager resultCacheManager;
 
     /**
      * targetParams
@@ -61,17 +84,216 @@ public class MonitorTask {
         List<SysConfig> sysConfigs = configMapper.getBatchById(configs);
         SysJob sysJob = sysJobMapper.selectJobById(jobId);
         if (CollectionUtil.isNotEmpty(sysConfigs) && ObjectUtil.isNotEmpty(sysJob)) {
+            // 各实例并发采集,各自完成后独立发布
             for (SysConfig sysConfig : sysConfigs) {
-                SysConfig entity = sysConfig;
-                entity.setPassword(Base64.decode(entity.getPassword()));
-                DriverManagerDataSource dataSource = jobService.getDataSource(entity);
-                jdbcTemplate = new JdbcTemplate(dataSource);
-                List<Map<String, Object>> list = jobService.executeSql(jdbcTemplate, params);
-                if (CollectionUtil.isEmpty(list)) {
+                if (collectManager.isRunning(jobId, sysConfig.getDataSourceId())) {
+                    // 只跳过上一次触发仍未完成的实例,其他实例照常采集
+                    log.warn("{} skip {}, previous fire still running", name, sysConfig.getConnectName());
                     continue;
                 }
+                if (CollectConfig.isBatch()) {
+                    // 同一实例同一周期的任务合并到一个连接上执行
+                    collectManager.batch(sysConfig.getDataSourceId() + "#" + sysJob.getCronExpression(),
+                            new BatchItem(params, name, sysJob), items -> submitBatch(sysConfig, items));
+                } else {
+                    collectManager.submit(jobId, sysConfig.getDataSourceId(),
+                            () -> collect(params, name, sysConfig, sysJob));
+                }
+            }
+        }
+    }
+
+    private void submitBatch(SysConfig sysConfig, List<BatchItem> items) {
+        if (items.size() == 1) {
+            BatchItem item = items.get(0);
+            collectManager.submit(item.sysJob.getJobId(), sysConfig.getDataSourceId(),
+                    () -> collect(item.params, item.name, sysConfig, item.sysJob));
+            return;
+        }
+        List<Long> jobIds = items.stream().map(item -> item.sysJob.getJobId()).collect(Collectors.toList());
+        collectManager.submit(jobIds, sysConfig.getDataSourceId(), () -> collectBatch(sysConfig, items));
+    }
+
+    /**
+     * 一次连接执行实例上的一批任务,openGauss/PostgreSQL驱动下拼接为一次请求,失败时逐条执行
+     *
+     * @param sysConfig sysConfig
+     * @param items     items
+     */
+    private void collectBatch(SysConfig sysConfig, List<BatchItem> items) {
+        // 缓存有效的任务直接发布,不进入本次请求
+        List<BatchItem> pending = new ArrayList<>();
+        for (BatchItem item : items) {
+            List<Map<String, Object>> cached = resultCacheManager.get(sysConfig.getDataSourceId(), item.sysJob,
+                    item.params);
+            if (cached == null) {
+                pending.add(item);
+            } else {
+                publish(cached, sysConfig, item.name, item.sysJob, true);
+            }
+        }
+        if (pending.isEmpty()) {
+            return;
+        }
+        int probeTimeout = pending.stream().mapToInt(item -> getQueryTimeout(item.sysJob)).sum();
+        if (!breakerManager.allow(sysConfig, probeTimeout)) {
+            return;
+        }
+        List<BatchItem> batch = new ArrayList<>();
+        List<BatchItem> single = new ArrayList<>();
+        List<String> sqls = new ArrayList<>();
+        List<Long> jobIds = new ArrayList<>();
+        // 批内相同的sql只执行一次,slots记录每个任务对应的sql下标
+        Map<String, Integer> distinct = new HashMap<>();
+        List<Integer> slots = new ArrayList<>();
+        int timeout = 0;
+        for (BatchItem item : pending) {
+            String sql = StringUtils.stripEnd(StringUtils.trimToEmpty(item.params), ";");
+            if (sql.isEmpty() || sql.contains(";")) {
+                single.add(item);
+                continue;
+            }
+            batch.add(item);
+            String normalized = SqlUtil.normalize(sql);
+            Integer slot = distinct.get(normalized);
+            if (slot == null) {
+                slot = sqls.size();
+                distinct.put(normalized, slot);
+                sqls.add(sql);
+                jobIds.add(item.sysJob.getJobId());
+                timeout += getQueryTimeout(item.sysJob);
+            }
+            slots.add(slot);
+        }
+        if (sqls.size() > 1) {
+            List<List<Map<String, Object>>> results = null;
+            boolean isTimeout = false;
+            try {
+                results = commonService.executeBatch(SourcePoolManager.getTemplate(sysConfig), sqls, jobIds,
+                        sysConfig.getDataSourceId(), timeout, isPipeline(sysConfig));
+                breakerManager.success(sysConfig);
+            } catch (DataAccessException exception) {
+                isTimeout = CollectManager.isTimeout(exception);
+                if (isTimeout) {
+                    batch.forEach(item -> collectManager.recordTimeout(item.name));
+                }
+                breakerManager.failure(sysConfig, exception);
+                log.error("collect {} batch fail-->{}", sysConfig.getConnectName(), exception.getMessage());
+                if (CircuitBreakerManager.isUnreachable(exception)) {
+                    return;
+                }
+            }
+            if (isTimeout) {
+                // 实例已经很慢,本次不再逐条重试,只有sql错误才逐条执行以找出出错的任务
+                log.warn("collect {} batch timeout, skip {} jobs this fire", sysConfig.getConnectName(), batch.size());
+            } else if (results != null && results.size() == sqls.size()) {
+                for (int i = 0; i < batch.size(); i++) {
+                    BatchItem item = batch.get(i);
+                    int slot = slots.get(i);
+                    ColumnPlan.share(jobIds.get(slot), item.sysJob.getJobId(), sysConfig.getDataSourceId(),
+                            item.params);
+                    List<Map<String, Object>> list = SharedQueryManager.copy(results.get(slot));
+                    resultCacheManager.put(sysConfig.getDataSourceId(), item.sysJob, item.params, list);
+                    publish(list, sysConfig, item.name, item.sysJob, false);
+                }
+            } else {
+                single.addAll(batch);
+            }
+        } else {
+            single.addAll(batch);
+        }
+        for (BatchItem item : single) {
+            query(item.params, item.name, sysConfig, item.sysJob);
+        }
+    }
+
+    private void publish(List<Map<String, Object>> list, SysConfig sysConfig, String name, SysJob sysJob,
+                         boolean isCached) {
+        if (CollectionUtil.isEmpty(list)) {
+            return;
+        }
+        try {
+            if (isCached) {
+                meterService.publishCached(list, sysConfig, name, sysJob);
+            } else {
                 meterService.publish(list, sysConfig, name, sysJob);
             }
+        } catch (RuntimeException exception) {
+            log.error("collect {} fail-->{}", sysConfig.getConnectName(), exception.getMessage());
+        }
+    }
+
+    private static boolean isPipeline(SysConfig sysConfig) {
+        String driver = StringUtils.defaultString(sysConfig.getDriver()).toLowerCase(Locale.ROOT);
+        return driver.contains("opengauss") || driver.contains("postgresql");
+    }
+
+    private static int getQueryTimeout(SysJob sysJob) {
+        if (ObjectUtil.isNotEmpty(sysJob.getQueryTimeout()) && sysJob.getQueryTimeout() > 0) {
+            return sysJob.getQueryTimeout();
+        }
+        return CollectConfig.getQueryTimeout();
+    }
+
+    /**
+     * 批量采集中的单个任务
+     */
+    private static final class BatchItem {
+        private final String params;
+
+        private final String name;
+
+        private final SysJob sysJob;
+
+        private BatchItem(String params, String name, SysJob sysJob) {
+            this.params = params;
+            this.name = name;
+            this.sysJob = sysJob;
+        }
+    }
+
+    private void collect(String params, String name, SysConfig sysConfig, SysJob sysJob) {
+        // 缓存有效期内按缓存结果发布,不占用实例连接,也不消耗熔断的探测机会
+        List<Map<String, Object>> cached = resultCacheManager.get(sysConfig.getDataSourceId(), sysJob, params);
+        if (cached != null) {
+            publish(cached, sysConfig, name, sysJob, true);
+            return;
+        }
+        if (!breakerManager.allow(sysConfig, getQueryTimeout(sysJob))) {
+            return;
+        }
+        query(params, name, sysConfig, sysJob);
+    }
+
+    private void query(String params, String name, SysConfig sysConfig, SysJob sysJob) {
+        try {
+            JdbcTemplate jdbcTemplate = SourcePoolManager.getTemplate(sysConfig);
+            List<Map<String, Object>> list;
+            try {
+                // 其他任务(包括其他平台)在同一实例上执行相同sql时共用一次查询
+                list = sharedQueryManager.execute(sysConfig.getDataSourceId(), params, sysJob.getJobId(),
+                        getQueryTimeout(sysJob), () -> commonService.executeSql(jdbcTemplate, params,
+                                getQueryTimeout(sysJob), sysJob.getJobId(), sysConfig.getDataSourceId()));
+                breakerManager.success(sysConfig);
+                resultCacheManager.put(sysConfig.getDataSourceId(), sysJob, params, list);
+            } catch (SharedQueryException exception) {
+                // 执行查询的任务已计入熔断和超时,共用的任务只跳过本次
+                log.error("collect {} shared query fail-->{}", sysConfig.getConnectName(), exception.getMessage());
+                return;
+            } catch (DataAccessException exception) {
+                if (CollectManager.isTimeout(exception)) {
+                    collectManager.recordTimeout(name);
+                }
+                breakerManager.failure(sysConfig, exception);
+                log.error("collect {} executeSql fail-->{}", sysConfig.getConnectName(), exception.getMessage());
+                return;
+            }
+            if (CollectionUtil.isEmpty(list)) {
+                return;
+            }
+            meterService.publish(list, sysConfig, name, sysJob);
+        } catch (RuntimeException exception) {
+            log.error("collect {} fail-->{}", sysConfig.getConnectName(), exception.getMessage());
         }
     }
 }
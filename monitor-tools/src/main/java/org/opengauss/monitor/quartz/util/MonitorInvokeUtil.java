@@ -9,11 +9,15 @@ import cn.hutool.core.util.StrUtil;
 import org.opengauss.monitor.quartz.domain.SysJob;
 import org.opengauss.monitor.quartz.util.spring.MonitSpringUtils;
 import org.opengauss.monitor.util.StringUtils;
-import java.lang.reflect.InvocationTargetException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import lombok.extern.slf4j.Slf4j;
 
 /**
@@ -24,41 +28,94 @@ import lombok.extern.slf4j.Slf4j;
  */
 @Slf4j
 public class MonitorInvokeUtil {
+    /**
+     * jobId对应的预编译调用器,任务创建或修改时编译,删除时移除
+     */
+    private static Map<Long, MonitorInvoker> invokerCache = new ConcurrentHashMap<>();
+
     /**
      * invokeMethod
      *
      * @param sysJob sysJob
      */
     public static void invokeMethod(SysJob sysJob) {
+        MonitorInvoker invoker = invokerCache.get(sysJob.getJobId());
+        if (invoker == null || !invoker.invokeTarget.equals(sysJob.getInvokeTarget())) {
+            invoker = compile(sysJob);
+            if (invoker == null) {
+                return;
+            }
+        }
+        try {
+            invoker.handle.invokeExact(invoker.args);
+        } catch (Throwable throwable) {
+            log.error("invokeMethod-->{}", throwable.getMessage());
+        }
+    }
+
+    /**
+     * 解析invokeTarget,查找bean与方法并缓存,每次触发不再重复解析和反射
+     *
+     * @param sysJob sysJob
+     * @return 调用器,解析失败返回null
+     */
+    public static MonitorInvoker compile(SysJob sysJob) {
         String invokeTarget = sysJob.getInvokeTarget();
         String beanName = getTargetName(invokeTarget);
         String methodName = getMonitorName(invokeTarget);
         List<Object[]> methodParams = getResulteParams(invokeTarget);
         try {
+            Object bean;
             if (!VerificationName(beanName)) {
-                Object bean = MonitSpringUtils.getStr(beanName);
-                invokeMethod(bean, methodName, methodParams);
+                bean = MonitSpringUtils.getStr(beanName);
             } else {
-                Object bean = Class.forName(beanName).newInstance();
-                invokeMethod(bean, methodName, methodParams);
+                bean = Class.forName(beanName).newInstance();
+            }
+            Method monitorMethod = bean.getClass().getDeclaredMethod(methodName, getResultParamsType(methodParams));
+            Object[] args = getResulteValue(methodParams);
+            MethodHandle handle = MethodHandles.lookup().unreflect(monitorMethod).bindTo(bean)
+                    .asSpreader(Object[].class, args.length)
+                    .asType(MethodType.methodType(void.class, Object[].class));
+            MonitorInvoker invoker = new MonitorInvoker(invokeTarget, handle, args);
+            if (sysJob.getJobId() != null) {
+                invokerCache.put(sysJob.getJobId(), invoker);
             }
-        } catch (IllegalAccessException | InstantiationException | ClassNotFoundException exception) {
+            return invoker;
+        } catch (IllegalAccessException | InstantiationException | ClassNotFoundException
+                | NoSuchMethodException exception) {
+            log.error("invokeMethod-->{}", exception.getMessage());
+        } catch (RuntimeException exception) {
+            // bean不存在、参数格式错误等只影响本任务,创建时不能中断其他任务的调度
             log.error("invokeMethod-->{}", exception.getMessage());
         }
+        return null;
     }
 
+    /**
+     * 任务删除时移除调用器
+     *
+     * @param jobId jobId
+     */
+    public static void invalidate(Long jobId) {
+        if (jobId != null) {
+            invokerCache.remove(jobId);
+        }
+    }
 
-    private static void invokeMethod(Object object, String strName, List<Object[]> list) {
-        try {
-            if (CollectionUtil.isNotEmpty(list)) {
-                Method monitorMethod = object.getClass().getDeclaredMethod(strName, getResultParamsType(list));
-                monitorMethod.invoke(object, getResulteValue(list));
-            } else {
-                Method monitorMethod = object.getClass().getDeclaredMethod(strName);
-                monitorMethod.invoke(object);
-            }
-        } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException exception) {
-            log.error("invokeMethod-->{}", exception.getMessage());
+    /**
+     * 预编译的调用器
+     */
+    public static final class MonitorInvoker {
+        private final String invokeTarget;
+
+        private final MethodHandle handle;
+
+        private final Object[] args;
+
+        private MonitorInvoker(String invokeTarget, MethodHandle handle, Object[] args) {
+            this.invokeTarget = invokeTarget;
+            this.handle = handle;
+            this.args = args;
         }
     }
 
@@ -8,6 +8,7 @@ import org.opengauss.monitor.common.contant.ConmmonShare;
 import org.opengauss.monitor.common.contant.ScheduleCommon;
 import org.opengauss.monitor.exception.job.TaskException;
 import org.opengauss.monitor.quartz.domain.SysJob;
+import org.opengauss.monitor.quartz.util.bean.MonitorClassUtils;
 import org.opengauss.monitor.quartz.util.spring.MonitSpringUtils;
 import org.opengauss.monitor.util.StringUtils;
 import lombok.extern.slf4j.Slf4j;
@@ -88,8 +89,12 @@ public class MonitorTaskUtils {
             // 按新的cronExpression表达式构建一个新的trigger
             CronTrigger cron = TriggerBuilder.newTrigger().withIdentity(getMonitorKey(num, str))
                     .withSchedule(cronScheduleBuilder).build();
-            // 放入参数，运行时的方法可以获取
-            monitorDetail.getJobDataMap().put(ScheduleCommon.MONITOR_PROPERTIES, task);
+            // 放入参数副本，运行时的方法可以获取
+            SysJob monitorJob = new SysJob();
+            MonitorClassUtils.attributeCopy(monitorJob, task);
+            monitorDetail.getJobDataMap().put(ScheduleCommon.MONITOR_PROPERTIES, monitorJob);
+            // 预编译调用器,任务修改后重新创建时覆盖旧的调用器
+            MonitorInvokeUtil.compile(monitorJob);
             // 判断是否存在
             if (sch.checkExists(getMonitorWorkKey(num, str))) {
                 // 防止创建时存在数据问题 先移除，然后在执行创建操作
@@ -6,7 +6,6 @@ package org.opengauss.monitor.quartz.util;
 
 import org.opengauss.monitor.common.contant.ScheduleCommon;
 import org.opengauss.monitor.quartz.domain.SysJob;
-import org.opengauss.monitor.quartz.util.bean.MonitorClassUtils;
 import java.util.Date;
 import lombok.extern.slf4j.Slf4j;
 import org.quartz.Job;
@@ -27,8 +26,8 @@ public abstract class SummaryMonitorJob implements Job {
 
     @Override
     public void execute(JobExecutionContext context) {
-        SysJob monitorJob = new SysJob();
-        MonitorClassUtils.attributeCopy(monitorJob, context.getMergedJobDataMap().get(ScheduleCommon.MONITOR_PROPERTIES));
+        // 创建任务时已放入副本,此处只读使用,无需每次触发再复制
+        SysJob monitorJob = (SysJob) context.getMergedJobDataMap().get(ScheduleCommon.MONITOR_PROPERTIES);
         beginStart();
         if (jdege(monitorJob)) {
             doExecute(context, monitorJob);
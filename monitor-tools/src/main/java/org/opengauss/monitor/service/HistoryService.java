@@ -0,0 +1,28 @@
+/*
+ * Copyright (c) Huawei Technologies Co., Ltd. 2012-2022. All rights reserved.
+ */
+
+package org.opengauss.monitor.service;
+
+import org.opengauss.monitor.entity.ResponseVO;
+import java.util.Map;
+
+/**
+ * 本地历史数据查询
+ *
+ * @author liu
+ * @since 2022-10-01
+ */
+public interface HistoryService {
+    /**
+     * 按step聚合查询指标的历史数据
+     *
+     * @param name   指标名
+     * @param labels 需要相等的标签
+     * @param start  开始时间(毫秒)
+     * @param end    结束时间(毫秒)
+     * @param step   聚合步长(毫秒)
+     * @return ResponseVO
+     */
+    ResponseVO query(String name, Map<String, String> labels, Long start, Long end, Long step);
+}
@@ -69,4 +69,11 @@ public interface MonitorService {
      * @return ResponseVO
      */
     ResponseVO getDataSourceNameList();
+
+    /**
+     * getPoolCount
+     *
+     * @return ResponseVO
+     */
+    ResponseVO getPoolCount();
 }
@@ -10,14 +10,22 @@ import org.opengauss.monitor.entity.SysConfig;
 import org.opengauss.monitor.exception.ParamsException;
 import org.opengauss.monitor.mapper.SysConfigMapper;
 import org.opengauss.monitor.util.AssertUtil;
-import org.opengauss.monitor.util.Base64;
+import org.opengauss.monitor.util.ColumnPlan;
 import org.opengauss.monitor.util.jdbc.JdbcUtil;
+import org.opengauss.monitor.util.jdbc.SourcePoolManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ColumnMapRowMapper;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.core.RowMapperResultSetExtractor;
+import org.springframework.jdbc.core.StatementCallback;
 import org.springframework.jdbc.datasource.DriverManagerDataSource;
 import org.springframework.stereotype.Service;
 
@@ -55,6 +63,83 @@ public class CommonServiceImpl {
         return jdbcTemplate.queryForList(sql);
     }
 
+    /**
+     * executeSql,超时后驱动取消服务端查询并抛出异常,同时按结果集元数据生成任务的列分类
+     *
+     * @param jdbcTemplate jdbcTemplate
+     * @param sql sql
+     * @param timeout 查询超时时间(秒)
+     * @param jobId jobId
+     * @param dataSourceId dataSourceId
+     * @return list
+     * @throws DataAccessException DataAccessException
+     */
+    public List<Map<String, Object>> executeSql(JdbcTemplate jdbcTemplate, String sql, int timeout, Long jobId,
+                                                Long dataSourceId) throws DataAccessException {
+        RowMapperResultSetExtractor<Map<String, Object>> extractor =
+                new RowMapperResultSetExtractor<>(new ColumnMapRowMapper());
+        return jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(sql);
+            statement.setQueryTimeout(timeout);
+            return statement;
+        }, (ResultSetExtractor<List<Map<String, Object>>>) resultSet -> {
+            ColumnPlan.prepare(jobId, dataSourceId, sql, resultSet.getMetaData());
+            return extractor.extractData(resultSet);
+        });
+    }
+
+    /**
+     * 在同一连接上执行多条sql,pipeline为true时拼接为一次请求发送,按顺序返回每条sql的结果
+     *
+     * @param jdbcTemplate jdbcTemplate
+     * @param sqls sqls 每条只能包含一个查询语句
+     * @param jobIds 与sqls一一对应,用于生成列分类
+     * @param dataSourceId dataSourceId
+     * @param timeout 整批查询超时时间(秒)
+     * @param pipeline 是否一次发送,驱动需支持单次请求多条语句
+     * @return 每条sql的结果
+     * @throws DataAccessException DataAccessException
+     */
+    public List<List<Map<String, Object>>> executeBatch(JdbcTemplate jdbcTemplate, List<String> sqls,
+                                                        List<Long> jobIds, Long dataSourceId, int timeout,
+                                                        boolean pipeline)
+            throws DataAccessException {
+        RowMapperResultSetExtractor<Map<String, Object>> extractor =
+                new RowMapperResultSetExtractor<>(new ColumnMapRowMapper());
+        return jdbcTemplate.execute((StatementCallback<List<List<Map<String, Object>>>>) statement -> {
+            statement.setQueryTimeout(timeout);
+            List<List<Map<String, Object>>> results = new ArrayList<>(sqls.size());
+            if (!pipeline) {
+                for (int i = 0; i < sqls.size(); i++) {
+                    try (ResultSet resultSet = statement.executeQuery(sqls.get(i))) {
+                        ColumnPlan.prepare(jobIds.get(i), dataSourceId, sqls.get(i), resultSet.getMetaData());
+                        results.add(extractor.extractData(resultSet));
+                    }
+                }
+                return results;
+            }
+            boolean isResultSet = statement.execute(String.join(";\n", sqls));
+            // 每条语句对应一个结果集或更新计数
+            int index = 0;
+            while (isResultSet || statement.getUpdateCount() != -1) {
+                if (isResultSet) {
+                    try (ResultSet resultSet = statement.getResultSet()) {
+                        if (index < sqls.size()) {
+                            ColumnPlan.prepare(jobIds.get(index), dataSourceId, sqls.get(index),
+                                    resultSet.getMetaData());
+                        }
+                        results.add(extractor.extractData(resultSet));
+                    }
+                } else {
+                    results.add(new ArrayList<>());
+                }
+                index++;
+                isResultSet = statement.getMoreResults();
+            }
+            return results;
+        });
+    }
+
     /**
      * executeSingleSql
      *
@@ -95,10 +180,6 @@ public class CommonServiceImpl {
      * @return JdbcTemplate
      */
     public JdbcTemplate getTem(SysConfig sysConfig) {
-        DriverManagerDataSource dataSource = new DriverManagerDataSource();
-        dataSource.setUrl(sysConfig.getUrl());
-        dataSource.setUsername(sysConfig.getUserName());
-        dataSource.setPassword(Base64.decode(sysConfig.getPassword()));
-        return new JdbcTemplate(dataSource);
+        return SourcePoolManager.getTemplate(sysConfig);
     }
 }
@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) Huawei Technologies Co., Ltd. 2012-2022. All rights reserved.
+ */
+
+package org.opengauss.monitor.service.impl;
+
+import org.opengauss.monitor.entity.HistoryRollup;
+import org.opengauss.monitor.entity.ResponseVO;
+import org.opengauss.monitor.manager.HistoryStore;
+import org.opengauss.monitor.service.HistoryService;
+import org.opengauss.monitor.util.AssertUtil;
+import org.opengauss.monitor.util.StringUtils;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+/**
+ * 功能描述
+ *
+ * @author liu
+ * @since 2022-10-01
+ */
+@Service
+public class HistoryServiceImpl implements HistoryService {
+    /**
+     * 单次查询每个序列最多返回的点数
+     */
+    private static final long MAX_POINTS = 11000L;
+
+    private static final long DEFAULT_STEP = TimeUnit.MINUTES.toMillis(1);
+
+    private static final long DEFAULT_RANGE = TimeUnit.HOURS.toMillis(1);
+
+    @Autowired
+    private HistoryStore historyStore;
+
+    @Override
+    public ResponseVO query(String name, Map<String, String> labels, Long start, Long end, Long step) {
+        AssertUtil.isTrue(StringUtils.isEmpty(name), "指标名不能为空");
+        long queryEnd = end == null ? System.currentTimeMillis() : end;
+        long queryStart = start == null ? queryEnd - DEFAULT_RANGE : start;
+        long queryStep = step == null ? DEFAULT_STEP : step;
+        AssertUtil.isTrue(queryStart > queryEnd, "开始时间不能晚于结束时间");
+        AssertUtil.isTrue(queryStep <= 0, "步长应大于0");
+        AssertUtil.isTrue((queryEnd - queryStart) / queryStep >= MAX_POINTS, "查询点数超过" + MAX_POINTS + ",请增大步长");
+        List<HistoryRollup> result = historyStore.rollup(name, labels, queryStart, queryEnd, queryStep);
+        return ResponseVO.pageResponseVO(result.size(), result);
+    }
+}
@@ -6,21 +6,25 @@ package org.opengauss.monitor.service.impl;
 
 import cn.hutool.core.collection.CollectionUtil;
 import cn.hutool.core.util.ObjectUtil;
-import org.opengauss.monitor.common.contant.ConmmonShare;
-import org.opengauss.monitor.entity.Prom;
+import org.opengauss.monitor.config.CollectConfig;
 import org.opengauss.monitor.entity.SysConfig;
-import org.opengauss.monitor.mapper.SysConfigMapper;
+import org.opengauss.monitor.manager.sink.CollectResult;
+import org.opengauss.monitor.manager.sink.SinkManager;
 import org.opengauss.monitor.quartz.domain.SysJob;
 import org.opengauss.monitor.service.MeterService;
+import org.opengauss.monitor.util.ColumnPlan;
 import org.opengauss.monitor.util.HandleUtils;
+import org.opengauss.monitor.util.NumericUtil;
+import org.opengauss.monitor.util.RateTable;
 import io.prometheus.client.CollectorRegistry;
-import io.prometheus.client.Gauge;
-import java.math.BigDecimal;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.HashMap;
+import io.prometheus.client.Counter;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import javax.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
@@ -35,30 +39,37 @@ import org.springframework.stereotype.Service;
 @Slf4j
 @Service
 public class MeterServiceImpl implements MeterService {
-
-    /**
-     * 数字正则
-     */
-    private static final String ISNUM = "^(\\-|\\+)?\\d+(\\.\\d+)?$";
-
     /**
-     * 科学计数法
+     * 速率指标在列名后追加的后缀
      */
-    private static final String KEXUE = "^[+-]?\\d+\\.?\\d*[Ee][+-]?\\d+$";
+    public static final String RATE_SUFFIX = "_rate";
 
+    private static final String NULL_SAMPLES = "null_samples";
 
     @Autowired
-    public CollectorRegistry collectorRegistry;
+    private SinkManager sinkManager;
 
     @Autowired
-    private NagiosServiceImpl nagiosServiceImpl;
+    private CollectorRegistry collectorRegistry;
 
-    @Autowired
-    private SysConfigMapper sysConfigMapper;
+    /**
+     * 计数器列上一次的值,用于计算每秒速率
+     */
+    private final RateTable rateTable = new RateTable();
 
-    private Gauge gauge;
+    private Counter nullSamples;
 
-    private List<Prom> list = new ArrayList<>();
+    /**
+     * 注册null_samples
+     */
+    @PostConstruct
+    public void init() {
+        nullSamples = Counter.build()
+                .name(NULL_SAMPLES)
+                .help("Cells of numeric-typed columns skipped because the value was null.")
+                .labelNames("task")
+                .register(collectorRegistry);
+    }
 
     /**
      * publish
@@ -69,97 +80,101 @@ public class MeterServiceImpl implements MeterService {
      * @param sysJob    sysJob
      */
     public void publish(List<Map<String, Object>> list, SysConfig sysConfig, String task, SysJob sysJob) {
-        // 主机名称
-        synchronized (this) {
-            execut(list, sysConfig, task, sysJob);
-        }
+        execut(list, sysConfig, task, sysJob, false);
     }
 
-    private void execut(List<Map<String, Object>> list, SysConfig sysConfig, String task, SysJob sysJob) {
-        //空指针，将value为null的给个默认值
+    /**
+     * 发布结果缓存中的结果,缓存的计数器值没有变化,不参与速率计算
+     *
+     * @param list      list
+     * @param sysConfig sysConfig
+     * @param task      task
+     * @param sysJob    sysJob
+     */
+    public void publishCached(List<Map<String, Object>> list, SysConfig sysConfig, String task, SysJob sysJob) {
+        execut(list, sysConfig, task, sysJob, true);
+    }
+
+    private void execut(List<Map<String, Object>> list, SysConfig sysConfig, String task, SysJob sysJob,
+                        boolean isCached) {
+        ColumnPlan plan = ColumnPlan.of(sysJob.getJobId(), sysConfig.getDataSourceId());
+        //空指针，将文本列中value为null的给个默认值,数值类型的列保留null,只有文本值需要补全前导0
         for (Map<String, Object> maps : list) {
             for (Map.Entry<String, Object> entry : maps.entrySet()) {
-                if (ObjectUtil.isEmpty(entry.getValue()) && !entry.getKey().equalsIgnoreCase("toastsize")) {
-                    maps.put(entry.getKey(), "default");
-                }
-                if (ObjectUtil.isEmpty(entry.getValue()) && entry.getKey().equalsIgnoreCase("toastsize")) {
-                    maps.put(entry.getKey(), "0");
-                }
-                if (entry.getValue().toString().startsWith(".")) {
-                    String value = "0" + entry.getValue().toString();
-                    maps.put(entry.getKey(), value);
+                Object cell = entry.getValue();
+                if (ObjectUtil.isEmpty(cell)) {
+                    if (entry.getKey().equalsIgnoreCase("toastsize")) {
+                        entry.setValue("0");
+                    } else if (plan == null || !plan.isNumeric(entry.getKey())) {
+                        entry.setValue("default");
+                    }
+                } else if (cell instanceof String && ((String) cell).startsWith(".")) {
+                    entry.setValue("0" + cell);
                 }
             }
         }
-        Map<String, Object> nagiosMap = new HashMap<>();
-        String name = sysConfig.getConnectName();
-        Boolean isNagios = sysJob.getPlatform().equals(ConmmonShare.NAGIOS);
+        long now = System.currentTimeMillis();
+        // 重复发布同一个计数器值会得到0速率,缓存过期后再出现尖峰,缓存结果不更新速率
+        Set<String> rateColumns = isCached ? Collections.<String>emptySet() : getRateColumns(sysJob);
+        CollectResult result = new CollectResult(sysJob, sysConfig, task, now);
         for (int i = 0; i < list.size(); i++) {
             Map<String, Object> arry = list.get(i);
-            Map<String, Object> metric = HandleUtils.getMap(arry);
+            Map<String, Object> metric = HandleUtils.getMap(arry, plan);
             dealMetric(metric, i);
             String[] key = getKey(metric);
             String[] value = getValue(metric);
             for (Map.Entry<String, Object> entry : arry.entrySet()) {
-                if ((entry.getValue().toString().matches(ISNUM) && !isNagios)
-                        || (entry.getValue().toString().matches(KEXUE) && !isNagios)) {
-                    report(entry.getKey() + "_" + task + "_" + name, entry.getValue(), key, value);
+                Object cell = entry.getValue();
+                double number;
+                if (plan != null && plan.isNumeric(entry.getKey())) {
+                    // 数值类型的列直接取值,null既不是标签也没有指标值,单独计数后跳过
+                    if (cell == null) {
+                        nullSamples.labels(task).inc();
+                        continue;
+                    }
+                    if (cell instanceof Number) {
+                        number = ((Number) cell).doubleValue();
+                    } else if (NumericUtil.isNumeric(cell)) {
+                        number = NumericUtil.toDouble(cell);
+                    } else {
+                        continue;
+                    }
+                } else if (NumericUtil.isNumeric(cell)) {
+                    // 文本列或尚无列分类时按值判断
+                    number = NumericUtil.toDouble(cell);
+                } else {
+                    continue;
                 }
-                if ((entry.getValue().toString().matches(ISNUM) && isNagios)
-                        || (entry.getValue().toString().matches(KEXUE) && isNagios)) {
-                    nagiosMap.put(entry.getKey() + "_" + task + "_" + name + "_" + i, entry.getValue());
+                result.add(entry.getKey(), i, key, value, cell, number);
+                if (!rateColumns.contains(entry.getKey().toLowerCase(Locale.ROOT))) {
+                    continue;
+                }
+                double rate = rateTable.rate(RateTable.hash(sysJob.getJobId(), sysConfig.getDataSourceId(),
+                        entry.getKey(), value), number, now, CollectConfig.getRateIdleMillis());
+                if (!Double.isNaN(rate)) {
+                    result.add(entry.getKey() + RATE_SUFFIX, i, key, value, rate, rate);
                 }
             }
         }
-        if (sysJob.getPlatform().equals(ConmmonShare.NAGIOS)) {
-            reportNagios(nagiosMap);
-        }
-    }
-
-    private void report(String metricKey, Object metricValue, String[] key, String[] value) {
-        if (CollectionUtil.isEmpty(list)) {
-            gauge = Gauge.build()
-                    .name(metricKey)
-                    .help("Active transactions.")
-                    .labelNames(key)
-                    .register(collectorRegistry);
-            Prom prom01 = new Prom(gauge, metricKey);
-            list.add(prom01);
-        } else {
-            Prom prom = list.stream().filter(item -> item.getGaugeName().equals(metricKey)).findFirst().orElse(null);
-            if (null != prom) {
-                gauge = prom.getGaugs();
-            } else {
-                gauge = Gauge.build()
-                        .name(metricKey)
-                        .help("Active transactions.")
-                        .labelNames(key)
-                        .register(collectorRegistry);
-                Prom prom02 = new Prom(gauge, metricKey);
-                list.add(prom02);
-            }
-        }
-        String num = new BigDecimal(metricValue.toString()).toPlainString();
-        gauge.labels(value).set(Double.valueOf(num));
+        // 一次采集结果交给所有接收该任务的输出端,新增输出端不增加数据库查询
+        sinkManager.dispatch(result);
     }
 
     /**
-     * reportNagios
+     * 需要发布每秒速率的计数器列,列名不区分大小写
      *
-     * @param nagiosMap nagiosMap
+     * @param sysJob sysJob
+     * @return Set<String>
      */
-    public void reportNagios(Map<String, Object> nagiosMap) {
-        synchronized (this) {
-            SysConfig sysConfig = sysConfigMapper.getNagiosConfig();
-            if (ObjectUtil.isEmpty(sysConfig)) {
-                return;
-            }
-            // nagios配置检查
-            if (CollectionUtil.isEmpty(nagiosMap)) {
-                return;
-            }
-            nagiosServiceImpl.writeSh(nagiosMap, sysConfig);
+    public static Set<String> getRateColumns(SysJob sysJob) {
+        if (CollectionUtil.isEmpty(sysJob.getRateColumns())) {
+            return Collections.emptySet();
         }
+        Set<String> columns = new HashSet<>();
+        for (String column : sysJob.getRateColumns()) {
+            columns.add(column.toLowerCase(Locale.ROOT));
+        }
+        return columns;
     }
 
     /**
@@ -181,8 +196,12 @@ public class MeterServiceImpl implements MeterService {
      * @return str
      */
     public String[] getValue(Map<String, Object> metric) {
-        Object[] objects = metric.values().toArray(new Object[metric.values().size()]);
-        return Arrays.stream(objects).map(Object::toString).toArray(String[]::new);
+        String[] values = new String[metric.size()];
+        int index = 0;
+        for (Object object : metric.values()) {
+            values[index++] = object.toString();
+        }
+        return values;
     }
 
     /**
@@ -194,26 +213,4 @@ public class MeterServiceImpl implements MeterService {
     public String[] getKey(Map<String, Object> metric) {
         return metric.keySet().toArray(new String[metric.keySet().size()]);
     }
-
-    /**
-     * removeRegister
-     *
-     * @param gaugeName gaugeName
-     */
-    public void removeRegister(List<String> gaugeName) {
-        try {
-            Thread.sleep(6000);
-            if (CollectionUtil.isNotEmpty(gaugeName)) {
-                for (String str : gaugeName) {
-                    Prom prom = list.stream().filter(item -> str.equals(item.getGaugeName())).findFirst().orElse(null);
-                    if (ObjectUtil.isNotEmpty(prom)) {
-                        list.remove(prom);
-                        collectorRegistry.unregister(prom.getGaugs());
-                    }
-                }
-            }
-        } catch (InterruptedException exception) {
-            log.error("removeAll-->{}", exception.getMessage());
-        }
-    }
 }
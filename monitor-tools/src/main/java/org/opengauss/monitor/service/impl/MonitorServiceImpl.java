@@ -12,14 +12,19 @@ import org.opengauss.monitor.entity.ResponseVO;
 import org.opengauss.monitor.entity.SysConfig;
 import org.opengauss.monitor.entity.SysSourceTarget;
 import org.opengauss.monitor.entity.zabbix.SourceName;
+import org.opengauss.monitor.manager.CollectManager;
 import org.opengauss.monitor.mapper.SysConfigMapper;
 import org.opengauss.monitor.mapper.SysJobMapper;
 import org.opengauss.monitor.mapper.SysSourceTargetMapper;
 import org.opengauss.monitor.quartz.domain.SysJob;
 import org.opengauss.monitor.service.MonitorService;
+import org.opengauss.monitor.util.jdbc.PoolManager;
+import org.opengauss.monitor.util.jdbc.SourcePoolManager;
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -42,6 +47,9 @@ public class MonitorServiceImpl implements MonitorService {
     @Autowired
     private SysSourceTargetMapper sourceTargetMapper;
 
+    @Autowired
+    private CollectManager collectManager;
+
     @Autowired
     private SysJobMapper sysJobMapper;
 
@@ -210,6 +218,16 @@ public class MonitorServiceImpl implements MonitorService {
         return ResponseVO.successResponseVO(sysConfig);
     }
 
+    @Override
+    public ResponseVO getPoolCount() {
+        Map<String, Integer> count = new HashMap<>();
+        count.put("zabbixPool", PoolManager.getPoolCount());
+        count.put("zabbixConnection", PoolManager.getConnectionCount());
+        count.put("sourcePool", SourcePoolManager.getPoolCount());
+        count.put("collectActive", collectManager.getActiveCount());
+        return ResponseVO.successResponseVO(count);
+    }
+
     private void sortConfig(List<SysConfig> sysConfigList) {
         // 按照number从大到小排序
         sysConfigList.sort(Comparator.comparing(SysConfig::getTime).reversed());
@@ -25,14 +25,17 @@ import org.opengauss.monitor.mapper.SysConfigMapper;
 import org.opengauss.monitor.mapper.SysJobMapper;
 import org.opengauss.monitor.mapper.SysSourceTargetMapper;
 import org.opengauss.monitor.quartz.domain.SysJob;
+import org.opengauss.monitor.quartz.util.MonitorInvokeUtil;
 import org.opengauss.monitor.quartz.util.MonitorTaskUtils;
 import org.opengauss.monitor.service.ISysJobService;
 import org.opengauss.monitor.service.MonitorService;
 import org.opengauss.monitor.service.MonitorFlake;
 import org.opengauss.monitor.util.AssertUtil;
-import org.opengauss.monitor.util.Base64;
+import org.opengauss.monitor.util.ColumnPlan;
 import org.opengauss.monitor.util.HandleUtils;
+import org.opengauss.monitor.util.NumericUtil;
 import org.opengauss.monitor.util.SqlUtil;
+import org.opengauss.monitor.util.jdbc.SourcePoolManager;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.time.LocalDateTime;
@@ -43,7 +46,9 @@ import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 import lombok.extern.slf4j.Slf4j;
 import org.quartz.JobDataMap;
@@ -55,7 +60,6 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.DependsOn;
 import org.springframework.dao.DataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.jdbc.datasource.DriverManagerDataSource;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -71,18 +75,8 @@ import javax.annotation.PostConstruct;
 @DependsOn("generatorFile")
 @Service
 public class SysJobServiceImpl implements ISysJobService {
-    /**
-     * 数字正则
-     */
-    private static final String ISNUM = "^(\\-|\\+)?\\d+(\\.\\d+)?$";
-
     private static final String FITE = StrUtil.LF;
 
-    /**
-     * 科学计数法
-     */
-    private static final String KEXUE = "^[+-]?\\d+\\.?\\d*[Ee][+-]?\\d+$";
-
     @Autowired
     private Scheduler scheduler;
 
@@ -112,8 +106,6 @@ public class SysJobServiceImpl implements ISysJobService {
 
     private MonitorFlake MonitorFlake = new MonitorFlake(11, 11);
 
-    private JdbcTemplate jdbcTemplate;
-
 
     /**
      * 预加载
@@ -373,9 +365,7 @@ public class SysJobServiceImpl implements ISysJobService {
         stopTimeTask(oldSysJob);
         // 保存最新的主机发布信息
         sourceTargetMapper.save(sourceTarget);
-        // 删除
-        List<String> remove = dealOldSysJob(oldSysJob, sysConfig.getConnectName());
-        MonitorManager.mine().work(AsyncFactory.removeRegistry(remove));
+        // 旧指标的快照在抓取时随发布关系一并清理
         // 筛选出有其他主机在用的指标
         List<SysJob> otherSysJob = sourceTargetMapper.getMoreThanOneSource(oldSysJob);
         List<SysJob> zabbix = sysJobs.stream()
@@ -410,10 +400,8 @@ public class SysJobServiceImpl implements ISysJobService {
      */
     public void publishNagios(List<SysJob> nagios, SysConfig sysConfig, SysConfig nagiosConfig) {
         Map<String, Object> all = new HashMap<>();
-        sysConfig.setPassword(Base64.decode(sysConfig.getPassword()));
+        JdbcTemplate jdbcTemplate = SourcePoolManager.getTemplate(sysConfig);
         for (SysJob sysJob : nagios) {
-            DriverManagerDataSource dataSource = getDataSource(sysConfig);
-            jdbcTemplate = new JdbcTemplate(dataSource);
             List<Map<String, Object>> list = executeSql(jdbcTemplate, sysJob.getTarget());
             // 空指针，将value为null的给个默认值
             dealList(list);
@@ -426,14 +414,19 @@ public class SysJobServiceImpl implements ISysJobService {
 
     private void addMap(List<Map<String, Object>> list, Map<String, Object> all,
                         String name, SysJob sysJob, Map<String, Object> nagiosMap) {
+        Set<String> rateColumns = MeterServiceImpl.getRateColumns(sysJob);
         for (int i = 0; i < list.size(); i++) {
             Map<String, Object> arry = list.get(i);
             Map<String, Object> metric = HandleUtils.getMap(arry);
             dealMetric(metric, i);
+            String suffix = "_" + sysJob.getJobName() + "_" + name + "_" + i;
             for (Map.Entry<String, Object> entry : arry.entrySet()) {
-                if (entry.getValue().toString().matches(ISNUM) || entry.getValue().toString().matches(KEXUE)) {
-                    nagiosMap.put(entry.getKey()
-                            + "_" + sysJob.getJobName() + "_" + name + "_" + i, entry.getValue());
+                if (NumericUtil.isNumeric(entry.getValue())) {
+                    nagiosMap.put(entry.getKey() + suffix, entry.getValue());
+                    if (rateColumns.contains(entry.getKey().toLowerCase(Locale.ROOT))) {
+                        // 速率在第二次采集后才有值,先以0创建服务和检查脚本
+                        nagiosMap.put(entry.getKey() + MeterServiceImpl.RATE_SUFFIX + suffix, 0);
+                    }
                     all.putAll(nagiosMap);
                 }
             }
@@ -488,10 +481,6 @@ public class SysJobServiceImpl implements ISysJobService {
         // 需要删除的job集合
         List<SysJob> sysJobs = jobMapper.selectBatchJobByIds(jobs);
         stopTimeTask(sysJobs);
-        // 处理oldSysJob修改column
-        // 删除
-        List<String> remove = dealOldSysJob(sysJobs, sysConfig.getConnectName());
-        MonitorManager.mine().work(AsyncFactory.removeRegistry(remove));
         SysSourceTarget sysSourceTarget = sourceTargetMapper.sysSourceTargetById(sourceTarget.getDataSourceId());
         if (ObjectUtil.isNotEmpty(sysSourceTarget)) {
             List<Long> old = sysSourceTarget.getJobIds();
@@ -545,24 +534,6 @@ public class SysJobServiceImpl implements ISysJobService {
         return num;
     }
 
-    private List<String> dealOldSysJob(List<SysJob> sysJobs, String name) {
-        List<String> remove = new ArrayList<>();
-        if (CollectionUtil.isEmpty(sysJobs)) {
-            return remove;
-        }
-        for (SysJob sysJob : sysJobs) {
-            if (ObjectUtil.isNotEmpty(sysJob)) {
-                List<String> column = sysJob.getColumn();
-                if (CollectionUtil.isNotEmpty(column)) {
-                    column = column.stream().map(item -> item + name).collect(Collectors.toList());
-                    remove.addAll(column);
-                }
-            }
-        }
-
-        return remove;
-    }
-
     @Override
     @Transactional(rollbackFor = Exception.class)
     public int pauseJob(SysJob job) throws SchedulerException {
@@ -591,6 +562,8 @@ public class SysJobServiceImpl implements ISysJobService {
         String jobGroup = task.getJobGroup();
         Boolean isDelete = jobMapper.deleteJobByIds(Arrays.asList(jobId));
         if (isDelete) {
+            MonitorInvokeUtil.invalidate(jobId);
+            ColumnPlan.remove(jobId);
             try {
                 scheduler.deleteJob(MonitorTaskUtils.getMonitorWorkKey(jobId, jobGroup));
             } catch (SchedulerException exception) {
@@ -608,24 +581,6 @@ public class SysJobServiceImpl implements ISysJobService {
             SysJob job = jobMapper.selectJobById(jobId);
             deleteTask(job);
             MonitorManager.mine().work(AsyncFactory.removeJobId(jobId));
-            if (!job.getPlatform().equals(ConmmonShare.NAGIOS)) {
-                List<Long> sourceId = sourceTargetMapper.getSourceIdByJobId(jobId);
-                List<SysConfig> sysConfigs = configMapper.getBatchById(sourceId);
-                dealExec(sysConfigs, job);
-            }
-        }
-    }
-
-    private void dealExec(List<SysConfig> sysConfigs, SysJob job) {
-        if (CollectionUtil.isNotEmpty(sysConfigs)) {
-            for (SysConfig sysConfig : sysConfigs) {
-                if (ObjectUtil.isNotEmpty(job)
-                        && ObjectUtil.isNotEmpty(sysConfig)
-                        && ObjectUtil.isNotEmpty(sysConfig.getConnectName())) {
-                    List<String> remove = dealOldSysJob(Arrays.asList(job), sysConfig.getConnectName());
-                    MonitorManager.mine().work(AsyncFactory.removeRegistry(remove));
-                }
-            }
         }
     }
 
@@ -756,8 +711,7 @@ public class SysJobServiceImpl implements ISysJobService {
         if (sysConfig == null) {
             return MonitorResult.error("请先配置数据源");
         }
-        DriverManagerDataSource dataSource = getDataSource(sysConfig);
-        jdbcTemplate = new JdbcTemplate(dataSource);
+        JdbcTemplate jdbcTemplate = SourcePoolManager.getTemplate(sysConfig);
         List<Map<String, Object>> list = null;
         try {
             list = commonService.executeSql(jdbcTemplate, job.getTarget());
@@ -793,12 +747,8 @@ public class SysJobServiceImpl implements ISysJobService {
     private SysConfig getCheckConfig(SysJob job) {
         List<SysConfig> sysConfigs = configMapper.getAllConfig()
                 .stream().filter(item -> item.getPlatform().equals(ConmmonShare.PROM)).collect(Collectors.toList());
-        SysConfig sysConfig = sysConfigs.stream().filter(item -> ObjectUtil.isNotEmpty(item.getDataSourceId())
+        return sysConfigs.stream().filter(item -> ObjectUtil.isNotEmpty(item.getDataSourceId())
                 && item.getDataSourceId().equals(job.getDataSourceId())).findFirst().orElse(null);
-        if (sysConfig != null) {
-            sysConfig.setPassword(Base64.decode(sysConfig.getPassword()));
-        }
-        return sysConfig;
     }
 
     private Integer dealMax(List<SysJob> sysJobs) {
@@ -992,7 +942,7 @@ public class SysJobServiceImpl implements ISysJobService {
             Map<String, Object> metric = HandleUtils.getMap(arry);
             dealMetric(metric, i);
             for (Map.Entry<String, Object> entry : arry.entrySet()) {
-                if (entry.getValue().toString().matches(ISNUM) || entry.getValue().toString().matches(KEXUE)) {
+                if (NumericUtil.isNumeric(entry.getValue())) {
                     StringBuilder stringBuilder = new StringBuilder();
                     stringBuilder.append(entry.getKey()).append("_").append(sysJob.getJobName()).append("_");
                     columnList.add(stringBuilder.toString());
@@ -1031,30 +981,6 @@ public class SysJobServiceImpl implements ISysJobService {
         return cronExpression;
     }
 
-    /**
-     * getDataSource
-     *
-     * @param sysConfig sysConfig
-     * @return DriverManagerDataSource source
-     */
-    public DriverManagerDataSource getDataSource(SysConfig sysConfig) {
-        DriverManagerDataSource dataSource = new DriverManagerDataSource();
-        dataSource.setUrl(sysConfig.getUrl());
-        dataSource.setUsername(sysConfig.getUserName());
-        dataSource.setPassword(sysConfig.getPassword());
-        return dataSource;
-    }
-
-    /**
-     * getJdbcTemplate
-     *
-     * @param dataSource dataSource
-     * @return JdbcTemplate JdbcTemplate
-     */
-    public JdbcTemplate getJdbcTemplate(DriverManagerDataSource dataSource) {
-        return new JdbcTemplate(dataSource);
-    }
-
     /**
      * executeSql
      *
@@ -15,6 +15,7 @@ import org.opengauss.monitor.entity.zabbix.ZabbixMessge;
 import org.opengauss.monitor.entity.zabbix.ZabbixSql;
 import org.opengauss.monitor.quartz.domain.SysJob;
 import org.opengauss.monitor.util.HandleUtils;
+import org.opengauss.monitor.util.NumericUtil;
 import org.opengauss.monitor.util.StringUtils;
 import org.opengauss.monitor.util.jdbc.JdbcUtil;
 import java.util.ArrayList;
@@ -37,10 +38,6 @@ import org.springframework.stereotype.Service;
 @Slf4j
 @Service
 public class ZabbixServiceImpl {
-    private static final String ISNUM = "^(\\-|\\+)?\\d+(\\.\\d+)?$";
-
-    private static final String KEXUE = "^[+-]?\\d+\\.?\\d*[Ee][+-]?\\d+$";
-
     private static final String LINE_FEED = String.valueOf(StrUtil.C_LF);
 
     private static final String INSERT_HOST = "insert into hosts(hostid,host,status,available,name,description) "
@@ -244,7 +241,7 @@ public class ZabbixServiceImpl {
             Map<String, Object> arry = list.get(i);
             String end = HandleUtils.getZabbixMap(HandleUtils.getMap(arry), i);
             for (Map.Entry<String, Object> entry : arry.entrySet()) {
-                if (entry.getValue().toString().matches(ISNUM) || entry.getValue().toString().matches(KEXUE)) {
+                if (NumericUtil.isNumeric(entry.getValue())) {
                     StringBuilder zabbixKey = new StringBuilder();
                     zabbixKey.append(entry.getKey()).append("_").append(zabbixSql.getOnly()).append(i);
                     StringBuilder zabbixTargetName = new StringBuilder();
@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) Huawei Technologies Co., Ltd. 2012-2022. All rights reserved.
+ */
+
+package org.opengauss.monitor.util;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONException;
+import com.alibaba.fastjson.serializer.SerializerFeature;
+import org.opengauss.monitor.config.FileConfig;
+import org.opengauss.monitor.entity.JournalRecord;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+
+/**
+ * 追加写的变更日志,与json快照配合使用:修改只追加一行记录,启动时重放,后台定期合并到快照
+ *
+ * @author liu
+ * @since 2022-10-01
+ */
+@Slf4j
+public class ChangeJournal {
+    private static final String JOURNAL_SUFFIX = ".journal";
+
+    private static final byte[] LINE_END = "\n".getBytes(StandardCharsets.UTF_8);
+
+    private static ScheduledExecutorService compactExecutor = Executors.newSingleThreadScheduledExecutor(
+            new BasicThreadFactory.Builder().namingPattern("journal-compact-%d").daemon(true).build());
+
+    private final File file;
+
+    private FileOutputStream outputStream;
+
+    private int size;
+
+    private boolean isCompacting;
+
+    /**
+     * 构造
+     *
+     * @param snapshotPath 快照文件路径,日志文件为同目录下的 快照文件名.journal
+     */
+    public ChangeJournal(String snapshotPath) {
+        this.file = new File(snapshotPath + JOURNAL_SUFFIX);
+    }
+
+    /**
+     * 追加一条记录并fsync
+     *
+     * @param record record
+     * @return 记录数是否达到合并阈值
+     */
+    public synchronized boolean append(JournalRecord record) {
+        try {
+            if (outputStream == null) {
+                outputStream = new FileOutputStream(file, true);
+            }
+            outputStream.write(JSON.toJSONBytes(record, SerializerFeature.DisableCircularReferenceDetect));
+            outputStream.write(LINE_END);
+            outputStream.getFD().sync();
+            size++;
+        } catch (IOException exception) {
+            log.error("journal append fail-->{}", exception.getMessage());
+        }
+        return size >= FileConfig.getCompactSize();
+    }
+
+    /**
+     * 读取日志中的全部记录,末尾写了一半的记录会被丢弃
+     *
+     * @return list
+     */
+    public synchronized List<JournalRecord> replay() {
+        List<JournalRecord> records = new ArrayList<>();
+        if (!file.exists()) {
+            return records;
+        }
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                try {
+                    records.add(JSON.parseObject(line, JournalRecord.class));
+                } catch (JSONException | IndexOutOfBoundsException exception) {
+                    // 写了一半的记录,fastjson在部分截断位置抛出越界而不是JSONException
+                    log.error("journal replay stop at broken record-->{}", exception.getMessage());
+                    break;
+                }
+            }
+        } catch (IOException exception) {
+            log.error("journal replay fail-->{}", exception.getMessage());
+        }
+        return records;
+    }
+
+    /**
+     * 日志是否有内容
+     *
+     * @return boolean
+     */
+    public synchronized boolean isEmpty() {
+        return !file.exists() || file.length() == 0;
+    }
+
+    /**
+     * 快照写入成功后清空日志
+     */
+    public synchronized void reset() {
+        try {
+            if (outputStream != null) {
+                outputStream.close();
+                outputStream = null;
+            }
+            try (FileOutputStream truncate = new FileOutputStream(file, false)) {
+                truncate.getFD().sync();
+            }
+            size = 0;
+        } catch (IOException exception) {
+            log.error("journal reset fail-->{}", exception.getMessage());
+        }
+    }
+
+    /**
+     * 提交后台合并,合并未结束前重复提交会被忽略
+     *
+     * @param compaction 写快照并调用reset的合并任务
+     */
+    public void compactLater(Runnable compaction) {
+        synchronized (this) {
+            if (isCompacting) {
+                return;
+            }
+            isCompacting = true;
+        }
+        compactExecutor.execute(() -> {
+            try {
+                compaction.run();
+            } finally {
+                synchronized (this) {
+                    isCompacting = false;
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) Huawei Technologies Co., Ltd. 2012-2022. All rights reserved.
+ */
+
+package org.opengauss.monitor.util;
+
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.springframework.jdbc.support.JdbcUtils;
+
+/**
+ * 任务查询结果的列分类,首次查询时根据ResultSetMetaData生成并按(jobId, 实例id)缓存,sql变化后重新生成;
+ * 同一任务在不同实例上的驱动可能报告不同的列类型,因此每个实例各有一份
+ *
+ * @author liu
+ * @since 2022-10-01
+ */
+public class ColumnPlan {
+    private static Map<Long, Map<Long, ColumnPlan>> planCache = new ConcurrentHashMap<>();
+
+    private final String sql;
+
+    /**
+     * 数值类型的列名,与ColumnMapRowMapper生成的key一致
+     */
+    private final Set<String> numericColumns;
+
+    private ColumnPlan(String sql, Set<String> numericColumns) {
+        this.sql = sql;
+        this.numericColumns = numericColumns;
+    }
+
+    /**
+     * 获取任务在实例上的列分类
+     *
+     * @param jobId        jobId
+     * @param dataSourceId dataSourceId
+     * @return 未查询过时返回null
+     */
+    public static ColumnPlan of(Long jobId, Long dataSourceId) {
+        if (jobId == null || dataSourceId == null) {
+            return null;
+        }
+        Map<Long, ColumnPlan> plans = planCache.get(jobId);
+        return plans == null ? null : plans.get(dataSourceId);
+    }
+
+    /**
+     * 缓存不存在或sql已变化时根据元数据生成列分类
+     *
+     * @param jobId        jobId
+     * @param dataSourceId dataSourceId
+     * @param sql          sql
+     * @param metaData     metaData
+     * @throws SQLException SQLException
+     */
+    public static void prepare(Long jobId, Long dataSourceId, String sql, ResultSetMetaData metaData)
+            throws SQLException {
+        if (jobId == null || dataSourceId == null) {
+            return;
+        }
+        ColumnPlan plan = of(jobId, dataSourceId);
+        if (plan != null && plan.sql.equals(sql)) {
+            return;
+        }
+        Set<String> numericColumns = new HashSet<>();
+        for (int i = 1; i <= metaData.getColumnCount(); i++) {
+            if (isNumericType(metaData.getColumnType(i))) {
+                numericColumns.add(JdbcUtils.lookupColumnName(metaData, i));
+            }
+        }
+        put(jobId, dataSourceId, new ColumnPlan(sql, numericColumns));
+    }
+
+    /**
+     * 共享查询结果的任务沿用执行任务在同一实例上的列分类
+     *
+     * @param fromJobId    执行查询的任务
+     * @param toJobId      共享结果的任务
+     * @param dataSourceId dataSourceId
+     * @param sql          toJobId的sql
+     */
+    public static void share(Long fromJobId, Long toJobId, Long dataSourceId, String sql) {
+        if (fromJobId == null || toJobId == null || fromJobId.equals(toJobId)) {
+            return;
+        }
+        ColumnPlan from = of(fromJobId, dataSourceId);
+        ColumnPlan plan = of(toJobId, dataSourceId);
+        if (from != null && (plan == null || !plan.sql.equals(sql))) {
+            put(toJobId, dataSourceId, new ColumnPlan(sql, from.numericColumns));
+        }
+    }
+
+    private static void put(Long jobId, Long dataSourceId, ColumnPlan plan) {
+        planCache.computeIfAbsent(jobId, id -> new ConcurrentHashMap<>()).put(dataSourceId, plan);
+    }
+
+    /**
+     * 任务删除时移除所有实例上的列分类
+     *
+     * @param jobId jobId
+     */
+    public static void remove(Long jobId) {
+        if (jobId != null) {
+            planCache.remove(jobId);
+        }
+    }
+
+    /**
+     * 列是否为数值类型
+     *
+     * @param column column
+     * @return boolean
+     */
+    public boolean isNumeric(String column) {
+        return numericColumns.contains(column);
+    }
+
+    /**
+     * 单元格是否作为标签,数值类型的列不作为标签,文本列中的数字文本仍作为指标值
+     *
+     * @param plan   plan 为null时只按值判断
+     * @param column column
+     * @param value  value
+     * @return boolean
+     */
+    public static boolean isLabel(ColumnPlan plan, String column, Object value) {
+        if (plan != null && plan.isNumeric(column)) {
+            return false;
+        }
+        return !NumericUtil.isNumeric(value);
+    }
+    private static boolean isNumericType(int sqlType) {
+        switch (sqlType) {
+            case Types.TINYINT:
+            case Types.SMALLINT:
+            case Types.INTEGER:
+            case Types.BIGINT:
+            case Types.REAL:
+            case Types.FLOAT:
+            case Types.DOUBLE:
+            case Types.NUMERIC:
+            case Types.DECIMAL:
+                return true;
+            default:
+                return false;
+        }
+    }
+}
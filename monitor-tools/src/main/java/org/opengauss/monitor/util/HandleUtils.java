@@ -24,16 +24,6 @@ import org.springframework.util.CollectionUtils;
  * @since 2022-10-01
  */
 public class HandleUtils {
-    /**
-     * 数字
-     */
-    private static final String ISNUM = "^(\\-|\\+)?\\d+(\\.\\d+)?$";
-
-    /**
-     * 科学计数法
-     */
-    private static final String KEXUE = "^[+-]?\\d+\\.?\\d*[Ee][+-]?\\d+$";
-
     /**
      * 组装tags
      *
@@ -62,8 +52,7 @@ public class HandleUtils {
      */
     public static Tags getMapToString(Map<String, Object> map) {
         Map<String, Object> collect = map.entrySet().stream()
-                .filter(item -> !item.getValue().toString().matches(ISNUM)
-                        && !item.getValue().toString().matches(KEXUE))
+                .filter(item -> !NumericUtil.isNumeric(item.getValue()))
                 .collect(Collectors.toMap(p -> p.getKey(), p -> p.getValue()));
         List<String> list = new ArrayList<>();
         for (Map.Entry<String, Object> entry : collect.entrySet()) {
@@ -81,11 +70,21 @@ public class HandleUtils {
      * @return map
      */
     public static Map<String, Object> getMap(Map<String, Object> map) {
+        return getMap(map, null);
+    }
+
+    /**
+     * getMap,按列分类取标签列
+     *
+     * @param map  map
+     * @param plan plan 为null时只按值判断
+     * @return map
+     */
+    public static Map<String, Object> getMap(Map<String, Object> map, ColumnPlan plan) {
         return map.entrySet().stream()
                 .filter(item ->
                         ObjectUtil.isNotEmpty(item.getValue())
-                                && !item.getValue().toString().matches(ISNUM)
-                                && !item.getValue().toString().matches(KEXUE)
+                                && ColumnPlan.isLabel(plan, item.getKey(), item.getValue())
                                 && !item.getKey().equals("time")
                                 && !SqlUtil.contain(item.getKey()))
                 .collect(Collectors.toMap(p -> p.getKey(), p -> p.getValue()));
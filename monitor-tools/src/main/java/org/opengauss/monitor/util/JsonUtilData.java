@@ -7,6 +7,7 @@ package org.opengauss.monitor.util;
 import cn.hutool.core.io.FileUtil;
 import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.serializer.SerializerFeature;
+import org.opengauss.monitor.config.FileConfig;
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileInputStream;
@@ -14,7 +15,20 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
 
 /**
  * 功能描述
@@ -24,25 +38,96 @@ import lombok.extern.slf4j.Slf4j;
  */
 @Slf4j
 public class JsonUtilData {
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    /**
+     * 待写入的json内容,同一文件只保留最新一次
+     */
+    private static Map<String, String> pending = new ConcurrentHashMap<>();
+
+    private static AtomicBoolean isScheduled = new AtomicBoolean(false);
+
+    private static ScheduledExecutorService flushExecutor = Executors.newSingleThreadScheduledExecutor(
+            new BasicThreadFactory.Builder().namingPattern("json-flush-%d").daemon(true).build());
+
     /**
      * Object 转换为 json 文件
      *
      * @param finalPath finalPath 是绝对路径 + 文件名，请确保欲生成的文件所在目录已创建好
      * @param object    需要被转换的 Object
+     * @return 是否写入成功
      */
-    public static void objectToJsonFile(String finalPath, Object object) {
+    public static boolean objectToJsonFile(String finalPath, Object object) {
         String json = JSON.toJSONString(object, SerializerFeature.DisableCircularReferenceDetect);
-        try {
-            FileOutputStream fos = new FileOutputStream(new File(finalPath));
-            OutputStreamWriter osw = new OutputStreamWriter(fos, "UTF-8");
-            BufferedWriter bw = new BufferedWriter(osw);
+        pending.remove(finalPath);
+        return writeFile(finalPath, json);
+    }
+
+    /**
+     * Object 延迟写入 json 文件,file.flushDelay 毫秒内的多次修改合并为一次写入
+     *
+     * @param finalPath finalPath 是绝对路径 + 文件名，请确保欲生成的文件所在目录已创建好
+     * @param object    需要被转换的 Object,调用时即完成序列化
+     */
+    public static void objectToJsonFileLater(String finalPath, Object object) {
+        String json = JSON.toJSONString(object, SerializerFeature.DisableCircularReferenceDetect);
+        pending.put(finalPath, json);
+        if (isScheduled.compareAndSet(false, true)) {
+            flushExecutor.schedule(JsonUtilData::flushAll, FileConfig.getFlushDelay(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * 写入所有待写入的文件,停止服务时调用
+     */
+    public static synchronized void flushAll() {
+        isScheduled.set(false);
+        for (String path : new ArrayList<>(pending.keySet())) {
+            String json = pending.remove(path);
+            if (json != null) {
+                writeFile(path, json);
+            }
+        }
+    }
+
+    /**
+     * 先写临时文件并fsync,再原子替换目标文件,写入中途崩溃不会留下空文件
+     *
+     * @param finalPath finalPath
+     * @param json      json
+     * @return 是否写入成功
+     */
+    private static synchronized boolean writeFile(String finalPath, String json) {
+        Path target = Paths.get(finalPath).toAbsolutePath();
+        Path temp = Paths.get(target + TEMP_SUFFIX);
+        try (FileOutputStream fos = new FileOutputStream(temp.toFile());
+             OutputStreamWriter osw = new OutputStreamWriter(fos, StandardCharsets.UTF_8);
+             BufferedWriter bw = new BufferedWriter(osw)) {
             bw.write(json);
-            // 注意关闭的先后顺序，先打开的后关闭，后打开的先关闭
-            bw.close();
-            osw.close();
-            fos.close();
+            bw.flush();
+            fos.getFD().sync();
         } catch (IOException exception) {
             log.error("object--->jsonFile--->{}", "Entity class conversion json failed");
+            return false;
+        }
+        try {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        } catch (AtomicMoveNotSupportedException exception) {
+            return moveFile(temp, target);
+        } catch (IOException exception) {
+            log.error("object--->jsonFile--->move fail{}", exception.getMessage());
+            return false;
+        }
+    }
+
+    private static boolean moveFile(Path temp, Path target) {
+        try {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            return true;
+        } catch (IOException exception) {
+            log.error("object--->jsonFile--->move fail{}", exception.getMessage());
+            return false;
         }
     }
 
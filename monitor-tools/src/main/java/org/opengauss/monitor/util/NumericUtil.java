@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) Huawei Technologies Co., Ltd. 2012-2022. All rights reserved.
+ */
+
+package org.opengauss.monitor.util;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+/**
+ * 数值判断与转换,替代逐值的正则匹配和BigDecimal中转
+ *
+ * @author liu
+ * @since 2022-10-01
+ */
+public class NumericUtil {
+    /**
+     * 是否为数值,等价于toString后匹配 ^[+-]?\d+(\.\d+)?$ 或 ^[+-]?\d+\.?\d*[Ee][+-]?\d+$
+     *
+     * @param value value
+     * @return boolean
+     */
+    public static boolean isNumeric(Object value) {
+        if (value == null) {
+            return false;
+        }
+        if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte
+                || value instanceof BigDecimal || value instanceof BigInteger) {
+            return true;
+        }
+        if (value instanceof Double) {
+            return Double.isFinite((Double) value);
+        }
+        if (value instanceof Float) {
+            return Float.isFinite((Float) value);
+        }
+        return isNumeric(value.toString());
+    }
+
+    /**
+     * 手写扫描,不创建正则对象
+     *
+     * @param str str
+     * @return boolean
+     */
+    public static boolean isNumeric(CharSequence str) {
+        int length = str.length();
+        int index = 0;
+        if (index < length && (str.charAt(index) == '+' || str.charAt(index) == '-')) {
+            index++;
+        }
+        int start = index;
+        index = skipDigits(str, index);
+        if (index == start) {
+            return false;
+        }
+        if (index == length) {
+            return true;
+        }
+        if (str.charAt(index) == '.') {
+            int fractionStart = ++index;
+            index = skipDigits(str, index);
+            if (index == length) {
+                // 无指数时小数点后至少一位数字
+                return index > fractionStart;
+            }
+        }
+        if (str.charAt(index) != 'e' && str.charAt(index) != 'E') {
+            return false;
+        }
+        index++;
+        if (index < length && (str.charAt(index) == '+' || str.charAt(index) == '-')) {
+            index++;
+        }
+        int exponentStart = index;
+        index = skipDigits(str, index);
+        return index > exponentStart && index == length;
+    }
+
+    /**
+     * 转换为double,数值类型直接取值,文本按十进制解析,结果与先转BigDecimal再解析一致
+     *
+     * @param value 已通过isNumeric判断的值
+     * @return double
+     */
+    public static double toDouble(Object value) {
+        if (value instanceof Number) {
+            return ((Number) value).doubleValue();
+        }
+        return Double.parseDouble(value.toString());
+    }
+
+    private static int skipDigits(CharSequence str, int from) {
+        int index = from;
+        while (index < str.length() && str.charAt(index) >= '0' && str.charAt(index) <= '9') {
+            index++;
+        }
+        return index;
+    }
+}
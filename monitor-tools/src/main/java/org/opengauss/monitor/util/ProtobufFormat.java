@@ -0,0 +1,218 @@
+/*
+ * Copyright (c) Huawei Technologies Co., Ltd. 2012-2022. All rights reserved.
+ */
+
+package org.opengauss.monitor.util;
+
+import io.prometheus.client.Collector;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * prometheus delimited protobuf输出格式(io.prometheus.client.MetricFamily),与TextFormat使用同一份MetricFamilySamples
+ *
+ * @author liu
+ * @since 2022-10-01
+ */
+public class ProtobufFormat {
+    /**
+     * Content-Type
+     */
+    public static final String CONTENT_TYPE =
+            "application/vnd.google.protobuf; proto=io.prometheus.client.MetricFamily; encoding=delimited";
+
+    private static final int TYPE_COUNTER = 0;
+
+    private static final int TYPE_GAUGE = 1;
+
+    private static final int TYPE_SUMMARY = 2;
+
+    private static final int TYPE_UNTYPED = 3;
+
+    private static final int TYPE_HISTOGRAM = 4;
+
+    private static final String QUANTILE = "quantile";
+
+    private static final String LE = "le";
+
+    /**
+     * 编码为长度前缀的MetricFamily序列
+     *
+     * @param families families
+     * @return byte[]
+     */
+    public static byte[] write(List<Collector.MetricFamilySamples> families) {
+        ProtobufWriter output = new ProtobufWriter(1024);
+        Writers writers = new Writers();
+        for (Collector.MetricFamilySamples family : families) {
+            if (family.type == Collector.Type.SUMMARY || family.type == Collector.Type.HISTOGRAM) {
+                writeDistribution(output, writers, family);
+            } else {
+                writeSimple(output, writers, family);
+            }
+        }
+        return output.toByteArray();
+    }
+
+    /**
+     * 计数器、仪表及其他类型按样本名拆分为单值指标族
+     */
+    private static void writeSimple(ProtobufWriter output, Writers writers, Collector.MetricFamilySamples family) {
+        boolean isCounter = family.type == Collector.Type.COUNTER;
+        Map<String, List<Collector.MetricFamilySamples.Sample>> byName = new LinkedHashMap<>();
+        for (Collector.MetricFamilySamples.Sample sample : family.samples) {
+            if (isCounter && sample.name.endsWith("_created")) {
+                continue;
+            }
+            byName.computeIfAbsent(sample.name, key -> new ArrayList<>()).add(sample);
+        }
+        int type = isCounter ? TYPE_COUNTER : family.type == Collector.Type.GAUGE ? TYPE_GAUGE : TYPE_UNTYPED;
+        int valueField = isCounter ? 3 : type == TYPE_GAUGE ? 2 : 5;
+        for (Map.Entry<String, List<Collector.MetricFamilySamples.Sample>> entry : byName.entrySet()) {
+            writers.family.reset();
+            writeHeader(writers.family, entry.getKey(), family.help, type);
+            for (Collector.MetricFamilySamples.Sample sample : entry.getValue()) {
+                writers.metric.reset();
+                writeLabels(writers, sample.labelNames, sample.labelValues);
+                writers.value.reset();
+                writers.value.writeDouble(1, sample.value);
+                writers.metric.writeMessage(valueField, writers.value);
+                if (sample.timestampMs != null) {
+                    writers.metric.writeVarint(6, sample.timestampMs);
+                }
+                writers.family.writeMessage(4, writers.metric);
+            }
+            output.writeDelimited(writers.family);
+        }
+    }
+
+    /**
+     * 摘要和直方图按去掉quantile/le后的标签合并为一个指标
+     */
+    private static void writeDistribution(ProtobufWriter output, Writers writers,
+                                          Collector.MetricFamilySamples family) {
+        boolean isSummary = family.type == Collector.Type.SUMMARY;
+        String pointLabel = isSummary ? QUANTILE : LE;
+        Map<List<String>, Distribution> distributions = new LinkedHashMap<>();
+        for (Collector.MetricFamilySamples.Sample sample : family.samples) {
+            List<String> labelNames = new ArrayList<>();
+            List<String> labelValues = new ArrayList<>();
+            String point = null;
+            for (int i = 0; i < sample.labelNames.size(); i++) {
+                if (pointLabel.equals(sample.labelNames.get(i))) {
+                    point = sample.labelValues.get(i);
+                } else {
+                    labelNames.add(sample.labelNames.get(i));
+                    labelValues.add(sample.labelValues.get(i));
+                }
+            }
+            List<String> key = new ArrayList<>(labelNames);
+            key.addAll(labelValues);
+            Distribution distribution = distributions.computeIfAbsent(key,
+                    item -> new Distribution(labelNames, labelValues));
+            String suffix = sample.name.substring(Math.min(family.name.length(), sample.name.length()));
+            if ("_count".equals(suffix)) {
+                distribution.count = (long) sample.value;
+            } else if ("_sum".equals(suffix)) {
+                distribution.sum = sample.value;
+            } else if (point != null && (isSummary ? suffix.isEmpty() : "_bucket".equals(suffix))) {
+                distribution.points.add(new double[] {parseBound(point), sample.value});
+            } else {
+                continue;
+            }
+            if (sample.timestampMs != null) {
+                distribution.timestampMs = sample.timestampMs;
+            }
+        }
+        writers.family.reset();
+        writeHeader(writers.family, family.name, family.help, isSummary ? TYPE_SUMMARY : TYPE_HISTOGRAM);
+        for (Distribution distribution : distributions.values()) {
+            writers.metric.reset();
+            writeLabels(writers, distribution.labelNames, distribution.labelValues);
+            writers.value.reset();
+            writers.value.writeVarint(1, distribution.count);
+            writers.value.writeDouble(2, distribution.sum);
+            for (double[] point : distribution.points) {
+                writers.pair.reset();
+                if (isSummary) {
+                    writers.pair.writeDouble(1, point[0]);
+                    writers.pair.writeDouble(2, point[1]);
+                } else {
+                    writers.pair.writeVarint(1, (long) point[1]);
+                    writers.pair.writeDouble(2, point[0]);
+                }
+                writers.value.writeMessage(3, writers.pair);
+            }
+            writers.metric.writeMessage(isSummary ? 4 : 7, writers.value);
+            if (distribution.timestampMs != null) {
+                writers.metric.writeVarint(6, distribution.timestampMs);
+            }
+            writers.family.writeMessage(4, writers.metric);
+        }
+        output.writeDelimited(writers.family);
+    }
+
+    private static void writeHeader(ProtobufWriter family, String name, String help, int type) {
+        family.writeString(1, name);
+        if (help != null) {
+            family.writeString(2, help);
+        }
+        family.writeVarint(3, type);
+    }
+
+    private static void writeLabels(Writers writers, List<String> labelNames, List<String> labelValues) {
+        for (int i = 0; i < labelNames.size(); i++) {
+            writers.pair.reset();
+            writers.pair.writeString(1, labelNames.get(i));
+            writers.pair.writeString(2, labelValues.get(i));
+            writers.metric.writeMessage(1, writers.pair);
+        }
+    }
+
+    private static double parseBound(String value) {
+        if ("+Inf".equals(value)) {
+            return Double.POSITIVE_INFINITY;
+        }
+        if ("-Inf".equals(value)) {
+            return Double.NEGATIVE_INFINITY;
+        }
+        return Double.parseDouble(value);
+    }
+
+    /**
+     * 编码过程中复用的缓冲区
+     */
+    private static final class Writers {
+        private final ProtobufWriter family = new ProtobufWriter(512);
+
+        private final ProtobufWriter metric = new ProtobufWriter(128);
+
+        private final ProtobufWriter value = new ProtobufWriter(64);
+
+        private final ProtobufWriter pair = new ProtobufWriter(64);
+    }
+
+    /**
+     * 摘要或直方图的一个指标
+     */
+    private static final class Distribution {
+        private final List<String> labelNames;
+
+        private final List<String> labelValues;
+
+        private final List<double[]> points = new ArrayList<>();
+
+        private long count;
+
+        private double sum;
+
+        private Long timestampMs;
+
+        private Distribution(List<String> labelNames, List<String> labelValues) {
+            this.labelNames = labelNames;
+            this.labelValues = labelValues;
+        }
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) Huawei Technologies Co., Ltd. 2012-2022. All rights reserved.
+ */
+
+package org.opengauss.monitor.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * 最小的protobuf编码器,只支持指标输出用到的varint、double、string和嵌套消息
+ *
+ * @author liu
+ * @since 2022-10-01
+ */
+public class ProtobufWriter {
+    private static final int WIRE_VARINT = 0;
+
+    private static final int WIRE_FIXED64 = 1;
+
+    private static final int WIRE_LENGTH = 2;
+
+    private byte[] buffer;
+
+    private int size;
+
+    /**
+     * ProtobufWriter
+     *
+     * @param capacity 初始容量
+     */
+    public ProtobufWriter(int capacity) {
+        buffer = new byte[Math.max(capacity, 16)];
+    }
+
+    /**
+     * 写入无符号varint
+     *
+     * @param value value
+     */
+    public void writeVarint(long value) {
+        ensure(10);
+        long rest = value;
+        while ((rest & ~0x7FL) != 0) {
+            buffer[size++] = (byte) ((rest & 0x7F) | 0x80);
+            rest >>>= 7;
+        }
+        buffer[size++] = (byte) rest;
+    }
+
+    /**
+     * 写入varint字段,int64/uint64/enum均使用
+     *
+     * @param field field
+     * @param value value
+     */
+    public void writeVarint(int field, long value) {
+        writeTag(field, WIRE_VARINT);
+        writeVarint(value);
+    }
+
+    /**
+     * 写入double字段
+     *
+     * @param field field
+     * @param value value
+     */
+    public void writeDouble(int field, double value) {
+        writeTag(field, WIRE_FIXED64);
+        ensure(8);
+        long bits = Double.doubleToRawLongBits(value);
+        for (int i = 0; i < 8; i++) {
+            buffer[size++] = (byte) (bits >>> (i * 8));
+        }
+    }
+
+    /**
+     * 写入string字段
+     *
+     * @param field field
+     * @param value value
+     */
+    public void writeString(int field, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeBytes(field, bytes, 0, bytes.length);
+    }
+
+    /**
+     * 写入bytes字段
+     *
+     * @param field  field
+     * @param bytes  bytes
+     * @param offset offset
+     * @param length length
+     */
+    public void writeBytes(int field, byte[] bytes, int offset, int length) {
+        writeTag(field, WIRE_LENGTH);
+        writeVarint(length);
+        ensure(length);
+        System.arraycopy(bytes, offset, buffer, size, length);
+        size += length;
+    }
+
+    /**
+     * 写入嵌套消息
+     *
+     * @param field   field
+     * @param message message
+     */
+    public void writeMessage(int field, ProtobufWriter message) {
+        writeBytes(field, message.buffer, 0, message.size);
+    }
+
+    /**
+     * 以长度前缀写入消息,用于delimited格式
+     *
+     * @param message message
+     */
+    public void writeDelimited(ProtobufWriter message) {
+        writeVarint(message.size);
+        ensure(message.size);
+        System.arraycopy(message.buffer, 0, buffer, size, message.size);
+        size += message.size;
+    }
+
+    /**
+     * 清空内容,保留已分配的缓冲区
+     */
+    public void reset() {
+        size = 0;
+    }
+
+    /**
+     * size
+     *
+     * @return int
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * toByteArray
+     *
+     * @return byte[]
+     */
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buffer, size);
+    }
+
+    private void writeTag(int field, int wireType) {
+        writeVarint(((long) field << 3) | wireType);
+    }
+
+    private void ensure(int length) {
+        if (size + length > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + length));
+        }
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright (c) Huawei Technologies Co., Ltd. 2012-2022. All rights reserved.
+ */
+
+package org.opengauss.monitor.util;
+
+/**
+ * 计数器转每秒速率,按序列键的64位哈希保存上一次的值和时间,使用开放寻址的基本类型数组,按哈希分段加锁
+ *
+ * @author liu
+ * @since 2022-10-01
+ */
+public class RateTable {
+    private static final int STRIPES = 16;
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private static final long SWEEP_MILLIS = 60000L;
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+
+    /**
+     * RateTable
+     */
+    public RateTable() {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    /**
+     * 计算序列键的哈希
+     *
+     * @param parts 组成序列键的各部分
+     * @return long
+     */
+    public static long hash(Object... parts) {
+        long hash = FNV_OFFSET;
+        for (Object part : parts) {
+            if (part instanceof Object[]) {
+                for (Object item : (Object[]) part) {
+                    hash = mix(hash, String.valueOf(item));
+                }
+            } else {
+                hash = mix(hash, String.valueOf(part));
+            }
+        }
+        return hash;
+    }
+
+    private static long mix(long seed, String text) {
+        long hash = seed;
+        for (int i = 0; i < text.length(); i++) {
+            hash = (hash ^ text.charAt(i)) * FNV_PRIME;
+        }
+        // 分隔各部分,避免"ab"+"c"与"a"+"bc"相同
+        return (hash ^ 0xFFFF) * FNV_PRIME;
+    }
+
+    /**
+     * 记录本次的值并返回与上一次之间的每秒速率;首次出现、时间未前进或间隔超过idleMillis时只记录,返回NaN;
+     * 值变小视为计数器重置(实例重启),按从0开始计算
+     *
+     * @param key        序列键哈希
+     * @param value      计数器当前值
+     * @param time       采集时间(毫秒)
+     * @param idleMillis 超过该间隔未更新的序列重新开始
+     * @return double
+     */
+    public double rate(long key, double value, long time, long idleMillis) {
+        Stripe stripe = stripes[(int) (key ^ (key >>> 32)) & (STRIPES - 1)];
+        synchronized (stripe) {
+            if (time >= stripe.nextSweep) {
+                stripe.nextSweep = time + SWEEP_MILLIS;
+                stripe.sweep(time - idleMillis);
+            }
+            int index = stripe.find(key);
+            if (index < 0) {
+                stripe.insert(key, value, time);
+                return Double.NaN;
+            }
+            double previous = stripe.values[index];
+            long elapsed = time - stripe.times[index];
+            if (elapsed <= 0) {
+                return Double.NaN;
+            }
+            stripe.values[index] = value;
+            stripe.times[index] = time;
+            if (elapsed > idleMillis || Double.isNaN(previous) || Double.isNaN(value)) {
+                return Double.NaN;
+            }
+            double increase = value >= previous ? value - previous : value;
+            return increase * 1000 / elapsed;
+        }
+    }
+
+    /**
+     * 一段哈希表,键0表示空槽,键为0的序列单独保存在数组末尾的capacity位置,不参与探测
+     */
+    private static final class Stripe {
+        private static final float LOAD = 0.6f;
+
+        private static final int MIN_CAPACITY = 64;
+
+        private int capacity = MIN_CAPACITY;
+
+        private long[] keys = new long[MIN_CAPACITY + 1];
+
+        private double[] values = new double[MIN_CAPACITY + 1];
+
+        private long[] times = new long[MIN_CAPACITY + 1];
+
+        private boolean hasZero;
+
+        /**
+         * 探测区中的序列数,不含键0
+         */
+        private int size;
+
+        private long nextSweep;
+
+        private int find(long key) {
+            if (key == 0) {
+                return hasZero ? capacity : -1;
+            }
+            int mask = capacity - 1;
+            for (int index = spread(key) & mask; keys[index] != 0; index = (index + 1) & mask) {
+                if (keys[index] == key) {
+                    return index;
+                }
+            }
+            return -1;
+        }
+
+        private void insert(long key, double value, long time) {
+            if (key == 0) {
+                hasZero = true;
+                values[capacity] = value;
+                times[capacity] = time;
+                return;
+            }
+            if (size + 1 > capacity * LOAD) {
+                rebuild(capacity * 2, Long.MIN_VALUE);
+            }
+            put(key, value, time);
+        }
+
+        private void put(long key, double value, long time) {
+            int mask = capacity - 1;
+            int index = spread(key) & mask;
+            while (keys[index] != 0) {
+                index = (index + 1) & mask;
+            }
+            keys[index] = key;
+            values[index] = value;
+            times[index] = time;
+            size++;
+        }
+
+        /**
+         * 删除早于cutoff未更新的序列
+         */
+        private void sweep(long cutoff) {
+            if (hasZero && times[capacity] < cutoff) {
+                hasZero = false;
+            }
+            int live = 0;
+            for (int i = 0; i < capacity; i++) {
+                if (keys[i] != 0 && times[i] >= cutoff) {
+                    live++;
+                }
+            }
+            if (live == size) {
+                return;
+            }
+            int target = MIN_CAPACITY;
+            while (live + 1 > target * LOAD) {
+                target *= 2;
+            }
+            rebuild(target, cutoff);
+        }
+
+        private void rebuild(int newCapacity, long cutoff) {
+            long[] oldKeys = keys;
+            double[] oldValues = values;
+            long[] oldTimes = times;
+            int oldCapacity = capacity;
+            capacity = newCapacity;
+            keys = new long[newCapacity + 1];
+            values = new double[newCapacity + 1];
+            times = new long[newCapacity + 1];
+            size = 0;
+            for (int i = 0; i < oldCapacity; i++) {
+                if (oldKeys[i] != 0 && oldTimes[i] >= cutoff) {
+                    put(oldKeys[i], oldValues[i], oldTimes[i]);
+                }
+            }
+            values[newCapacity] = oldValues[oldCapacity];
+            times[newCapacity] = oldTimes[oldCapacity];
+        }
+
+        private static int spread(long key) {
+            long mixed = key * 0x9E3779B97F4A7C15L;
+            return (int) (mixed >>> 32);
+        }
+    }
+}
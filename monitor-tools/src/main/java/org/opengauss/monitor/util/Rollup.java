@@ -0,0 +1,235 @@
+/*
+ * Copyright (c) Huawei Technologies Co., Ltd. 2012-2022. All rights reserved.
+ */
+
+package org.opengauss.monitor.util;
+
+import java.util.ArrayDeque;
+
+/**
+ * 一个精度的预聚合数据,样本到达时累加到当前时间桶,换桶时把min/max/sum/last/count写入压缩块,
+ * NaN只更新last,不参与其余统计
+ *
+ * @author liu
+ * @since 2022-10-01
+ */
+public class Rollup {
+    private static final int MIN = 0;
+
+    private static final int MAX = 1;
+
+    private static final int SUM = 2;
+
+    private static final int LAST = 3;
+
+    private static final int COUNT = 4;
+
+    private static final int FIELDS = 5;
+
+    private final long resolution;
+
+    private final ArrayDeque<XorChunk[]> chunks = new ArrayDeque<>();
+
+    private XorChunk[] head;
+
+    private long openStart = -1L;
+
+    private double openMin;
+
+    private double openMax;
+
+    private double openSum;
+
+    private double openLast;
+
+    private long openCount;
+
+    private long bytes;
+
+    /**
+     * Rollup
+     *
+     * @param resolution 时间桶宽度(毫秒)
+     */
+    public Rollup(long resolution) {
+        this.resolution = resolution;
+    }
+
+    public long getResolution() {
+        return resolution;
+    }
+
+    /**
+     * 累加样本,时间戳需递增
+     *
+     * @param time        time
+     * @param value       value
+     * @param chunkPoints 每个压缩块的时间桶数
+     * @return 占用字节数的变化
+     */
+    public long add(long time, double value, int chunkPoints) {
+        long before = bytes;
+        long start = time - Math.floorMod(time, resolution);
+        if (start != openStart) {
+            close(chunkPoints);
+            openStart = start;
+            openMin = Double.NaN;
+            openMax = Double.NaN;
+            openSum = 0;
+            openCount = 0;
+        }
+        openLast = value;
+        if (!Double.isNaN(value)) {
+            openMin = openCount == 0 ? value : Math.min(openMin, value);
+            openMax = openCount == 0 ? value : Math.max(openMax, value);
+            openSum += value;
+            openCount++;
+        }
+        return bytes - before;
+    }
+
+    private void close(int chunkPoints) {
+        if (openStart < 0) {
+            return;
+        }
+        if (head == null || head[0].getCount() >= chunkPoints) {
+            if (head != null) {
+                for (XorChunk chunk : head) {
+                    bytes -= chunk.getBytes();
+                    chunk.seal();
+                    bytes += chunk.getBytes();
+                }
+                chunks.addLast(head);
+            }
+            head = new XorChunk[FIELDS];
+            for (int i = 0; i < FIELDS; i++) {
+                head[i] = new XorChunk();
+                bytes += head[i].getBytes();
+            }
+        }
+        double[] fields = new double[FIELDS];
+        fields[MIN] = openMin;
+        fields[MAX] = openMax;
+        fields[SUM] = openSum;
+        fields[LAST] = openLast;
+        fields[COUNT] = openCount;
+        for (int i = 0; i < FIELDS; i++) {
+            bytes -= head[i].getBytes();
+            head[i].append(openStart, fields[i]);
+            bytes += head[i].getBytes();
+        }
+    }
+
+    /**
+     * 删除早于cutoff的块
+     *
+     * @param cutoff cutoff
+     * @return 占用字节数的变化
+     */
+    public long trim(long cutoff) {
+        long before = bytes;
+        while (!chunks.isEmpty() && chunks.peekFirst()[0].getLastTime() < cutoff) {
+            for (XorChunk chunk : chunks.pollFirst()) {
+                bytes -= chunk.getBytes();
+            }
+        }
+        if (chunks.isEmpty() && head != null && head[0].getLastTime() < cutoff) {
+            for (XorChunk chunk : head) {
+                bytes -= chunk.getBytes();
+            }
+            head = null;
+        }
+        if (head == null && openStart >= 0 && openStart + resolution <= cutoff) {
+            openStart = -1L;
+        }
+        return bytes - before;
+    }
+
+    /**
+     * 是否没有数据
+     *
+     * @return boolean
+     */
+    public boolean isEmpty() {
+        return head == null && openStart < 0;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * 最早的时间桶开始时间
+     *
+     * @return 没有数据时返回Long.MAX_VALUE
+     */
+    public long getFirstTime() {
+        if (!chunks.isEmpty()) {
+            return chunks.peekFirst()[0].getFirstTime();
+        }
+        if (head != null) {
+            return head[0].getFirstTime();
+        }
+        return openStart < 0 ? Long.MAX_VALUE : openStart;
+    }
+
+    /**
+     * 按时间顺序访问与[start, end]相交的时间桶,包括尚未结束的当前桶
+     *
+     * @param start   start
+     * @param end     end
+     * @param visitor visitor
+     */
+    public void read(long start, long end, Visitor visitor) {
+        long first = start - Math.floorMod(start, resolution);
+        for (XorChunk[] chunk : chunks) {
+            read(chunk, first, end, visitor);
+        }
+        if (head != null) {
+            read(head, first, end, visitor);
+        }
+        if (openStart >= first && openStart <= end) {
+            visitor.visit(openStart, openMin, openMax, openSum, openLast, openCount);
+        }
+    }
+
+    private static void read(XorChunk[] chunk, long first, long end, Visitor visitor) {
+        if (chunk[0].getLastTime() < first || chunk[0].getFirstTime() > end) {
+            return;
+        }
+        XorChunk.Reader[] readers = new XorChunk.Reader[FIELDS];
+        for (int i = 0; i < FIELDS; i++) {
+            readers[i] = chunk[i].reader();
+        }
+        while (readers[0].next()) {
+            for (int i = 1; i < FIELDS; i++) {
+                readers[i].next();
+            }
+            long time = readers[0].getTime();
+            if (time > end) {
+                return;
+            }
+            if (time >= first) {
+                visitor.visit(time, readers[MIN].getValue(), readers[MAX].getValue(), readers[SUM].getValue(),
+                        readers[LAST].getValue(), (long) readers[COUNT].getValue());
+            }
+        }
+    }
+
+    /**
+     * 时间桶访问者
+     */
+    public interface Visitor {
+        /**
+         * visit
+         *
+         * @param start 时间桶开始时间
+         * @param min   min
+         * @param max   max
+         * @param sum   sum
+         * @param last  last
+         * @param count 非NaN样本数
+         */
+        void visit(long start, double min, double max, double sum, double last, long count);
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) Huawei Technologies Co., Ltd. 2012-2022. All rights reserved.
+ */
+
+package org.opengauss.monitor.util;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+/**
+ * snappy块格式压缩,remote write要求请求体为snappy块格式,按64KB分段在段内查找4字节重复并输出2字节偏移的复制
+ *
+ * @author liu
+ * @since 2022-10-01
+ */
+public class SnappyUtil {
+    private static final int BLOCK_SIZE = 1 << 16;
+
+    private static final int HASH_BITS = 14;
+
+    private static final int MIN_MATCH = 4;
+
+    private static final int MAX_COPY = 64;
+
+    /**
+     * 压缩
+     *
+     * @param input input
+     * @return byte[]
+     */
+    public static byte[] compress(byte[] input) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream(input.length / 2 + 16);
+        writeVarint(output, input.length);
+        int[] table = new int[1 << HASH_BITS];
+        for (int start = 0; start < input.length; start += BLOCK_SIZE) {
+            compressBlock(input, start, Math.min(start + BLOCK_SIZE, input.length), table, output);
+        }
+        return output.toByteArray();
+    }
+
+    private static void compressBlock(byte[] input, int start, int end, int[] table, ByteArrayOutputStream output) {
+        // 表中保存段内偏移+1,0表示空
+        Arrays.fill(table, 0);
+        int literalStart = start;
+        int index = start;
+        while (index + MIN_MATCH <= end) {
+            int hash = hash(input, index);
+            int candidate = table[hash] - 1 + start;
+            table[hash] = index - start + 1;
+            if (candidate >= start && candidate < index && matches(input, candidate, index)) {
+                int length = MIN_MATCH;
+                while (index + length < end && input[candidate + length] == input[index + length]) {
+                    length++;
+                }
+                writeLiteral(input, literalStart, index - literalStart, output);
+                writeCopy(index - candidate, length, output);
+                index += length;
+                literalStart = index;
+            } else {
+                index++;
+            }
+        }
+        writeLiteral(input, literalStart, end - literalStart, output);
+    }
+
+    private static int hash(byte[] input, int index) {
+        int value = (input[index] & 0xFF) | (input[index + 1] & 0xFF) << 8 | (input[index + 2] & 0xFF) << 16
+                | (input[index + 3] & 0xFF) << 24;
+        return (value * 0x1E35A7BD) >>> (32 - HASH_BITS);
+    }
+
+    private static boolean matches(byte[] input, int first, int second) {
+        for (int i = 0; i < MIN_MATCH; i++) {
+            if (input[first + i] != input[second + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void writeLiteral(byte[] input, int offset, int length, ByteArrayOutputStream output) {
+        if (length == 0) {
+            return;
+        }
+        int value = length - 1;
+        if (value < 60) {
+            output.write(value << 2);
+        } else {
+            int bytes = value < (1 << 8) ? 1 : value < (1 << 16) ? 2 : value < (1 << 24) ? 3 : 4;
+            output.write((59 + bytes) << 2);
+            for (int i = 0; i < bytes; i++) {
+                output.write(value >>> (i * 8));
+            }
+        }
+        output.write(input, offset, length);
+    }
+
+    private static void writeCopy(int offset, int length, ByteArrayOutputStream output) {
+        int rest = length;
+        while (rest > 0) {
+            int chunk = Math.min(rest, MAX_COPY);
+            output.write(((chunk - 1) << 2) | 2);
+            output.write(offset);
+            output.write(offset >>> 8);
+            rest -= chunk;
+        }
+    }
+
+    private static void writeVarint(ByteArrayOutputStream output, int value) {
+        int rest = value;
+        while ((rest & ~0x7F) != 0) {
+            output.write((rest & 0x7F) | 0x80);
+            rest >>>= 7;
+        }
+        output.write(rest);
+    }
+}
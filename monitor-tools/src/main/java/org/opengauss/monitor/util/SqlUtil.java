@@ -131,6 +131,37 @@ public class SqlUtil {
         return "";
     }
 
+    /**
+     * 规范化sql用于判断两条sql是否相同:去掉首尾空白和末尾分号,引号外的连续空白合并为一个空格
+     *
+     * @param sql sql
+     * @return String
+     */
+    public static String normalize(String sql) {
+        String text = StringUtils.stripEnd(StringUtils.trimToEmpty(sql), "; \t\r\n");
+        StringBuilder builder = new StringBuilder(text.length());
+        char quote = 0;
+        boolean isSpace = false;
+        for (int i = 0; i < text.length(); i++) {
+            char item = text.charAt(i);
+            if (quote == 0 && Character.isWhitespace(item)) {
+                isSpace = true;
+                continue;
+            }
+            if (isSpace) {
+                builder.append(' ');
+                isSpace = false;
+            }
+            if (quote == 0 && (item == '\'' || item == '"')) {
+                quote = item;
+            } else if (item == quote) {
+                quote = 0;
+            }
+            builder.append(item);
+        }
+        return builder.toString();
+    }
+
     /**
      * execute
      *
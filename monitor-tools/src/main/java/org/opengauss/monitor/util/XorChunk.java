@@ -0,0 +1,261 @@
+/*
+ * Copyright (c) Huawei Technologies Co., Ltd. 2012-2022. All rights reserved.
+ */
+
+package org.opengauss.monitor.util;
+
+import java.util.Arrays;
+
+/**
+ * 压缩的样本块,时间戳按二阶差分、数值按与前值异或编码,固定间隔采集的序列每个点约1~2字节
+ *
+ * @author liu
+ * @since 2022-10-01
+ */
+public class XorChunk {
+    private static final int INITIAL_BYTES = 32;
+
+    private byte[] buffer = new byte[INITIAL_BYTES];
+
+    private int bitCount;
+
+    private int count;
+
+    private long firstTime;
+
+    private long lastTime;
+
+    private long lastDelta;
+
+    private long lastValue;
+
+    private int leading = -1;
+
+    private int trailing;
+
+    /**
+     * 追加样本,时间戳需递增
+     *
+     * @param time  time
+     * @param value value
+     */
+    public void append(long time, double value) {
+        long bits = Double.doubleToRawLongBits(value);
+        if (count == 0) {
+            firstTime = time;
+            writeBits(time, 64);
+            writeBits(bits, 64);
+        } else {
+            long delta = time - lastTime;
+            writeTime(delta - lastDelta);
+            writeValue(bits ^ lastValue);
+            lastDelta = delta;
+        }
+        lastTime = time;
+        lastValue = bits;
+        count++;
+    }
+
+    private void writeTime(long dod) {
+        if (dod == 0) {
+            writeBits(0, 1);
+        } else if (fits(dod, 14)) {
+            writeBits(0b10, 2);
+            writeBits(dod, 14);
+        } else if (fits(dod, 17)) {
+            writeBits(0b110, 3);
+            writeBits(dod, 17);
+        } else if (fits(dod, 20)) {
+            writeBits(0b1110, 4);
+            writeBits(dod, 20);
+        } else {
+            writeBits(0b1111, 4);
+            writeBits(dod, 64);
+        }
+    }
+
+    private void writeValue(long xor) {
+        if (xor == 0) {
+            writeBits(0, 1);
+            return;
+        }
+        int newLeading = Math.min(Long.numberOfLeadingZeros(xor), 31);
+        int newTrailing = Long.numberOfTrailingZeros(xor);
+        if (leading >= 0 && newLeading >= leading && newTrailing >= trailing) {
+            // 有效位落在上一个窗口内,沿用窗口
+            writeBits(0b10, 2);
+            writeBits(xor >>> trailing, 64 - leading - trailing);
+            return;
+        }
+        leading = newLeading;
+        trailing = newTrailing;
+        int significant = 64 - leading - trailing;
+        writeBits(0b11, 2);
+        writeBits(leading, 5);
+        writeBits(significant & 0x3F, 6);
+        writeBits(xor >>> trailing, significant);
+    }
+
+    private static boolean fits(long value, int bits) {
+        long bound = 1L << (bits - 1);
+        return value >= -bound && value < bound;
+    }
+
+    private void writeBits(long value, int bits) {
+        if (bitCount + bits > buffer.length * 8) {
+            buffer = Arrays.copyOf(buffer, buffer.length + Math.max(INITIAL_BYTES, buffer.length / 2));
+        }
+        int remaining = bits;
+        while (remaining > 0) {
+            int available = 8 - (bitCount & 7);
+            int take = Math.min(available, remaining);
+            int part = (int) (value >>> (remaining - take)) & ((1 << take) - 1);
+            buffer[bitCount >>> 3] |= (byte) (part << (available - take));
+            bitCount += take;
+            remaining -= take;
+        }
+    }
+
+    /**
+     * 块写满后释放多余的缓冲区
+     */
+    public void seal() {
+        buffer = Arrays.copyOf(buffer, (bitCount + 7) >>> 3);
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public long getFirstTime() {
+        return firstTime;
+    }
+
+    public long getLastTime() {
+        return lastTime;
+    }
+
+    /**
+     * 占用的字节数
+     *
+     * @return int
+     */
+    public int getBytes() {
+        return buffer.length;
+    }
+
+    /**
+     * 顺序读取块内样本
+     *
+     * @return Reader
+     */
+    public Reader reader() {
+        return new Reader(buffer, count);
+    }
+
+    /**
+     * 块的读取游标,创建时的样本数之后追加的点不可见
+     */
+    public static final class Reader {
+        private final byte[] buffer;
+
+        private final int count;
+
+        private int position;
+
+        private int index;
+
+        private long time;
+
+        private long delta;
+
+        private long bits;
+
+        private int leading;
+
+        private int trailing;
+
+        private Reader(byte[] buffer, int count) {
+            this.buffer = buffer;
+            this.count = count;
+        }
+
+        /**
+         * 移动到下一个样本
+         *
+         * @return 是否还有样本
+         */
+        public boolean next() {
+            if (index >= count) {
+                return false;
+            }
+            if (index == 0) {
+                time = readBits(64);
+                bits = readBits(64);
+            } else {
+                delta += readTime();
+                time += delta;
+                readValue();
+            }
+            index++;
+            return true;
+        }
+
+        private long readTime() {
+            int prefix = 0;
+            while (prefix < 4 && readBits(1) == 1) {
+                prefix++;
+            }
+            switch (prefix) {
+                case 0:
+                    return 0;
+                case 1:
+                    return signed(readBits(14), 14);
+                case 2:
+                    return signed(readBits(17), 17);
+                case 3:
+                    return signed(readBits(20), 20);
+                default:
+                    return readBits(64);
+            }
+        }
+
+        private void readValue() {
+            if (readBits(1) == 0) {
+                return;
+            }
+            if (readBits(1) == 1) {
+                leading = (int) readBits(5);
+                int significant = (int) readBits(6);
+                trailing = 64 - leading - (significant == 0 ? 64 : significant);
+            }
+            bits ^= readBits(64 - leading - trailing) << trailing;
+        }
+
+        private static long signed(long value, int bits) {
+            return value << (64 - bits) >> (64 - bits);
+        }
+
+        private long readBits(int bits) {
+            long value = 0;
+            int remaining = bits;
+            while (remaining > 0) {
+                int available = 8 - (position & 7);
+                int take = Math.min(available, remaining);
+                int part = (buffer[position >>> 3] & 0xFF) >>> (available - take) & ((1 << take) - 1);
+                value = value << take | part;
+                position += take;
+                remaining -= take;
+            }
+            return value;
+        }
+
+        public long getTime() {
+            return time;
+        }
+
+        public double getValue() {
+            return Double.longBitsToDouble(bits);
+        }
+    }
+}
@@ -5,7 +5,6 @@
 package org.opengauss.monitor.util.jdbc;
 
 import cn.hutool.core.collection.CollectionUtil;
-import cn.hutool.core.lang.UUID;
 import cn.hutool.core.util.ObjectUtil;
 import com.alibaba.druid.pool.DruidPooledConnection;
 import com.alibaba.fastjson.JSONObject;
@@ -152,7 +151,7 @@ public class JdbcUtil {
      */
     public static DataSource getDataSource(SysConfig sysConfig) {
         DataSource dataSource = new DataSource();
-        dataSource.setId(UUID.randomUUID().toString(true));
+        dataSource.setId(getPoolKey(sysConfig));
         dataSource.setUrl(sysConfig.getUrl());
         dataSource.setUsername(sysConfig.getUserName());
         dataSource.setPassword(sysConfig.getPassword());
@@ -161,6 +160,16 @@ public class JdbcUtil {
         return dataSource;
     }
 
+    /**
+     * 连接池标识,同一url和用户复用同一个连接池
+     *
+     * @param sysConfig sysConfig
+     * @return String
+     */
+    public static String getPoolKey(SysConfig sysConfig) {
+        return sysConfig.getUrl() + "#" + sysConfig.getUserName();
+    }
+
     /**
      * getAllId
      *
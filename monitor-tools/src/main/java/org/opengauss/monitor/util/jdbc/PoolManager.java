@@ -6,13 +6,20 @@ package org.opengauss.monitor.util.jdbc;
 
 import com.alibaba.druid.pool.DruidDataSource;
 import com.alibaba.druid.pool.DruidPooledConnection;
+import org.opengauss.monitor.config.PoolConfig;
 import org.opengauss.monitor.entity.DataSource;
 import java.sql.SQLException;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
 
 /**
  * 功能描述
@@ -22,14 +29,26 @@ import lombok.extern.slf4j.Slf4j;
  */
 @Slf4j
 public class PoolManager {
+    /**
+     * 空闲连接池检查间隔(秒)
+     */
+    private static final long EVICT_PERIOD = 60L;
+
     /**
      * map
      */
-    static Map<String, DruidDataSource> zabbixMap = new HashMap<>();
+    static Map<String, DruidDataSource> zabbixMap = new ConcurrentHashMap<>();
+
+    private static Map<String, Long> lastAccess = new ConcurrentHashMap<>();
 
     private static Lock poolLock = new ReentrantLock();
 
-    private static Lock pooldelLock = new ReentrantLock();
+    private static ScheduledExecutorService evictExecutor = Executors.newSingleThreadScheduledExecutor(
+            new BasicThreadFactory.Builder().namingPattern("pool-evict-%d").daemon(true).build());
+
+    static {
+        evictExecutor.scheduleWithFixedDelay(PoolManager::evictIdlePool, EVICT_PERIOD, EVICT_PERIOD, TimeUnit.SECONDS);
+    }
 
     /**
      * getJdbcConnectionPool
@@ -38,34 +57,36 @@ public class PoolManager {
      * @return DruidDataSource
      */
     public static DruidDataSource getMonitorPool(DataSource source) {
-        if (zabbixMap.containsKey(source.getId())) {
-            return zabbixMap.get(source.getId());
-        } else {
-            poolLock.lock();
-            try {
-                log.info(Thread.currentThread().getName() + "get key");
-                if (!zabbixMap.containsKey(source.getId())) {
-                    DruidDataSource monitorSource = new DruidDataSource();
-                    monitorSource.setInitialSize(5);
-                    monitorSource.setMaxActive(20);
-                    monitorSource.setMaxWait(60000);
-                    monitorSource.setTimeBetweenEvictionRunsMillis(60000);
-                    monitorSource.setMinEvictableIdleTimeMillis(300000);
-                    monitorSource.setMaxEvictableIdleTimeMillis(900000);
-                    monitorSource.setName("zabbix");
-                    monitorSource.setUrl(source.getUrl());
-                    monitorSource.setUsername(source.getUsername());
-                    monitorSource.setPassword(source.getPassword());
-                    monitorSource.setDriverClassName(source.getDriver());
-                    monitorSource.setConnectionErrorRetryAttempts(3);
-                    monitorSource.setBreakAfterAcquireFailure(true);
-                    zabbixMap.put(source.getId(), monitorSource);
-                    log.info("Druid connection monitorPool :{}", source.getName());
-                }
-                return zabbixMap.get(source.getId());
-            } finally {
-                poolLock.unlock();
+        lastAccess.put(source.getId(), System.currentTimeMillis());
+        DruidDataSource exist = zabbixMap.get(source.getId());
+        if (exist != null) {
+            return exist;
+        }
+        poolLock.lock();
+        try {
+            if (!zabbixMap.containsKey(source.getId())) {
+                DruidDataSource monitorSource = new DruidDataSource();
+                monitorSource.setInitialSize(1);
+                monitorSource.setMaxActive(20);
+                monitorSource.setMaxWait(60000);
+                monitorSource.setTimeBetweenEvictionRunsMillis(60000);
+                monitorSource.setMinEvictableIdleTimeMillis(300000);
+                monitorSource.setMaxEvictableIdleTimeMillis(900000);
+                monitorSource.setName("zabbix-" + source.getName());
+                monitorSource.setUrl(source.getUrl());
+                monitorSource.setUsername(source.getUsername());
+                monitorSource.setPassword(source.getPassword());
+                monitorSource.setDriverClassName(source.getDriver());
+                monitorSource.setConnectionErrorRetryAttempts(3);
+                // 连接池常驻复用,获取失败后不能永久中断
+                monitorSource.setBreakAfterAcquireFailure(false);
+                monitorSource.setTimeBetweenConnectErrorMillis(10000);
+                zabbixMap.put(source.getId(), monitorSource);
+                log.info("Druid connection monitorPool :{}", source.getName());
             }
+            return zabbixMap.get(source.getId());
+        } finally {
+            poolLock.unlock();
         }
     }
 
@@ -75,18 +96,101 @@ public class PoolManager {
      * @param id id
      */
     public static void removeJdbcConnectionPool(String id) {
-        pooldelLock.lock();
+        poolLock.lock();
         try {
-            DruidDataSource druidDataSource = zabbixMap.get(id);
+            DruidDataSource druidDataSource = zabbixMap.remove(id);
+            lastAccess.remove(id);
             if (druidDataSource != null) {
                 druidDataSource.close();
-                zabbixMap.remove(id);
             }
         } finally {
-            pooldelLock.unlock();
+            poolLock.unlock();
+        }
+    }
+
+    /**
+     * 关闭超过pool.idleTimeout未使用且无活动连接的连接池
+     */
+    public static void evictIdlePool() {
+        long now = System.currentTimeMillis();
+        List<String> idle = new ArrayList<>();
+        for (Map.Entry<String, Long> entry : lastAccess.entrySet()) {
+            if (isIdle(entry.getKey(), entry.getValue(), now)) {
+                idle.add(entry.getKey());
+            }
+        }
+        int closed = 0;
+        for (String id : idle) {
+            if (evictIfIdle(id)) {
+                closed++;
+            }
+        }
+        if (closed > 0) {
+            log.info("evictIdlePool closed:{}, remain:{}", closed, getPoolCount());
+        }
+    }
+
+    private static boolean isIdle(String id, Long access, long now) {
+        DruidDataSource druidDataSource = zabbixMap.get(id);
+        return access != null && now - access > PoolConfig.getIdleTimeout()
+                && (druidDataSource == null || druidDataSource.getActiveCount() == 0);
+    }
+
+    /**
+     * 持锁再次确认空闲后关闭,检查与关闭之间被访问的连接池保留
+     *
+     * @param id id
+     * @return 是否已关闭
+     */
+    private static boolean evictIfIdle(String id) {
+        poolLock.lock();
+        try {
+            Long access = lastAccess.get(id);
+            if (!isIdle(id, access, System.currentTimeMillis()) || !lastAccess.remove(id, access)) {
+                return false;
+            }
+            DruidDataSource druidDataSource = zabbixMap.get(id);
+            if (druidDataSource != null && zabbixMap.remove(id, druidDataSource)) {
+                druidDataSource.close();
+            }
+            return true;
+        } finally {
+            poolLock.unlock();
         }
     }
 
+    /**
+     * 关闭所有连接池
+     */
+    public static void closeAll() {
+        for (String id : new ArrayList<>(zabbixMap.keySet())) {
+            removeJdbcConnectionPool(id);
+        }
+        evictExecutor.shutdownNow();
+    }
+
+    /**
+     * 当前连接池数量
+     *
+     * @return int
+     */
+    public static int getPoolCount() {
+        return zabbixMap.size();
+    }
+
+    /**
+     * 当前所有连接池的物理连接数(活动+空闲)
+     *
+     * @return int
+     */
+    public static int getConnectionCount() {
+        int count = 0;
+        for (DruidDataSource druidDataSource : zabbixMap.values()) {
+            count += druidDataSource.getActiveCount() + druidDataSource.getPoolingCount();
+        }
+        return count;
+    }
+
     /**
      * getMonitorConnection
      *
@@ -97,7 +201,19 @@ public class PoolManager {
         DruidDataSource dataSource = PoolManager.getMonitorPool(source);
         DruidPooledConnection druidPooledConnection = null;
         try {
-            druidPooledConnection = dataSource.getConnection();
+            if (dataSource.isClosed()) {
+                // 与空闲回收并发时重新获取连接池
+                dataSource = PoolManager.getMonitorPool(source);
+            }
+            try {
+                druidPooledConnection = dataSource.getConnection();
+            } catch (SQLException exception) {
+                if (!dataSource.isClosed()) {
+                    throw exception;
+                }
+                // 取到连接池后恰好被回收关闭,重新创建一次
+                druidPooledConnection = PoolManager.getMonitorPool(source).getConnection();
+            }
         } catch (SQLException exception) {
             log.error("getMonitorConnection fail-->{}", exception.getMessage());
         }
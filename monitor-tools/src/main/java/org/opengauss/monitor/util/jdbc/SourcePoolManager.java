@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) Huawei Technologies Co., Ltd. 2012-2022. All rights reserved.
+ */
+
+package org.opengauss.monitor.util.jdbc;
+
+import cn.hutool.core.collection.CollectionUtil;
+import cn.hutool.core.util.ObjectUtil;
+import com.alibaba.druid.pool.DruidDataSource;
+import org.opengauss.monitor.config.CollectConfig;
+import org.opengauss.monitor.config.PoolConfig;
+import org.opengauss.monitor.entity.SysConfig;
+import org.opengauss.monitor.util.Base64;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * 被监控实例连接池,按dataSourceId常驻复用
+ *
+ * @author liu
+ * @since 2022-10-01
+ */
+@Slf4j
+public class SourcePoolManager {
+    private static final String VALIDATION_QUERY = "select 1";
+
+    private static final long CONNECT_ERROR_MILLIS = 10000L;
+
+    private static Map<Long, JdbcTemplate> sourceMap = new ConcurrentHashMap<>();
+
+    /**
+     * 获取实例对应的JdbcTemplate,不存在时创建连接池
+     *
+     * @param sysConfig sysConfig 密码为Base64编码,与config.json中一致
+     * @return JdbcTemplate
+     */
+    public static JdbcTemplate getTemplate(SysConfig sysConfig) {
+        return sourceMap.computeIfAbsent(sysConfig.getDataSourceId(),
+                key -> new JdbcTemplate(createPool(sysConfig)));
+    }
+
+    private static DruidDataSource createPool(SysConfig sysConfig) {
+        int maxActive = PoolConfig.getMaxActive();
+        if (ObjectUtil.isNotEmpty(sysConfig.getPoolSize()) && sysConfig.getPoolSize() > 0) {
+            maxActive = sysConfig.getPoolSize();
+        }
+        DruidDataSource sourcePool = new DruidDataSource();
+        sourcePool.setName("monitor-" + sysConfig.getConnectName());
+        sourcePool.setUrl(sysConfig.getUrl());
+        sourcePool.setUsername(sysConfig.getUserName());
+        sourcePool.setPassword(Base64.decode(sysConfig.getPassword()));
+        sourcePool.setDriverClassName(sysConfig.getDriver());
+        sourcePool.setMaxActive(maxActive);
+        sourcePool.setInitialSize(Math.min(PoolConfig.getInitialSize(), maxActive));
+        sourcePool.setMinIdle(Math.min(PoolConfig.getMinIdle(), maxActive));
+        sourcePool.setMaxWait(PoolConfig.getMaxWait());
+        sourcePool.setValidationQuery(VALIDATION_QUERY);
+        sourcePool.setTestWhileIdle(true);
+        sourcePool.setTestOnBorrow(false);
+        sourcePool.setTimeBetweenEvictionRunsMillis(60000);
+        sourcePool.setMinEvictableIdleTimeMillis(300000);
+        sourcePool.setTimeBetweenConnectErrorMillis(CONNECT_ERROR_MILLIS);
+        // 实例不可达时等待连接的线程立即失败,不再等满maxWait
+        sourcePool.setFailFast(true);
+        // 全局查询超时,到期由驱动向服务端发送取消请求
+        sourcePool.setQueryTimeout(CollectConfig.getQueryTimeout());
+        log.info("Druid connection sourcePool :{}", sysConfig.getConnectName());
+        return sourcePool;
+    }
+
+    /**
+     * 删除实例连接池,实例修改或删除时调用
+     *
+     * @param id dataSourceId
+     */
+    public static void removeSourcePool(Long id) {
+        if (id == null) {
+            return;
+        }
+        JdbcTemplate template = sourceMap.remove(id);
+        if (template != null && template.getDataSource() instanceof DruidDataSource) {
+            ((DruidDataSource) template.getDataSource()).close();
+            log.info("Druid connection sourcePool closed :{}", id);
+        }
+    }
+
+    /**
+     * 批量删除实例连接池
+     *
+     * @param ids dataSourceIds
+     */
+    public static void removeSourcePool(List<Long> ids) {
+        if (CollectionUtil.isEmpty(ids)) {
+            return;
+        }
+        for (Long id : ids) {
+            removeSourcePool(id);
+        }
+    }
+
+    /**
+     * 当前实例连接池数量
+     *
+     * @return int
+     */
+    public static int getPoolCount() {
+        return sourceMap.size();
+    }
+
+    /**
+     * 关闭所有实例连接池
+     */
+    public static void closeAll() {
+        removeSourcePool(new ArrayList<>(sourceMap.keySet()));
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) Huawei Technologies Co., Ltd. 2012-2022. All rights reserved.
+ */
+
+package org.opengauss.monitor.manager;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.opengauss.monitor.config.CollectConfig;
+import org.opengauss.monitor.entity.SysConfig;
+import io.prometheus.client.CollectorRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jdbc.BadSqlGrammarException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * 熔断状态:关闭→打开→半开探测→关闭,探测丢失后到期重新放行
+ *
+ * @author liu
+ * @since 2022-10-01
+ */
+class CircuitBreakerManagerTest {
+    private static final long OPEN_MILLIS = 50L;
+
+    private static final DataAccessResourceFailureException UNREACHABLE =
+            new DataAccessResourceFailureException("Connection refused");
+
+    private final CollectConfig collectConfig = new CollectConfig();
+
+    private CircuitBreakerManager manager;
+
+    private CollectorRegistry registry;
+
+    private SysConfig sysConfig;
+
+    @BeforeEach
+    void setUp() {
+        collectConfig.setBreakerFailures(3);
+        collectConfig.setBreakerOpenMillis(OPEN_MILLIS);
+        manager = new CircuitBreakerManager();
+        registry = new CollectorRegistry();
+        ReflectionTestUtils.setField(manager, "collectorRegistry", registry);
+        manager.init();
+        sysConfig = new SysConfig();
+        sysConfig.setDataSourceId(1L);
+        sysConfig.setConnectName("pg");
+    }
+
+    @AfterEach
+    void tearDown() {
+        collectConfig.setBreakerFailures(3);
+        collectConfig.setBreakerOpenMillis(30000L);
+    }
+
+    private double up() {
+        return registry.getSampleValue("instance_up", new String[] {"instance"}, new String[] {"pg"});
+    }
+
+    private void open() {
+        for (int i = 0; i < 3; i++) {
+            assertTrue(manager.allow(sysConfig, 0));
+            manager.failure(sysConfig, UNREACHABLE);
+        }
+        assertFalse(manager.allow(sysConfig, 0));
+        assertEquals(0.0, up());
+    }
+
+    @Test
+    void opensAfterConsecutiveFailuresAndClosesOnProbeSuccess() throws InterruptedException {
+        manager.failure(sysConfig, UNREACHABLE);
+        manager.failure(sysConfig, UNREACHABLE);
+        // 成功清零失败计数,还需连续3次才打开
+        manager.success(sysConfig);
+        open();
+        Thread.sleep(OPEN_MILLIS + 20);
+        assertTrue(manager.allow(sysConfig, 0));
+        // 探测进行中只放行一个
+        assertFalse(manager.allow(sysConfig, 0));
+        manager.success(sysConfig);
+        assertTrue(manager.allow(sysConfig, 0));
+        assertTrue(manager.allow(sysConfig, 0));
+        assertEquals(1.0, up());
+    }
+
+    @Test
+    void failedProbeReopensImmediately() throws InterruptedException {
+        open();
+        Thread.sleep(OPEN_MILLIS + 20);
+        assertTrue(manager.allow(sysConfig, 0));
+        manager.failure(sysConfig, UNREACHABLE);
+        assertFalse(manager.allow(sysConfig, 0));
+        Thread.sleep(OPEN_MILLIS + 20);
+        assertTrue(manager.allow(sysConfig, 0));
+    }
+
+    @Test
+    void lostProbeIsReleasedAfterDeadline() throws InterruptedException {
+        open();
+        Thread.sleep(OPEN_MILLIS + 20);
+        assertTrue(manager.allow(sysConfig, 0));
+        // 探测任务因非数据库异常退出,既没有success也没有failure
+        assertFalse(manager.allow(sysConfig, 0));
+        Thread.sleep(OPEN_MILLIS + 20);
+        assertTrue(manager.allow(sysConfig, 0));
+        assertFalse(manager.allow(sysConfig, 0));
+        manager.success(sysConfig);
+        assertTrue(manager.allow(sysConfig, 0));
+    }
+
+    @Test
+    void probeDeadlineFollowsQueryTimeout() throws InterruptedException {
+        open();
+        Thread.sleep(OPEN_MILLIS + 20);
+        assertTrue(manager.allow(sysConfig, 1));
+        Thread.sleep(OPEN_MILLIS + 20);
+        // 探测查询的超时时间还没到,不放行第二个探测
+        assertFalse(manager.allow(sysConfig, 1));
+    }
+
+    @Test
+    void sqlErrorsAndTimeoutsDoNotOpen() {
+        for (int i = 0; i < 5; i++) {
+            manager.failure(sysConfig, new BadSqlGrammarException("collect", "select x", null));
+            manager.failure(sysConfig, new QueryTimeoutException("canceling statement due to statement timeout"));
+        }
+        assertTrue(manager.allow(sysConfig, 0));
+        assertEquals(1.0, up());
+    }
+
+    @Test
+    void removeClearsState() {
+        open();
+        manager.remove(sysConfig);
+        assertTrue(manager.allow(sysConfig, 0));
+    }
+}
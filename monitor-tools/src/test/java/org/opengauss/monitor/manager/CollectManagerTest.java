@@ -0,0 +1,299 @@
+/*
+ * Copyright (c) Huawei Technologies Co., Ltd. 2012-2022. All rights reserved.
+ */
+
+package org.opengauss.monitor.manager;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.opengauss.monitor.config.CollectConfig;
+import org.opengauss.monitor.entity.SysConfig;
+import org.opengauss.monitor.mapper.SysConfigMapper;
+import org.opengauss.monitor.mapper.SysJobMapper;
+import org.opengauss.monitor.mapper.SysSourceTargetMapper;
+import org.opengauss.monitor.quartz.domain.SysJob;
+import org.opengauss.monitor.quartz.task.MonitorTask;
+import org.opengauss.monitor.service.impl.MeterServiceImpl;
+import io.prometheus.client.CollectorRegistry;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.LinkedCaseInsensitiveMap;
+
+/**
+ * 实例采集线程池:同一任务同一实例未完成时跳过再次触发,异常后释放实例许可,队列满时放弃,批次合并
+ *
+ * @author liu
+ * @since 2022-10-01
+ */
+class CollectManagerTest {
+    private static final String SQL = "select relname, pg_total_relation_size(oid) size from pg_class";
+
+    private final CollectConfig collectConfig = new CollectConfig();
+
+    private final List<CountDownLatch> releases = new CopyOnWriteArrayList<>();
+
+    private CollectManager collectManager;
+
+    @BeforeEach
+    void setUp() {
+        collectConfig.setInstanceInflight(1);
+    }
+
+    @AfterEach
+    void tearDown() {
+        releases.forEach(CountDownLatch::countDown);
+        if (collectManager != null) {
+            collectManager.shutdown();
+        }
+        collectConfig.setMaxInflight(32);
+        collectConfig.setInstanceInflight(2);
+        collectConfig.setQueueCapacity(1000);
+        collectConfig.setBatchWindow(50L);
+    }
+
+    private void start() {
+        collectManager = new CollectManager();
+        ReflectionTestUtils.setField(collectManager, "collectorRegistry", new CollectorRegistry());
+        collectManager.init();
+    }
+
+    private Runnable blocking(CountDownLatch started) {
+        CountDownLatch release = new CountDownLatch(1);
+        releases.add(release);
+        return () -> {
+            started.countDown();
+            await(release);
+        };
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static boolean await(CountDownLatch latch, long millis) {
+        try {
+            return latch.await(millis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        // 条件可能带有副作用(如提交任务),只按最后一次求值的结果判断
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        boolean isMet = condition.getAsBoolean();
+        while (!isMet && System.nanoTime() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(5);
+            isMet = condition.getAsBoolean();
+        }
+        assertTrue(isMet);
+    }
+
+    @Test
+    void runningIsKeyedByJobAndInstance() throws InterruptedException {
+        collectConfig.setInstanceInflight(2);
+        start();
+        CountDownLatch started = new CountDownLatch(2);
+        assertTrue(collectManager.submit(Arrays.asList(1L, 2L), 10L, blocking(started)));
+        assertTrue(collectManager.submit(1L, 10L, blocking(started)));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        assertTrue(collectManager.isRunning(1L, 10L));
+        assertTrue(collectManager.isRunning(2L, 10L));
+        assertFalse(collectManager.isRunning(1L, 11L));
+        assertFalse(collectManager.isRunning(3L, 10L));
+
+        // job1在实例10上有两次未完成,完成一次后仍在执行
+        releases.get(0).countDown();
+        waitFor(() -> !collectManager.isRunning(2L, 10L));
+        assertTrue(collectManager.isRunning(1L, 10L));
+        releases.get(1).countDown();
+        waitFor(() -> !collectManager.isRunning(1L, 10L));
+    }
+
+    @Test
+    void bulkheadLimitsEachInstanceSeparately() throws InterruptedException {
+        start();
+        CountDownLatch started = new CountDownLatch(1);
+        assertTrue(collectManager.submit(1L, 10L, blocking(started)));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        // 实例10的许可已用完,其他任务也放弃;实例11不受影响
+        assertFalse(collectManager.submit(2L, 10L, () -> { }));
+        assertFalse(collectManager.isRunning(2L, 10L));
+        CountDownLatch other = new CountDownLatch(1);
+        assertTrue(collectManager.submit(2L, 11L, other::countDown));
+        assertTrue(other.await(5, TimeUnit.SECONDS));
+
+        releases.get(0).countDown();
+        waitFor(() -> !collectManager.isRunning(1L, 10L));
+        CountDownLatch again = new CountDownLatch(1);
+        waitFor(() -> collectManager.submit(2L, 10L, again::countDown));
+        assertTrue(again.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void permitIsReleasedWhenTaskThrows() throws InterruptedException {
+        start();
+        CountDownLatch thrown = new CountDownLatch(1);
+        assertTrue(collectManager.submit(1L, 10L, () -> {
+            thrown.countDown();
+            throw new IllegalStateException("collect fail");
+        }));
+        assertTrue(thrown.await(5, TimeUnit.SECONDS));
+        waitFor(() -> !collectManager.isRunning(1L, 10L));
+        // 实例许可只有1个,异常未释放时这里会一直失败
+        CountDownLatch next = new CountDownLatch(1);
+        waitFor(() -> collectManager.submit(1L, 10L, next::countDown));
+        assertTrue(next.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void rejectedSubmitReleasesPermitAndRunning() throws InterruptedException {
+        collectConfig.setMaxInflight(1);
+        collectConfig.setQueueCapacity(1);
+        start();
+        CountDownLatch started = new CountDownLatch(1);
+        assertTrue(collectManager.submit(1L, 10L, blocking(started)));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        CountDownLatch queued = new CountDownLatch(1);
+        assertTrue(collectManager.submit(1L, 11L, queued::countDown));
+        assertFalse(collectManager.submit(1L, 12L, () -> { }));
+        assertFalse(collectManager.isRunning(1L, 12L));
+
+        releases.get(0).countDown();
+        assertTrue(queued.await(5, TimeUnit.SECONDS));
+        CountDownLatch retried = new CountDownLatch(1);
+        waitFor(() -> collectManager.submit(1L, 12L, retried::countDown));
+        assertTrue(retried.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void batchFlushesItemsPerKeyOnce() throws InterruptedException {
+        collectConfig.setBatchWindow(100L);
+        start();
+        Map<String, List<Integer>> flushed = new ConcurrentHashMap<>();
+        AtomicInteger secondFlush = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(2);
+        collectManager.batch("10#0/15", 1, items -> {
+            flushed.put("10#0/15", new ArrayList<>(items));
+            done.countDown();
+        });
+        // 只使用首个加入者的flush
+        collectManager.batch("10#0/15", 2, items -> secondFlush.incrementAndGet());
+        collectManager.batch("11#0/15", 3, items -> {
+            flushed.put("11#0/15", new ArrayList<>(items));
+            done.countDown();
+        });
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList(1, 2), flushed.get("10#0/15"));
+        assertEquals(Collections.singletonList(3), flushed.get("11#0/15"));
+        assertEquals(0, secondFlush.get());
+
+        // flush异常不影响之后同一key的批次
+        collectManager.batch("10#0/15", 4, items -> {
+            throw new IllegalStateException("flush fail");
+        });
+        CountDownLatch next = new CountDownLatch(1);
+        waitFor(() -> {
+            collectManager.batch("10#0/15", 5, items -> next.countDown());
+            return await(next, 200);
+        });
+    }
+
+    @Test
+    void secondFireIsSkippedOnlyOnInstanceStillRunning() throws InterruptedException {
+        collectConfig.setInstanceInflight(2);
+        start();
+        SysJob sysJob = new SysJob();
+        sysJob.setJobId(950001L);
+        sysJob.setCacheTtl(60);
+        SysConfig slow = new SysConfig();
+        slow.setDataSourceId(10L);
+        slow.setConnectName("slow");
+        SysConfig fast = new SysConfig();
+        fast.setDataSourceId(11L);
+        fast.setConnectName("fast");
+
+        CountDownLatch slowStarted = new CountDownLatch(1);
+        CountDownLatch slowRelease = new CountDownLatch(1);
+        releases.add(slowRelease);
+        Map<Long, AtomicInteger> publishes = new ConcurrentHashMap<>();
+        MeterServiceImpl meterService = new MeterServiceImpl() {
+            @Override
+            public void publishCached(List<Map<String, Object>> list, SysConfig sysConfig, String task,
+                                      SysJob job) {
+                publishes.computeIfAbsent(sysConfig.getDataSourceId(), key -> new AtomicInteger()).incrementAndGet();
+                if (sysConfig == slow) {
+                    slowStarted.countDown();
+                    CollectManagerTest.await(slowRelease);
+                }
+            }
+        };
+        // 采集走结果缓存,不需要数据库连接
+        ResultCacheManager resultCacheManager = new ResultCacheManager();
+        ReflectionTestUtils.setField(resultCacheManager, "collectorRegistry", new CollectorRegistry());
+        resultCacheManager.init();
+        List<Map<String, Object>> rows = new ArrayList<>();
+        Map<String, Object> row = new LinkedCaseInsensitiveMap<>();
+        row.put("relname", "t1");
+        row.put("size", 8192L);
+        rows.add(row);
+        resultCacheManager.put(10L, sysJob, SQL, rows);
+        resultCacheManager.put(11L, sysJob, SQL, rows);
+
+        MonitorTask monitorTask = new MonitorTask();
+        ReflectionTestUtils.setField(monitorTask, "collectManager", collectManager);
+        ReflectionTestUtils.setField(monitorTask, "meterService", meterService);
+        ReflectionTestUtils.setField(monitorTask, "resultCacheManager", resultCacheManager);
+        ReflectionTestUtils.setField(monitorTask, "sourceTargetMapper", new SysSourceTargetMapper() {
+            @Override
+            public List<Long> getSourceIdByJobId(Long jobId) {
+                return Arrays.asList(10L, 11L);
+            }
+        });
+        ReflectionTestUtils.setField(monitorTask, "configMapper", new SysConfigMapper() {
+            @Override
+            public List<SysConfig> getBatchById(List<Long> ids) {
+                return Arrays.asList(slow, fast);
+            }
+        });
+        ReflectionTestUtils.setField(monitorTask, "sysJobMapper", new SysJobMapper() {
+            @Override
+            public SysJob selectJobById(Long jobId) {
+                return sysJob;
+            }
+        });
+
+        monitorTask.targetParams(SQL, "table_size", sysJob.getJobId());
+        assertTrue(slowStarted.await(5, TimeUnit.SECONDS));
+        waitFor(() -> !collectManager.isRunning(sysJob.getJobId(), 11L));
+        // 第二次触发:slow实例上一次未完成被跳过,fast实例照常采集
+        monitorTask.targetParams(SQL, "table_size", sysJob.getJobId());
+        waitFor(() -> publishes.get(11L).get() == 2);
+        assertEquals(1, publishes.get(10L).get());
+
+        slowRelease.countDown();
+        waitFor(() -> !collectManager.isRunning(sysJob.getJobId(), 10L));
+        monitorTask.targetParams(SQL, "table_size", sysJob.getJobId());
+        waitFor(() -> publishes.get(10L).get() == 2);
+    }
+}
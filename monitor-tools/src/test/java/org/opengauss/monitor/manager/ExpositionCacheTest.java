@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) Huawei Technologies Co., Ltd. 2012-2022. All rights reserved.
+ */
+
+package org.opengauss.monitor.manager;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.opengauss.monitor.mapper.SysSourceTargetMapper;
+import org.opengauss.monitor.quartz.domain.SysJob;
+import io.prometheus.client.CollectorRegistry;
+import io.prometheus.client.Gauge;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPInputStream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * /prometheus输出缓存:快照部分按代次复用,快照变化后重建;gzip输出为多个gzip成员拼接
+ *
+ * @author liu
+ * @since 2022-10-01
+ */
+class ExpositionCacheTest {
+    private static final Long DATA_SOURCE_ID = 1L;
+
+    /**
+     * 任务发布到的实例,清理快照时查询
+     */
+    private final Map<Long, List<Long>> published = new ConcurrentHashMap<>();
+
+    private SnapshotCollector snapshotCollector;
+
+    private ExpositionCache cache;
+
+    private Gauge gauge;
+
+    @BeforeEach
+    void setUp() {
+        CollectorRegistry registry = new CollectorRegistry();
+        gauge = Gauge.build().name("instance_up").help("up").labelNames("instance").register(registry);
+        SysSourceTargetMapper sourceTargetMapper = new SysSourceTargetMapper() {
+            @Override
+            public List<Long> getSourceIdByJobId(Long jobId) {
+                return published.getOrDefault(jobId, Collections.emptyList());
+            }
+        };
+        snapshotCollector = new SnapshotCollector();
+        ReflectionTestUtils.setField(snapshotCollector, "collectorRegistry", registry);
+        ReflectionTestUtils.setField(snapshotCollector, "sourceTargetMapper", sourceTargetMapper);
+        snapshotCollector.init();
+        cache = new ExpositionCache();
+        ReflectionTestUtils.setField(cache, "collectorRegistry", registry);
+        ReflectionTestUtils.setField(cache, "snapshotCollector", snapshotCollector);
+    }
+
+    private SysJob job(long jobId, String name) {
+        SysJob sysJob = new SysJob();
+        sysJob.setJobId(jobId);
+        sysJob.setJobName(name);
+        sysJob.setCronExpression("0/15 * * * * ?");
+        published.put(jobId, new ArrayList<>(Collections.singletonList(DATA_SOURCE_ID)));
+        return sysJob;
+    }
+
+    private void update(SysJob sysJob, String metric, double value) {
+        SnapshotCollector.Builder builder = snapshotCollector.builder();
+        builder.add(metric, new String[] {"table"}, new String[] {"t1"}, value);
+        snapshotCollector.update(sysJob, DATA_SOURCE_ID, builder);
+    }
+
+    private static String text(byte[] body) {
+        return new String(body, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] gunzip(byte[] body) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (InputStream input = new GZIPInputStream(new ByteArrayInputStream(body))) {
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = input.read(buffer)) > 0) {
+                output.write(buffer, 0, read);
+            }
+        }
+        return output.toByteArray();
+    }
+
+    private static int indexOf(byte[] data, byte[] part) {
+        for (int i = 0; i + part.length <= data.length; i++) {
+            boolean isMatch = true;
+            for (int j = 0; j < part.length && isMatch; j++) {
+                isMatch = data[i + j] == part[j];
+            }
+            if (isMatch) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Test
+    void snapshotPartIsReusedUntilGenerationChanges() {
+        SysJob sysJob = job(1L, "size");
+        update(sysJob, "size_db", 1.0);
+        byte[] first = snapshotCollector.exposition(ExpositionFormat.TEXT);
+        assertSame(first, snapshotCollector.exposition(ExpositionFormat.TEXT));
+        // 其他格式各自缓存
+        assertNotSame(first, snapshotCollector.exposition(ExpositionFormat.OPENMETRICS));
+
+        update(sysJob, "size_db", 2.0);
+        byte[] second = snapshotCollector.exposition(ExpositionFormat.TEXT);
+        assertNotSame(first, second);
+        assertTrue(text(second).contains("size_db{table=\"t1\",} 2.0"));
+        assertFalse(text(second).contains("1.0"));
+    }
+
+    @Test
+    void purgeInvalidatesCachedOutput() {
+        SysJob sysJob = job(1L, "size");
+        update(sysJob, "size_db", 1.0);
+        update(job(2L, "toast"), "toast_db", 3.0);
+        byte[] first = snapshotCollector.exposition(ExpositionFormat.TEXT);
+        assertTrue(text(first).contains("size_db"));
+        // 任务从实例取消发布后下一次输出不再包含其快照
+        published.put(1L, Collections.emptyList());
+        byte[] second = snapshotCollector.exposition(ExpositionFormat.TEXT);
+        assertNotSame(first, second);
+        assertFalse(text(second).contains("size_db"));
+        assertTrue(text(second).contains("toast_db"));
+    }
+
+    @Test
+    void sameMetricFromTwoJobsIsMerged() {
+        update(job(1L, "a"), "size_db", 1.0);
+        SnapshotCollector.Builder builder = snapshotCollector.builder();
+        builder.add("size_db", new String[] {"table"}, new String[] {"t2"}, 2.0);
+        snapshotCollector.update(job(2L, "b"), DATA_SOURCE_ID, builder);
+        String body = text(snapshotCollector.exposition(ExpositionFormat.TEXT));
+        assertEquals(body.indexOf("# TYPE size_db"), body.lastIndexOf("# TYPE size_db"));
+        assertTrue(body.contains("table=\"t1\""));
+        assertTrue(body.contains("table=\"t2\""));
+    }
+
+    @Test
+    void gzipIsConcatenationOfMembersAndMatchesPlainBody() throws IOException {
+        update(job(1L, "size"), "size_db", 1.0);
+        gauge.labels("pg").set(1);
+        for (ExpositionFormat format : ExpositionFormat.values()) {
+            byte[] plain = cache.get(format, false);
+            byte[] gzip = cache.get(format, true);
+            assertArrayEquals(plain, gunzip(gzip), format.name());
+            byte[][] gzipParts = (byte[][]) ReflectionTestUtils.getField(cache, "gzipParts");
+            byte[] snapshotPart = gzipParts[format.ordinal()];
+            // 快照部分是一个独立的gzip成员,原样出现在输出中
+            assertTrue(indexOf(gzip, snapshotPart) > 0, format.name());
+            assertArrayEquals(snapshotCollector.exposition(format), gunzip(snapshotPart), format.name());
+        }
+        String openMetrics = text(cache.get(ExpositionFormat.OPENMETRICS, false));
+        assertTrue(openMetrics.endsWith("# EOF\n"));
+        assertEquals(openMetrics.indexOf("# EOF"), openMetrics.lastIndexOf("# EOF"));
+    }
+
+    @Test
+    void gzipSnapshotPartIsRecompressedOnlyAfterChange() throws IOException {
+        SysJob sysJob = job(1L, "size");
+        update(sysJob, "size_db", 1.0);
+        cache.get(ExpositionFormat.TEXT, true);
+        byte[][] gzipParts = (byte[][]) ReflectionTestUtils.getField(cache, "gzipParts");
+        byte[] first = gzipParts[ExpositionFormat.TEXT.ordinal()];
+        // 注册指标变化不影响快照部分
+        gauge.labels("pg").set(0);
+        byte[] body = cache.get(ExpositionFormat.TEXT, true);
+        assertSame(first, gzipParts[ExpositionFormat.TEXT.ordinal()]);
+        assertTrue(text(gunzip(body)).contains("instance_up{instance=\"pg\",} 0.0"));
+
+        update(sysJob, "size_db", 5.0);
+        body = cache.get(ExpositionFormat.TEXT, true);
+        assertNotSame(first, gzipParts[ExpositionFormat.TEXT.ordinal()]);
+        assertTrue(text(gunzip(body)).contains("size_db{table=\"t1\",} 5.0"));
+    }
+}
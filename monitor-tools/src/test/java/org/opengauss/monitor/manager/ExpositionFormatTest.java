@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) Huawei Technologies Co., Ltd. 2012-2022. All rights reserved.
+ */
+
+package org.opengauss.monitor.manager;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import io.prometheus.client.Collector;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/**
+ * /prometheus输出格式协商与编码
+ *
+ * @author liu
+ * @since 2022-10-01
+ */
+class ExpositionFormatTest {
+    private static final String PROTOBUF =
+            "application/vnd.google.protobuf;proto=io.prometheus.client.MetricFamily;encoding=delimited";
+
+    @Test
+    void negotiateDefaultsToText() {
+        assertEquals(ExpositionFormat.TEXT, ExpositionFormat.negotiate(null));
+        assertEquals(ExpositionFormat.TEXT, ExpositionFormat.negotiate(""));
+        assertEquals(ExpositionFormat.TEXT, ExpositionFormat.negotiate("*/*"));
+        assertEquals(ExpositionFormat.TEXT, ExpositionFormat.negotiate("application/json"));
+    }
+
+    @Test
+    void negotiatePrometheusScrapeHeaders() {
+        assertEquals(ExpositionFormat.OPENMETRICS, ExpositionFormat.negotiate(
+                "application/openmetrics-text;version=1.0.0,application/openmetrics-text;version=0.0.1;q=0.75,"
+                        + "text/plain;version=0.0.4;q=0.5,*/*;q=0.1"));
+        assertEquals(ExpositionFormat.PROTOBUF, ExpositionFormat.negotiate(PROTOBUF
+                + ";q=0.7,text/plain;version=0.0.4;q=0.3,*/*;q=0.1"));
+    }
+
+    @Test
+    void negotiateHonoursQualityValues() {
+        assertEquals(ExpositionFormat.TEXT,
+                ExpositionFormat.negotiate("application/openmetrics-text;q=0.1, text/plain;q=1"));
+        assertEquals(ExpositionFormat.OPENMETRICS,
+                ExpositionFormat.negotiate("text/plain;q=0.2, application/openmetrics-text; version=1.0.0; q=0.9"));
+        assertEquals(ExpositionFormat.TEXT, ExpositionFormat.negotiate(PROTOBUF + ";q=0.4, */*;q=0.5"));
+        assertEquals(ExpositionFormat.TEXT, ExpositionFormat.negotiate("application/openmetrics-text;q=0"));
+        assertEquals(ExpositionFormat.TEXT, ExpositionFormat.negotiate("application/openmetrics-text;q=abc"));
+    }
+
+    @Test
+    void negotiateIgnoresUnsupportedParameters() {
+        assertEquals(ExpositionFormat.TEXT, ExpositionFormat.negotiate("application/openmetrics-text;version=2.0.0"));
+        assertEquals(ExpositionFormat.TEXT,
+                ExpositionFormat.negotiate("application/vnd.google.protobuf;proto=other.Message"));
+        assertEquals(ExpositionFormat.PROTOBUF,
+                ExpositionFormat.negotiate("Application/Vnd.Google.Protobuf; PROTO=io.prometheus.client.MetricFamily"));
+    }
+
+    @Test
+    void negotiatePrefersFirstOnTie() {
+        assertEquals(ExpositionFormat.OPENMETRICS,
+                ExpositionFormat.negotiate("application/openmetrics-text, text/plain"));
+        assertEquals(ExpositionFormat.TEXT, ExpositionFormat.negotiate("text/plain, application/openmetrics-text"));
+    }
+
+    @Test
+    void encodeOpenMetricsLeavesEofToTrailer() throws Exception {
+        List<Collector.MetricFamilySamples> families = Collections.singletonList(
+                new Collector.MetricFamilySamples("up", Collector.Type.GAUGE, "help",
+                        Collections.singletonList(new Collector.MetricFamilySamples.Sample("up",
+                                Arrays.asList("instance"), Arrays.asList("a"), 1))));
+        String body = new String(ExpositionFormat.OPENMETRICS.encode(families), StandardCharsets.UTF_8);
+        assertEquals("# TYPE up gauge\n# HELP up help\nup{instance=\"a\"} 1.0\n", body);
+        assertEquals("# EOF\n", new String(ExpositionFormat.OPENMETRICS.trailer(), StandardCharsets.UTF_8));
+        assertEquals(0, ExpositionFormat.TEXT.trailer().length);
+        assertEquals(0, ExpositionFormat.PROTOBUF.encode(Collections.emptyList()).length);
+    }
+}
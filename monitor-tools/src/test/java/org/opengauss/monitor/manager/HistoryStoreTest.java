@@ -0,0 +1,228 @@
+/*
+ * Copyright (c) Huawei Technologies Co., Ltd. 2012-2022. All rights reserved.
+ */
+
+package org.opengauss.monitor.manager;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.opengauss.monitor.config.HistoryConfig;
+import org.opengauss.monitor.entity.HistoryRollup;
+import org.opengauss.monitor.entity.HistorySeries;
+import io.prometheus.client.Collector;
+import io.prometheus.client.CollectorRegistry;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * 本地历史数据的写入、跨块查询与保留时间
+ *
+ * @author liu
+ * @since 2022-10-01
+ */
+class HistoryStoreTest {
+    private static final long BASE = 1665000000000L;
+
+    private static final long INTERVAL = 15000L;
+
+    private final HistoryConfig config = new HistoryConfig();
+
+    private HistoryStore store;
+
+    @BeforeEach
+    void setUp() {
+        config.setEnable(true);
+        config.setRetentionHours(6);
+        config.setRollupHours(24);
+        config.setChunkPoints(10);
+        config.setMaxBytes(67108864L);
+        store = new HistoryStore();
+        ReflectionTestUtils.setField(store, "collectorRegistry", new CollectorRegistry());
+        store.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        config.setRetentionHours(6);
+        config.setRollupHours(24);
+        config.setChunkPoints(120);
+    }
+
+    private void append(String table, long time, double value) {
+        Collector.MetricFamilySamples.Sample sample = new Collector.MetricFamilySamples.Sample("size_db",
+                Arrays.asList("table", "instance"), Arrays.asList(table, "pg"), value);
+        store.append(Collections.singletonList(new Collector.MetricFamilySamples("size_db", Collector.Type.GAUGE,
+                "size", Collections.singletonList(sample))), time);
+    }
+
+    @Test
+    void queryAcrossChunkBoundaries() {
+        for (int i = 0; i < 25; i++) {
+            append("t1", BASE + i * INTERVAL, i == 10 ? Double.NaN : i);
+        }
+        List<HistorySeries> result = store.query("size_db", null, BASE, BASE + 24 * INTERVAL);
+        assertEquals(1, result.size());
+        HistorySeries series = result.get(0);
+        assertEquals(25, series.getTimestamps().length);
+        for (int i = 0; i < 25; i++) {
+            assertEquals(BASE + i * INTERVAL, series.getTimestamps()[i]);
+            assertEquals(i == 10 ? Double.NaN : i, series.getValues()[i]);
+        }
+        assertEquals("t1", series.getLabels().get("table"));
+
+        // 范围两端分别落在第1块末尾和第3块开头
+        HistorySeries partial = store.query("size_db", null, BASE + 8 * INTERVAL, BASE + 21 * INTERVAL).get(0);
+        assertEquals(14, partial.getTimestamps().length);
+        assertEquals(BASE + 8 * INTERVAL, partial.getTimestamps()[0]);
+        assertEquals(BASE + 21 * INTERVAL, partial.getTimestamps()[13]);
+    }
+
+    @Test
+    void ignoresOutOfOrderSamples() {
+        append("t1", BASE + INTERVAL, 1);
+        append("t1", BASE, 0);
+        append("t1", BASE + INTERVAL, 5);
+        assertArrayEquals(new double[] {1}, store.query("size_db", null, BASE, BASE + INTERVAL).get(0).getValues());
+    }
+
+    @Test
+    void matchersSelectSeries() {
+        append("t1", BASE, 1);
+        append("t2", BASE, 2);
+        assertEquals(2, store.query("size_db", null, BASE, BASE).size());
+        List<HistorySeries> result = store.query("size_db", Collections.singletonMap("table", "t2"), BASE, BASE);
+        assertEquals(1, result.size());
+        assertEquals(2.0, result.get(0).getValues()[0]);
+        assertTrue(store.query("size_db", Collections.singletonMap("table", "t3"), BASE, BASE).isEmpty());
+        assertTrue(store.query("other", null, BASE, BASE).isEmpty());
+    }
+
+    @Test
+    void dropsChunksOlderThanRetention() {
+        long hour = TimeUnit.HOURS.toMillis(1);
+        for (long time = BASE; time <= BASE + 8 * hour; time += TimeUnit.MINUTES.toMillis(1)) {
+            append("t1", time, 1);
+        }
+        long[] timestamps = store.query("size_db", null, BASE, BASE + 8 * hour).get(0).getTimestamps();
+        // 整块过期后才删除,最早的点不早于保留时间前一个块
+        assertTrue(timestamps[0] >= BASE + 2 * hour - 10 * TimeUnit.MINUTES.toMillis(1), "first " + timestamps[0]);
+        assertEquals(BASE + 8 * hour, timestamps[timestamps.length - 1]);
+    }
+
+    /**
+     * 写入3小时带NaN的随机样本,返回原始值
+     */
+    private double[] appendRandom() {
+        Random random = new Random(5);
+        int count = (int) (TimeUnit.HOURS.toMillis(3) / INTERVAL);
+        double[] values = new double[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = random.nextInt(20) == 0 ? Double.NaN : random.nextInt(1000) / 4.0;
+            append("t1", BASE + i * INTERVAL, values[i]);
+        }
+        return values;
+    }
+
+    private static void assertMatchesRaw(double[] values, HistoryRollup rollup, long start, long end, long step) {
+        int index = 0;
+        for (long bucket = start - Math.floorMod(start, step); bucket <= end; bucket += step) {
+            double min = Double.NaN;
+            double max = Double.NaN;
+            double sum = 0;
+            double last = Double.NaN;
+            long count = 0;
+            boolean isSeen = false;
+            for (int i = 0; i < values.length; i++) {
+                long time = BASE + i * INTERVAL;
+                if (time < Math.max(bucket, start) || time >= bucket + step || time > end) {
+                    continue;
+                }
+                isSeen = true;
+                last = values[i];
+                if (!Double.isNaN(values[i])) {
+                    min = count == 0 ? values[i] : Math.min(min, values[i]);
+                    max = count == 0 ? values[i] : Math.max(max, values[i]);
+                    sum += values[i];
+                    count++;
+                }
+            }
+            if (!isSeen) {
+                continue;
+            }
+            String at = "bucket " + bucket + " step " + step;
+            assertEquals(bucket, rollup.getTimestamps()[index], at);
+            assertEquals(min, rollup.getMin()[index], at);
+            assertEquals(max, rollup.getMax()[index], at);
+            assertEquals(count == 0 ? Double.NaN : sum / count, rollup.getAvg()[index], 1e-9, at);
+            assertEquals(last, rollup.getLast()[index], at);
+            assertEquals(count, rollup.getCount()[index], at);
+            index++;
+        }
+        assertEquals(index, rollup.getTimestamps().length, "buckets for step " + step);
+    }
+
+    @Test
+    void rollupMatchesRawAggregation() {
+        double[] values = appendRandom();
+        long end = BASE + (values.length - 1) * INTERVAL;
+        long hour = TimeUnit.HOURS.toMillis(1);
+        // 1m、5m、15m(读5m)、1h各精度,以及30s(读原始点)
+        for (long step : new long[] {60000L, 300000L, 900000L, hour, 30000L}) {
+            List<HistoryRollup> result = store.rollup("size_db", null, BASE, end, step);
+            assertEquals(1, result.size());
+            assertEquals(step, result.get(0).getStep());
+            assertMatchesRaw(values, result.get(0), BASE, end, step);
+        }
+        // 开始时间不与桶边界对齐时返回包含开始时间的完整时间桶
+        long start = BASE + 17 * 60000L + 5000L;
+        assertMatchesRaw(values, store.rollup("size_db", null, start, end - hour, 300000L).get(0),
+                BASE + 15 * 60000L, end - hour, 300000L);
+    }
+
+    @Test
+    void rollupFallsBackToCoarserLevelBeyondRetention() {
+        config.setRetentionHours(1);
+        long minute = TimeUnit.MINUTES.toMillis(1);
+        long end = BASE + TimeUnit.HOURS.toMillis(5);
+        for (long time = BASE; time <= end; time += minute) {
+            append("t1", time, 1);
+        }
+        // 1m和原始点只剩最近1小时左右,5m仍覆盖整个范围
+        HistoryRollup longRange = store.rollup("size_db", null, BASE, end, minute).get(0);
+        assertEquals(300000L, longRange.getStep());
+        assertEquals(BASE, longRange.getTimestamps()[0]);
+        assertEquals(end, longRange.getTimestamps()[longRange.getTimestamps().length - 1]);
+        HistoryRollup raw = store.rollup("size_db", null, BASE, end, 30000L).get(0);
+        assertEquals(300000L, raw.getStep());
+        assertEquals(BASE, raw.getTimestamps()[0]);
+
+        // 步长不是5m的整数倍时向上取整
+        assertEquals(600000L, store.rollup("size_db", null, BASE, end, 420000L).get(0).getStep());
+
+        // 保留时间以内的查询仍使用请求的精度
+        HistoryRollup recent = store.rollup("size_db", null, end - 30 * minute, end, minute).get(0);
+        assertEquals(minute, recent.getStep());
+        assertEquals(31, recent.getTimestamps().length);
+    }
+
+    @Test
+    void newSeriesDoesNotFallBackForBucketAlignment() {
+        long start = BASE + TimeUnit.MINUTES.toMillis(17);
+        for (int i = 0; i < 20; i++) {
+            append("t1", start + i * INTERVAL, i);
+        }
+        // 1h桶的开始时间早于首个样本,但并没有更早的数据
+        HistoryRollup rollup = store.rollup("size_db", null, BASE, start + 20 * INTERVAL, 60000L).get(0);
+        assertEquals(60000L, rollup.getStep());
+        assertEquals(5, rollup.getTimestamps().length);
+    }
+}
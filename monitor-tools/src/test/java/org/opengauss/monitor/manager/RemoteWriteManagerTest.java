@@ -0,0 +1,274 @@
+/*
+ * Copyright (c) Huawei Technologies Co., Ltd. 2012-2022. All rights reserved.
+ */
+
+package org.opengauss.monitor.manager;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.sun.net.httpserver.HttpServer;
+import org.opengauss.monitor.config.RemoteWriteConfig;
+import org.opengauss.monitor.util.ProtobufReader;
+import org.opengauss.monitor.util.SnappyDecoder;
+import io.prometheus.client.Collector;
+import io.prometheus.client.CollectorRegistry;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * remote write推送,使用本地HTTP接收端校验请求编码、重试退避与spool补发
+ *
+ * @author liu
+ * @since 2022-10-01
+ */
+class RemoteWriteManagerTest {
+    private static final long WAIT_SECONDS = 10L;
+
+    @TempDir
+    Path spoolDir;
+
+    private final RemoteWriteConfig config = new RemoteWriteConfig();
+
+    private final BlockingQueue<Received> received = new LinkedBlockingQueue<>();
+
+    private volatile IntSupplier status = () -> 200;
+
+    private HttpServer server;
+
+    private CollectorRegistry registry;
+
+    private RemoteWriteManager manager;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/write", exchange -> {
+            byte[] body;
+            try (InputStream input = exchange.getRequestBody()) {
+                body = readAll(input);
+            }
+            received.add(new Received(System.nanoTime(), exchange.getRequestHeaders().getFirst("Content-Encoding"),
+                    body));
+            int code = status.getAsInt();
+            exchange.sendResponseHeaders(code, -1);
+            exchange.close();
+        });
+        server.start();
+        config.setEnable(true);
+        config.setUrl("http://127.0.0.1:" + server.getAddress().getPort() + "/write");
+        config.setShards(1);
+        config.setBatchSize(2);
+        config.setFlushInterval(100L);
+        config.setQueueCapacity(16);
+        config.setTimeout(2000);
+        config.setMaxRetries(3);
+        config.setRetryBackoff(50L);
+        config.setMaxBackoff(30000L);
+        config.setSpoolDir(spoolDir.toString());
+        config.setSpoolMaxBytes(104857600L);
+        registry = new CollectorRegistry();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (manager != null) {
+            manager.shutdown();
+        }
+        server.stop(0);
+        RemoteWriteConfig defaults = new RemoteWriteConfig();
+        defaults.setEnable(false);
+        defaults.setUrl("");
+        defaults.setShards(2);
+        defaults.setBatchSize(500);
+        defaults.setFlushInterval(1000L);
+        defaults.setTimeout(10000);
+        defaults.setMaxRetries(3);
+        defaults.setRetryBackoff(500L);
+        defaults.setSpoolDir("spool");
+    }
+
+    private void start() {
+        manager = new RemoteWriteManager();
+        ReflectionTestUtils.setField(manager, "collectorRegistry", registry);
+        manager.init();
+    }
+
+    private double batches(String result) {
+        Double value = registry.getSampleValue("remote_write_batches_total", new String[] {"result"},
+                new String[] {result});
+        return value == null ? 0 : value;
+    }
+
+    private static List<Collector.MetricFamilySamples> gauge(double... values) {
+        List<Collector.MetricFamilySamples.Sample> samples = new ArrayList<>();
+        for (int i = 0; i < values.length; i++) {
+            samples.add(new Collector.MetricFamilySamples.Sample("size_db", Arrays.asList("table", "instance"),
+                    Arrays.asList("t" + i, "pg"), values[i]));
+        }
+        return Collections.singletonList(
+                new Collector.MetricFamilySamples("size_db", Collector.Type.GAUGE, "size", samples));
+    }
+
+    private Received next() throws InterruptedException {
+        Received item = received.poll(WAIT_SECONDS, TimeUnit.SECONDS);
+        assertNotNull(item, "no remote write request received");
+        return item;
+    }
+
+    @Test
+    void sendsSnappyCompressedWriteRequest() throws Exception {
+        start();
+        manager.offer(gauge(1.5, 2.5), 1000L);
+        Received request = next();
+        assertEquals("snappy", request.encoding);
+        List<ProtobufReader> series = ProtobufReader.parse(SnappyDecoder.decompress(request.body)).messages(1);
+        assertEquals(2, series.size());
+        List<ProtobufReader> labels = series.get(0).messages(1);
+        // 标签按名称排序,__name__排在instance之前
+        assertEquals("__name__", labels.get(0).string(1));
+        assertEquals("size_db", labels.get(0).string(2));
+        assertEquals("instance", labels.get(1).string(1));
+        assertEquals("table", labels.get(2).string(1));
+        assertEquals("t0", labels.get(2).string(2));
+        ProtobufReader sample = series.get(0).message(2);
+        assertEquals(1.5, sample.getDouble(1));
+        assertEquals(1000L, sample.varint(2));
+        assertEquals(2.5, series.get(1).message(2).getDouble(1));
+        waitFor(() -> batches("sent") == 1.0);
+    }
+
+    @Test
+    void flushesPartialBatchAfterInterval() throws Exception {
+        start();
+        manager.offer(gauge(3.0), 2000L);
+        Received request = next();
+        assertEquals(1, ProtobufReader.parse(SnappyDecoder.decompress(request.body)).messages(1).size());
+    }
+
+    @Test
+    void retriesWithExponentialBackoff() throws Exception {
+        int[] calls = {0};
+        status = () -> ++calls[0] <= 2 ? 503 : 200;
+        start();
+        manager.offer(gauge(1, 2), 1000L);
+        Received first = next();
+        Received second = next();
+        Received third = next();
+        long firstGap = TimeUnit.NANOSECONDS.toMillis(second.time - first.time);
+        long secondGap = TimeUnit.NANOSECONDS.toMillis(third.time - second.time);
+        assertTrue(firstGap >= 50, "first backoff " + firstGap);
+        assertTrue(secondGap >= 100, "second backoff " + secondGap);
+        waitFor(() -> batches("sent") == 1.0);
+        assertEquals(2.0, batches("retried"));
+    }
+
+    @Test
+    void dropsRejectedBatchWithoutRetry() throws Exception {
+        status = () -> 400;
+        start();
+        manager.offer(gauge(1, 2), 1000L);
+        next();
+        waitFor(() -> batches("dropped") == 1.0);
+        assertNull(received.poll(300, TimeUnit.MILLISECONDS));
+        assertEquals(0.0, batches("retried"));
+    }
+
+    @Test
+    void spoolsWhileReceiverIsDownAndReplaysInOrder() throws Exception {
+        config.setMaxRetries(0);
+        status = () -> 500;
+        start();
+        manager.offer(gauge(1, 2), 1000L);
+        waitFor(() -> batches("spooled") == 1.0);
+        manager.offer(gauge(3, 4), 2000L);
+        waitFor(() -> batches("spooled") == 2.0);
+        File shardDir = spoolDir.resolve("shard-0").toFile();
+        assertEquals(2, shardDir.list().length);
+        received.clear();
+
+        status = () -> 200;
+        List<Long> timestamps = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            ProtobufReader request = ProtobufReader.parse(SnappyDecoder.decompress(next().body));
+            timestamps.add(request.message(1).message(2).varint(2));
+        }
+        assertEquals(Arrays.asList(1000L, 2000L), timestamps);
+        waitFor(() -> shardDir.list().length == 0);
+    }
+
+    @Test
+    void shutdownSpoolsBufferedSamples() throws Exception {
+        config.setBatchSize(100);
+        config.setFlushInterval(60000L);
+        start();
+        manager.offer(gauge(1), 1000L);
+        manager.shutdown();
+        manager = null;
+        File[] files = spoolDir.resolve("shard-0").toFile().listFiles();
+        assertNotNull(files);
+        assertEquals(1, files.length);
+        assertTrue(received.isEmpty());
+    }
+
+    private static void waitFor(Condition condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(WAIT_SECONDS);
+        while (!condition.isMet()) {
+            assertTrue(System.nanoTime() < deadline, "condition not met in time");
+            Thread.sleep(20);
+        }
+    }
+
+    private static byte[] readAll(InputStream input) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = input.read(buffer)) != -1) {
+            output.write(buffer, 0, read);
+        }
+        return output.toByteArray();
+    }
+
+    /**
+     * 等待的条件
+     */
+    private interface Condition {
+        boolean isMet();
+    }
+
+    /**
+     * 接收端收到的一次请求
+     */
+    private static final class Received {
+        private final long time;
+
+        private final String encoding;
+
+        private final byte[] body;
+
+        private Received(long time, String encoding, byte[] body) {
+            this.time = time;
+            this.encoding = encoding;
+            this.body = body;
+        }
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) Huawei Technologies Co., Ltd. 2012-2022. All rights reserved.
+ */
+
+package org.opengauss.monitor.manager;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.opengauss.monitor.config.CollectConfig;
+import org.opengauss.monitor.quartz.domain.SysJob;
+import io.prometheus.client.CollectorRegistry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.LinkedCaseInsensitiveMap;
+
+/**
+ * 结果缓存:有效期、按总行数的LRU淘汰、行数统计以及超过上限的结果不缓存
+ *
+ * @author liu
+ * @since 2022-10-01
+ */
+class ResultCacheManagerTest {
+    private static final Long DATA_SOURCE_ID = 1L;
+
+    private static final String SQL = "select relname, pg_total_relation_size(oid) size from pg_class";
+
+    private final CollectConfig collectConfig = new CollectConfig();
+
+    private ResultCacheManager manager;
+
+    private CollectorRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        collectConfig.setResultCacheRows(5);
+        manager = new ResultCacheManager();
+        registry = new CollectorRegistry();
+        ReflectionTestUtils.setField(manager, "collectorRegistry", registry);
+        manager.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        collectConfig.setResultCacheRows(100000);
+    }
+
+    static SysJob job(long jobId, Integer cacheTtl) {
+        SysJob sysJob = new SysJob();
+        sysJob.setJobId(jobId);
+        sysJob.setCacheTtl(cacheTtl);
+        return sysJob;
+    }
+
+    static List<Map<String, Object>> rows(int count) {
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Map<String, Object> row = new LinkedCaseInsensitiveMap<>();
+            row.put("relname", "t" + i);
+            row.put("size", 8192L * i);
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    private long rows() {
+        return (long) ReflectionTestUtils.getField(manager, "rows");
+    }
+
+    private double count(String result) {
+        Double value = registry.getSampleValue("result_cache_total", new String[] {"result"},
+                new String[] {result});
+        return value == null ? 0 : value;
+    }
+
+    @Test
+    void jobWithoutTtlIsNotCached() {
+        SysJob sysJob = job(1L, null);
+        manager.put(DATA_SOURCE_ID, sysJob, SQL, rows(1));
+        assertNull(manager.get(DATA_SOURCE_ID, sysJob, SQL));
+        assertEquals(0, rows());
+        assertEquals(0.0, count("loaded"));
+    }
+
+    @Test
+    void hitReturnsCopyKeyedByNormalizedSql() {
+        SysJob sysJob = job(1L, 60);
+        manager.put(DATA_SOURCE_ID, sysJob, SQL, rows(2));
+        List<Map<String, Object>> cached = manager.get(DATA_SOURCE_ID, sysJob, SQL + " ;");
+        assertNotNull(cached);
+        assertEquals(8192L, cached.get(1).get("SIZE"));
+        cached.get(1).put("size", "default");
+        assertEquals(8192L, manager.get(DATA_SOURCE_ID, sysJob, SQL).get(1).get("size"));
+        assertNull(manager.get(2L, sysJob, SQL));
+        assertEquals(2.0, count("hit"));
+    }
+
+    @Test
+    void expiredResultIsDroppedAndSwept() throws InterruptedException {
+        SysJob expiring = job(1L, 1);
+        SysJob other = job(2L, 1);
+        manager.put(DATA_SOURCE_ID, expiring, SQL, rows(2));
+        manager.put(DATA_SOURCE_ID, other, SQL, rows(1));
+        assertEquals(3, rows());
+        Thread.sleep(1100);
+        assertNull(manager.get(DATA_SOURCE_ID, expiring, SQL));
+        assertEquals(1, rows());
+        // 到清理时间时put删除所有过期结果
+        ReflectionTestUtils.setField(manager, "nextSweep", 0L);
+        manager.put(DATA_SOURCE_ID, job(3L, 60), SQL, rows(2));
+        assertEquals(2, rows());
+        assertNull(manager.get(DATA_SOURCE_ID, other, SQL));
+    }
+
+    @Test
+    void leastRecentlyUsedIsEvictedFirst() {
+        SysJob first = job(1L, 60);
+        SysJob second = job(2L, 60);
+        SysJob third = job(3L, 60);
+        manager.put(DATA_SOURCE_ID, first, SQL, rows(2));
+        manager.put(DATA_SOURCE_ID, second, SQL, rows(2));
+        // 访问first后second成为最久未使用
+        assertNotNull(manager.get(DATA_SOURCE_ID, first, SQL));
+        manager.put(DATA_SOURCE_ID, third, SQL, rows(2));
+        assertNull(manager.get(DATA_SOURCE_ID, second, SQL));
+        assertNotNull(manager.get(DATA_SOURCE_ID, first, SQL));
+        assertNotNull(manager.get(DATA_SOURCE_ID, third, SQL));
+        assertEquals(4, rows());
+        assertEquals(1.0, count("evicted"));
+    }
+
+    @Test
+    void replaceKeepsRowTotal() {
+        SysJob sysJob = job(1L, 60);
+        manager.put(DATA_SOURCE_ID, sysJob, SQL, rows(2));
+        manager.put(DATA_SOURCE_ID, sysJob, SQL, rows(3));
+        assertEquals(3, rows());
+        assertEquals(3, manager.get(DATA_SOURCE_ID, sysJob, SQL).size());
+        manager.put(DATA_SOURCE_ID, job(2L, 60), SQL, rows(4));
+        // 7行超过上限,淘汰sysJob的3行
+        assertEquals(4, rows());
+        assertNull(manager.get(DATA_SOURCE_ID, sysJob, SQL));
+        assertEquals(2.0 + 1.0, count("loaded"));
+    }
+
+    @Test
+    void resultLargerThanBudgetIsLoadedButNotStored() {
+        SysJob small = job(1L, 60);
+        manager.put(DATA_SOURCE_ID, small, SQL, rows(2));
+        SysJob large = job(2L, 60);
+        manager.put(DATA_SOURCE_ID, large, SQL, rows(6));
+        assertNull(manager.get(DATA_SOURCE_ID, large, SQL));
+        // 不因放不下的大结果淘汰其他结果
+        assertNotNull(manager.get(DATA_SOURCE_ID, small, SQL));
+        assertEquals(2, rows());
+        assertEquals(2.0, count("loaded"));
+        assertEquals(0.0, count("evicted"));
+        assertTrue(count("hit") > 0);
+    }
+}
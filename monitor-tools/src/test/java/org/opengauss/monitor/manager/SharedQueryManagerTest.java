@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) Huawei Technologies Co., Ltd. 2012-2022. All rights reserved.
+ */
+
+package org.opengauss.monitor.manager;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.opengauss.monitor.exception.SharedQueryException;
+import io.prometheus.client.CollectorRegistry;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.LinkedCaseInsensitiveMap;
+
+/**
+ * 相同sql的共享执行:执行中的查询由后到的任务共用,失败只由执行的任务抛出原始异常
+ *
+ * @author liu
+ * @since 2022-10-01
+ */
+class SharedQueryManagerTest {
+    private static final String SQL = "select relname, pg_total_relation_size(oid) size from pg_class";
+
+    private SharedQueryManager manager;
+
+    private CollectorRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        manager = new SharedQueryManager();
+        registry = new CollectorRegistry();
+        ReflectionTestUtils.setField(manager, "collectorRegistry", registry);
+        manager.init();
+    }
+
+    private double shared(String result) {
+        Double value = registry.getSampleValue("shared_queries_total", new String[] {"result"},
+                new String[] {result});
+        return value == null ? 0 : value;
+    }
+
+    /**
+     * 在另一个线程执行,loader阻塞到release
+     */
+    private CompletableFuture<List<Map<String, Object>>> executeBlocking(Long jobId, CountDownLatch started,
+                                                                         CountDownLatch release,
+                                                                         Supplier<List<Map<String, Object>>> loader) {
+        return CompletableFuture.supplyAsync(() -> manager.execute(1L, SQL, jobId, 5, () -> {
+            started.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+            }
+            return loader.get();
+        }));
+    }
+
+    @Test
+    void waiterSharesResultAsCopy() throws Exception {
+        Map<String, Object> row = new LinkedCaseInsensitiveMap<>();
+        row.put("relname", "t1");
+        row.put("size", 8192L);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger loads = new AtomicInteger();
+        CompletableFuture<List<Map<String, Object>>> executor = executeBlocking(1L, started, release, () -> {
+            loads.incrementAndGet();
+            return Collections.singletonList(row);
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        CompletableFuture<List<Map<String, Object>>> waiter = CompletableFuture.supplyAsync(
+                () -> manager.execute(1L, SQL + " ;", 2L, 5, () -> {
+                    loads.incrementAndGet();
+                    return Collections.emptyList();
+                }));
+        Thread.sleep(100);
+        release.countDown();
+        List<Map<String, Object>> first = executor.get(5, TimeUnit.SECONDS);
+        List<Map<String, Object>> second = waiter.get(5, TimeUnit.SECONDS);
+        assertEquals(1, loads.get());
+        assertEquals(8192L, second.get(0).get("SIZE"));
+        assertNotSame(first.get(0), second.get(0));
+        assertEquals(1.0, shared("executed"));
+        assertEquals(1.0, shared("shared"));
+    }
+
+    @Test
+    void failureIsReportedOnlyToExecutingJob() throws Exception {
+        QueryTimeoutException timeout = new QueryTimeoutException("canceling statement due to statement timeout");
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<List<Map<String, Object>>> executor = executeBlocking(1L, started, release, () -> {
+            throw timeout;
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        CompletableFuture<List<Map<String, Object>>> waiter = CompletableFuture.supplyAsync(
+                () -> manager.execute(1L, SQL, 2L, 5, Collections::emptyList));
+        Thread.sleep(100);
+        release.countDown();
+
+        ExecutionException executed = assertThrows(ExecutionException.class, () -> executor.get(5, TimeUnit.SECONDS));
+        assertSame(timeout, executed.getCause());
+        ExecutionException waited = assertThrows(ExecutionException.class, () -> waiter.get(5, TimeUnit.SECONDS));
+        assertTrue(waited.getCause() instanceof SharedQueryException);
+        assertSame(timeout, waited.getCause().getCause());
+
+        // 失败的结果不缓存,下一次重新执行
+        assertEquals(Collections.emptyList(), manager.execute(1L, SQL, 3L, 5, Collections::emptyList));
+        assertEquals(1.0, shared("executed"));
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) Huawei Technologies Co., Ltd. 2012-2022. All rights reserved.
+ */
+
+package org.opengauss.monitor.manager.sink;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.opengauss.monitor.quartz.domain.SysJob;
+import io.prometheus.client.CollectorRegistry;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * 输出端分发和停止:停止时剩余结果由输出线程按序写完,不会被两个线程并发写
+ *
+ * @author liu
+ * @since 2022-10-01
+ */
+class SinkManagerTest {
+    private static final int RESULTS = 20;
+
+    /**
+     * 每次写入耗时一段时间,记录写入的线程和并发数
+     */
+    private static final class SlowSink implements MetricSink {
+        private final List<String> tasks = new CopyOnWriteArrayList<>();
+
+        private final List<String> threads = new CopyOnWriteArrayList<>();
+
+        private final AtomicInteger writing = new AtomicInteger();
+
+        private volatile int maxWriting;
+
+        @Override
+        public String getName() {
+            return "slow";
+        }
+
+        @Override
+        public boolean accept(SysJob sysJob) {
+            return true;
+        }
+
+        @Override
+        public void write(CollectResult result) {
+            maxWriting = Math.max(maxWriting, writing.incrementAndGet());
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+            }
+            tasks.add(result.getTask());
+            threads.add(Thread.currentThread().getName());
+            writing.decrementAndGet();
+        }
+    }
+
+    @Test
+    void shutdownLetsWorkerDrainItsOwnQueue() {
+        SlowSink sink = new SlowSink();
+        SinkManager manager = new SinkManager();
+        ReflectionTestUtils.setField(manager, "collectorRegistry", new CollectorRegistry());
+        ReflectionTestUtils.setField(manager, "sinks", Collections.singletonList(sink));
+        manager.init();
+        SysJob sysJob = new SysJob();
+        for (int i = 0; i < RESULTS; i++) {
+            manager.dispatch(new CollectResult(sysJob, null, "task" + i, i));
+        }
+        manager.shutdown();
+
+        assertEquals(RESULTS, sink.tasks.size());
+        for (int i = 0; i < RESULTS; i++) {
+            assertEquals("task" + i, sink.tasks.get(i));
+        }
+        assertEquals(1, sink.maxWriting);
+        assertTrue(sink.threads.stream().allMatch(name -> name.startsWith("sink-slow-")));
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) Huawei Technologies Co., Ltd. 2012-2022. All rights reserved.
+ */
+
+package org.opengauss.monitor.mapper;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import org.opengauss.monitor.entity.BasicEntity;
+import org.opengauss.monitor.entity.SysConfig;
+import org.opengauss.monitor.quartz.domain.SysJob;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * 缓存对象的复制:逐字段复制不能漏掉字段,新增字段时此测试会失败
+ *
+ * @author liu
+ * @since 2022-10-01
+ */
+class MapperCopyTest {
+    private static List<Field> fields(Class<?> type) {
+        List<Field> result = new ArrayList<>();
+        for (Class<?> current = type; current != Object.class; current = current.getSuperclass()) {
+            for (Field field : current.getDeclaredFields()) {
+                if (!Modifier.isStatic(field.getModifiers())) {
+                    field.setAccessible(true);
+                    result.add(field);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 每个字段填入与默认值不同的值
+     */
+    private static <T> T fill(T target) throws IllegalAccessException {
+        long seed = 1000L;
+        for (Field field : fields(target.getClass())) {
+            Class<?> type = field.getType();
+            seed++;
+            Object value;
+            if (type == String.class) {
+                value = field.getName() + "-value";
+            } else if (type == Long.class) {
+                value = seed;
+            } else if (type == Integer.class) {
+                value = (int) seed;
+            } else if (type == Boolean.class) {
+                value = Boolean.TRUE;
+            } else if (type == Date.class) {
+                value = new Date(seed);
+            } else if (type == Map.class) {
+                value = Collections.singletonMap(field.getName(), seed);
+            } else if (type == List.class) {
+                value = new ArrayList<>(Collections.singletonList(field.getName()));
+            } else {
+                throw new IllegalStateException("unsupported field " + field);
+            }
+            field.set(target, value);
+        }
+        return target;
+    }
+
+    private static void assertCopied(Object source, Object copy) throws IllegalAccessException {
+        for (Field field : fields(source.getClass())) {
+            Object expected = field.get(source);
+            Object actual = field.get(copy);
+            assertNotNull(actual, field.getName());
+            assertEquals(expected, actual, field.getName());
+            if (expected instanceof List || expected instanceof Map) {
+                // 集合复制一份,调用方修改不影响缓存
+                assertNotSame(expected, actual, field.getName());
+            }
+        }
+    }
+
+    @Test
+    void sysJobCopyKeepsEveryField() throws IllegalAccessException {
+        SysJob sysJob = fill(new SysJob());
+        SysJob copy = ReflectionTestUtils.invokeMethod(SysJobMapper.class, "copy", sysJob);
+        assertCopied(sysJob, copy);
+    }
+
+    @Test
+    void sysConfigCopyKeepsEveryField() throws IllegalAccessException {
+        SysConfig sysConfig = fill(new SysConfig());
+        SysConfig copy = ReflectionTestUtils.invokeMethod(SysConfigMapper.class, "copy", sysConfig);
+        assertCopied(sysConfig, copy);
+    }
+
+    @Test
+    void basicCopyDoesNotCreateParamMap() {
+        SysJob sysJob = new SysJob();
+        SysJob copy = new SysJob();
+        sysJob.copyBasicTo(copy);
+        assertNull(ReflectionTestUtils.getField(sysJob, BasicEntity.class, "paramMap"));
+        assertNull(ReflectionTestUtils.getField(copy, BasicEntity.class, "paramMap"));
+    }
+}
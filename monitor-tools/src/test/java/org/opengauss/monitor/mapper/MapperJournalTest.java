@@ -0,0 +1,209 @@
+/*
+ * Copyright (c) Huawei Technologies Co., Ltd. 2012-2022. All rights reserved.
+ */
+
+package org.opengauss.monitor.mapper;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.opengauss.monitor.config.FileConfig;
+import org.opengauss.monitor.entity.JournalRecord;
+import org.opengauss.monitor.entity.JsonSourceTarget;
+import org.opengauss.monitor.entity.JsonTask;
+import org.opengauss.monitor.entity.SysSourceTarget;
+import org.opengauss.monitor.quartz.domain.SysJob;
+import org.opengauss.monitor.util.ChangeJournal;
+import org.opengauss.monitor.util.JsonUtilData;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * 快照加变更日志:日志中的记录已包含在快照中时重放结果不变,日志末尾的半行被丢弃,
+ * 快照写入成功后才清空日志
+ *
+ * @author liu
+ * @since 2022-10-01
+ */
+class MapperJournalTest {
+    @TempDir
+    Path dir;
+
+    private final FileConfig fileConfig = new FileConfig();
+
+    private String oldTaskConfig;
+
+    private String oldRelationConfig;
+
+    private String taskConfig;
+
+    private String relationConfig;
+
+    @BeforeEach
+    void setUp() {
+        oldTaskConfig = FileConfig.getTaskConfig();
+        oldRelationConfig = FileConfig.getRelationConfig();
+        // jsonFileToObject按当前目录解析路径
+        Path relative = Paths.get("").toAbsolutePath().relativize(dir);
+        taskConfig = relative.resolve("task.json").toString();
+        relationConfig = relative.resolve("relation.json").toString();
+        fileConfig.setTaskConfig(taskConfig);
+        fileConfig.setRelationConfig(relationConfig);
+    }
+
+    @AfterEach
+    void tearDown() {
+        fileConfig.setTaskConfig(oldTaskConfig);
+        fileConfig.setRelationConfig(oldRelationConfig);
+    }
+
+    private static SysJob job(long jobId, String status) {
+        SysJob sysJob = new SysJob();
+        sysJob.setJobId(jobId);
+        sysJob.setJobName("job" + jobId);
+        sysJob.setStatus(status);
+        sysJob.setColumn(new ArrayList<>(Collections.singletonList("size")));
+        return sysJob;
+    }
+
+    private static SysSourceTarget relation(long dataSourceId, Long... jobIds) {
+        SysSourceTarget sysSourceTarget = new SysSourceTarget();
+        sysSourceTarget.setDataSourceId(dataSourceId);
+        sysSourceTarget.setJobIds(new ArrayList<>(Arrays.asList(jobIds)));
+        return sysSourceTarget;
+    }
+
+    private static JournalRecord record(String type, Long id) {
+        JournalRecord record = new JournalRecord();
+        record.setType(type);
+        record.setId(id);
+        return record;
+    }
+
+    private void writeTasks(SysJob... sysJobs) {
+        JsonTask jsonTask = new JsonTask();
+        jsonTask.setSysJobs(new ArrayList<>(Arrays.asList(sysJobs)));
+        assertTrue(JsonUtilData.objectToJsonFile(taskConfig, jsonTask));
+    }
+
+    private Path journalFile(String snapshot) {
+        return Paths.get(snapshot + ".journal");
+    }
+
+    @Test
+    void jobJournalAlreadyInSnapshotReplaysToSameState() throws IOException {
+        // 快照已是最终状态:job1状态为1,job2已删除
+        writeTasks(job(1L, "1"));
+        ChangeJournal journal = new ChangeJournal(taskConfig);
+        JournalRecord insert = record(JournalRecord.JOB_INSERT, null);
+        insert.setSysJob(job(1L, "0"));
+        journal.append(insert);
+        JournalRecord insertOther = record(JournalRecord.JOB_INSERT, null);
+        insertOther.setSysJob(job(2L, "0"));
+        journal.append(insertOther);
+        JournalRecord status = record(JournalRecord.JOB_STATUS, 1L);
+        status.setStatus("1");
+        journal.append(status);
+        JournalRecord delete = record(JournalRecord.JOB_DELETE, null);
+        delete.setIds(Collections.singletonList(2L));
+        journal.append(delete);
+
+        SysJobMapper mapper = new SysJobMapper();
+        List<SysJob> jobs = mapper.selectJobAll();
+        assertEquals(1, jobs.size());
+        assertEquals("1", jobs.get(0).getStatus());
+        assertEquals(Collections.singletonList("size"), jobs.get(0).getColumn());
+        assertNull(mapper.selectJobById(2L));
+        // 加载时已合并:日志清空,快照为重放后的状态
+        assertEquals(0, Files.size(journalFile(taskConfig)));
+        JsonTask saved = JsonUtilData.jsonFileToObject(taskConfig, JsonTask.class);
+        assertEquals(1, saved.getSysJobs().size());
+        assertEquals("1", saved.getSysJobs().get(0).getStatus());
+    }
+
+    @Test
+    void relationJournalAlreadyInSnapshotReplaysToSameState() throws IOException {
+        JsonSourceTarget jsonSourceTarget = new JsonSourceTarget();
+        jsonSourceTarget.setSysSourceTarget(new ArrayList<>(Collections.singletonList(relation(10L, 1L))));
+        assertTrue(JsonUtilData.objectToJsonFile(relationConfig, jsonSourceTarget));
+        ChangeJournal journal = new ChangeJournal(relationConfig);
+        JournalRecord save = record(JournalRecord.RELATION_SAVE, null);
+        save.setSysSourceTarget(relation(10L, 1L, 2L));
+        journal.append(save);
+        JournalRecord removeJob = record(JournalRecord.RELATION_REMOVE_JOB, 2L);
+        removeJob.setTime(new Date());
+        journal.append(removeJob);
+        JournalRecord saveOther = record(JournalRecord.RELATION_SAVE, null);
+        saveOther.setSysSourceTarget(relation(11L, 3L));
+        journal.append(saveOther);
+        journal.append(record(JournalRecord.RELATION_DELETE, 11L));
+        // 已经删除的实例再删除一次
+        journal.append(record(JournalRecord.RELATION_DELETE, 11L));
+
+        SysSourceTargetMapper mapper = new SysSourceTargetMapper();
+        assertEquals(1, mapper.getAll().size());
+        assertEquals(Collections.singletonList(1L), mapper.getJobIdBySourceId(10L));
+        assertEquals(Collections.singletonList(10L), mapper.getSourceIdByJobId(1L));
+        assertTrue(mapper.getSourceIdByJobId(2L).isEmpty());
+        assertTrue(mapper.getSourceIdByJobId(3L).isEmpty());
+        assertEquals(0, Files.size(journalFile(relationConfig)));
+    }
+
+    @Test
+    void truncatedJournalAppliesCompleteRecords() throws IOException {
+        writeTasks(job(1L, "0"), job(2L, "0"));
+        ChangeJournal journal = new ChangeJournal(taskConfig);
+        JournalRecord status = record(JournalRecord.JOB_STATUS, 1L);
+        status.setStatus("1");
+        journal.append(status);
+        Files.write(journalFile(taskConfig), "{\"id\":2,\"status\":\"1\",\"ty"
+                .getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+        SysJobMapper mapper = new SysJobMapper();
+        assertEquals("1", mapper.selectJobById(1L).getStatus());
+        assertEquals("0", mapper.selectJobById(2L).getStatus());
+        // 合并后半行记录随日志一起清除,之后的追加从新的一行开始
+        assertEquals(0, Files.size(journalFile(taskConfig)));
+        SysJob update = job(2L, "1");
+        mapper.updateJob(update);
+        assertEquals(1, new ChangeJournal(taskConfig).replay().size());
+    }
+
+    @Test
+    void journalIsResetOnlyAfterSnapshotWriteSucceeds() throws IOException {
+        writeTasks(job(1L, "0"));
+        SysJobMapper mapper = new SysJobMapper();
+        mapper.updateJob(job(1L, "1"));
+        assertFalse(new ChangeJournal(taskConfig).isEmpty());
+
+        // 临时文件位置被目录占用,快照写入失败
+        Path blocker = Paths.get(taskConfig + ".tmp");
+        Files.createDirectory(blocker);
+        ReflectionTestUtils.invokeMethod(mapper, "compact");
+        assertEquals(1, new ChangeJournal(taskConfig).replay().size());
+        assertEquals("0", JsonUtilData.jsonFileToObject(taskConfig, JsonTask.class).getSysJobs().get(0).getStatus());
+
+        Files.delete(blocker);
+        ReflectionTestUtils.invokeMethod(mapper, "compact");
+        assertTrue(new ChangeJournal(taskConfig).isEmpty());
+        assertEquals("1", JsonUtilData.jsonFileToObject(taskConfig, JsonTask.class).getSysJobs().get(0).getStatus());
+        // 重启后从快照得到同样的状态
+        assertEquals("1", new SysJobMapper().selectJobById(1L).getStatus());
+    }
+}
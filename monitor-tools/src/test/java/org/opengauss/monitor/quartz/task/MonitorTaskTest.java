@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) Huawei Technologies Co., Ltd. 2012-2022. All rights reserved.
+ */
+
+package org.opengauss.monitor.quartz.task;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.opengauss.monitor.config.CollectConfig;
+import org.opengauss.monitor.entity.SysConfig;
+import org.opengauss.monitor.manager.CircuitBreakerManager;
+import org.opengauss.monitor.manager.ResultCacheManager;
+import org.opengauss.monitor.manager.sink.CollectResult;
+import org.opengauss.monitor.manager.sink.MetricSink;
+import org.opengauss.monitor.manager.sink.SinkManager;
+import org.opengauss.monitor.quartz.domain.SysJob;
+import org.opengauss.monitor.service.impl.MeterServiceImpl;
+import io.prometheus.client.CollectorRegistry;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.LinkedCaseInsensitiveMap;
+
+/**
+ * 采集任务:缓存有效期内按缓存结果发布,不经过熔断,也不消耗半开状态的探测机会
+ *
+ * @author liu
+ * @since 2022-10-01
+ */
+class MonitorTaskTest {
+    private static final long OPEN_MILLIS = 50L;
+
+    private static final String SQL = "select relname, pg_total_relation_size(oid) size from pg_class";
+
+    private final CollectConfig collectConfig = new CollectConfig();
+
+    private final List<CollectResult> results = new CopyOnWriteArrayList<>();
+
+    private MonitorTask monitorTask;
+
+    private CircuitBreakerManager breakerManager;
+
+    private ResultCacheManager resultCacheManager;
+
+    private SinkManager sinkManager;
+
+    private SysConfig sysConfig;
+
+    @BeforeEach
+    void setUp() {
+        collectConfig.setBreakerFailures(3);
+        collectConfig.setBreakerOpenMillis(OPEN_MILLIS);
+        CollectorRegistry registry = new CollectorRegistry();
+        MetricSink sink = new MetricSink() {
+            @Override
+            public String getName() {
+                return "capture";
+            }
+
+            @Override
+            public boolean accept(SysJob sysJob) {
+                return true;
+            }
+
+            @Override
+            public void write(CollectResult result) {
+                results.add(result);
+            }
+        };
+        sinkManager = new SinkManager();
+        ReflectionTestUtils.setField(sinkManager, "collectorRegistry", registry);
+        ReflectionTestUtils.setField(sinkManager, "sinks", Collections.singletonList(sink));
+        sinkManager.init();
+        MeterServiceImpl meterService = new MeterServiceImpl();
+        ReflectionTestUtils.setField(meterService, "sinkManager", sinkManager);
+        ReflectionTestUtils.setField(meterService, "collectorRegistry", registry);
+        meterService.init();
+        breakerManager = new CircuitBreakerManager();
+        ReflectionTestUtils.setField(breakerManager, "collectorRegistry", registry);
+        breakerManager.init();
+        resultCacheManager = new ResultCacheManager();
+        ReflectionTestUtils.setField(resultCacheManager, "collectorRegistry", registry);
+        resultCacheManager.init();
+        monitorTask = new MonitorTask();
+        ReflectionTestUtils.setField(monitorTask, "meterService", meterService);
+        ReflectionTestUtils.setField(monitorTask, "breakerManager", breakerManager);
+        ReflectionTestUtils.setField(monitorTask, "resultCacheManager", resultCacheManager);
+        sysConfig = new SysConfig();
+        sysConfig.setDataSourceId(1L);
+        sysConfig.setConnectName("pg");
+    }
+
+    @AfterEach
+    void tearDown() {
+        sinkManager.shutdown();
+        collectConfig.setBreakerOpenMillis(30000L);
+    }
+
+    private static List<Map<String, Object>> rows() {
+        List<Map<String, Object>> rows = new ArrayList<>();
+        Map<String, Object> row = new LinkedCaseInsensitiveMap<>();
+        row.put("relname", "t1");
+        row.put("size", 8192L);
+        rows.add(row);
+        return rows;
+    }
+
+    @Test
+    void cacheHitDoesNotConsumeBreakerProbe() throws InterruptedException {
+        SysJob sysJob = new SysJob();
+        sysJob.setJobId(940001L);
+        sysJob.setCacheTtl(60);
+        resultCacheManager.put(sysConfig.getDataSourceId(), sysJob, SQL, rows());
+        DataAccessResourceFailureException refused = new DataAccessResourceFailureException("Connection refused");
+        for (int i = 0; i < 3; i++) {
+            breakerManager.failure(sysConfig, refused);
+        }
+        assertFalse(breakerManager.allow(sysConfig, 0));
+
+        // 熔断打开期间,缓存结果照常发布
+        ReflectionTestUtils.invokeMethod(monitorTask, "collect", SQL, "table_size", sysConfig, sysJob);
+        Thread.sleep(OPEN_MILLIS + 20);
+        // 半开状态下缓存命中不占用探测
+        ReflectionTestUtils.invokeMethod(monitorTask, "collect", SQL, "table_size", sysConfig, sysJob);
+        assertTrue(breakerManager.allow(sysConfig, 0));
+        assertFalse(breakerManager.allow(sysConfig, 0));
+
+        sinkManager.shutdown();
+        assertEquals(2, results.size());
+        assertEquals(8192.0, results.get(1).getSamples().get(0).getValue());
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) Huawei Technologies Co., Ltd. 2012-2022. All rights reserved.
+ */
+
+package org.opengauss.monitor.service.impl;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import org.opengauss.monitor.entity.SysConfig;
+import org.opengauss.monitor.manager.sink.CollectResult;
+import org.opengauss.monitor.manager.sink.MetricSink;
+import org.opengauss.monitor.manager.sink.SinkManager;
+import org.opengauss.monitor.quartz.domain.SysJob;
+import org.opengauss.monitor.util.ColumnPlan;
+import org.opengauss.monitor.util.NumericUtil;
+import io.prometheus.client.CollectorRegistry;
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntToDoubleFunction;
+import javax.sql.rowset.RowSetMetaDataImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.LinkedCaseInsensitiveMap;
+
+/**
+ * 按线程分配字节数测量每个样本的内存分配,对比原先 toString→BigDecimal→toPlainString→Double.valueOf 的转换
+ *
+ * @author liu
+ * @since 2022-10-01
+ */
+class MeterAllocationTest {
+    private static final Long JOB_ID = 930001L;
+
+    private static final Long DATA_SOURCE_ID = 1L;
+
+    private static final int ROWS = 100;
+
+    private static final int WARMUP = 200;
+
+    private static final int ROUNDS = 500;
+
+    private static final double MAX_PUBLISH_BYTES = 1024.0;
+
+    private com.sun.management.ThreadMXBean threadBean;
+
+    private SinkManager sinkManager;
+
+    private MeterServiceImpl meterService;
+
+    private final List<Object> cells = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threadBean.isThreadAllocatedMemorySupported());
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+        for (int i = 0; i < ROWS; i++) {
+            cells.add((long) i * 8192);
+            cells.add(new BigDecimal(i + ".25"));
+        }
+        CollectorRegistry registry = new CollectorRegistry();
+        // 不接收任何任务的输出端,只测量转换,不测量队列
+        MetricSink sink = new MetricSink() {
+            @Override
+            public String getName() {
+                return "none";
+            }
+
+            @Override
+            public boolean accept(SysJob sysJob) {
+                return false;
+            }
+
+            @Override
+            public void write(CollectResult result) {
+            }
+        };
+        sinkManager = new SinkManager();
+        ReflectionTestUtils.setField(sinkManager, "collectorRegistry", registry);
+        ReflectionTestUtils.setField(sinkManager, "sinks", Collections.singletonList(sink));
+        sinkManager.init();
+        meterService = new MeterServiceImpl();
+        ReflectionTestUtils.setField(meterService, "sinkManager", sinkManager);
+        ReflectionTestUtils.setField(meterService, "collectorRegistry", registry);
+        meterService.init();
+        RowSetMetaDataImpl metaData = new RowSetMetaDataImpl();
+        metaData.setColumnCount(3);
+        metaData.setColumnLabel(1, "relname");
+        metaData.setColumnType(1, Types.VARCHAR);
+        metaData.setColumnLabel(2, "size");
+        metaData.setColumnType(2, Types.BIGINT);
+        metaData.setColumnLabel(3, "ratio");
+        metaData.setColumnType(3, Types.NUMERIC);
+        ColumnPlan.prepare(JOB_ID, DATA_SOURCE_ID, "select relname, size, ratio from t", metaData);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (sinkManager != null) {
+            sinkManager.shutdown();
+        }
+        ColumnPlan.remove(JOB_ID);
+    }
+
+    /**
+     * 每个样本平均分配的字节数
+     */
+    private double bytesPerSample(IntToDoubleFunction convert) {
+        double sum = 0;
+        for (int round = 0; round < WARMUP; round++) {
+            for (int i = 0; i < cells.size(); i++) {
+                sum += convert.applyAsDouble(i);
+            }
+        }
+        long threadId = Thread.currentThread().getId();
+        long before = threadBean.getThreadAllocatedBytes(threadId);
+        for (int round = 0; round < ROUNDS; round++) {
+            for (int i = 0; i < cells.size(); i++) {
+                sum += convert.applyAsDouble(i);
+            }
+        }
+        long allocated = threadBean.getThreadAllocatedBytes(threadId) - before;
+        assertTrue(sum > 0);
+        return (double) allocated / ((long) ROUNDS * cells.size());
+    }
+
+    @Test
+    void toDoubleAllocatesLessThanBigDecimalRoundTrip() {
+        double old = bytesPerSample(i -> Double.valueOf(new BigDecimal(cells.get(i).toString()).toPlainString()));
+        double current = bytesPerSample(i -> NumericUtil.toDouble(cells.get(i)));
+        // JDBC数值类型直接doubleValue,不分配;原转换每个样本至少分配字符串和BigDecimal
+        assertTrue(current < 1.0, "toDouble allocates " + current + " bytes per sample");
+        assertTrue(old > 32.0, "old path allocates " + old + " bytes per sample");
+    }
+
+    @Test
+    void publishAllocationPerSample() {
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (int i = 0; i < ROWS; i++) {
+            Map<String, Object> row = new LinkedCaseInsensitiveMap<>();
+            row.put("relname", "t" + i);
+            row.put("size", cells.get(i * 2));
+            row.put("ratio", cells.get(i * 2 + 1));
+            rows.add(row);
+        }
+        SysJob sysJob = new SysJob();
+        sysJob.setJobId(JOB_ID);
+        SysConfig sysConfig = new SysConfig();
+        sysConfig.setDataSourceId(DATA_SOURCE_ID);
+        for (int round = 0; round < WARMUP; round++) {
+            meterService.publish(rows, sysConfig, "table_size", sysJob);
+        }
+        long threadId = Thread.currentThread().getId();
+        long before = threadBean.getThreadAllocatedBytes(threadId);
+        for (int round = 0; round < ROUNDS; round++) {
+            meterService.publish(rows, sysConfig, "table_size", sysJob);
+        }
+        double perSample = (double) (threadBean.getThreadAllocatedBytes(threadId) - before) / (ROUNDS * ROWS * 2);
+        // 标签map、标签数组和样本对象按行分配,目前每个样本约440字节,数值转换本身不再分配
+        assertTrue(perSample < MAX_PUBLISH_BYTES, "publish allocates " + perSample + " bytes per sample");
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) Huawei Technologies Co., Ltd. 2012-2022. All rights reserved.
+ */
+
+package org.opengauss.monitor.service.impl;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import org.opengauss.monitor.entity.SysConfig;
+import org.opengauss.monitor.manager.sink.CollectResult;
+import org.opengauss.monitor.manager.sink.MetricSink;
+import org.opengauss.monitor.manager.sink.SinkManager;
+import org.opengauss.monitor.quartz.domain.SysJob;
+import org.opengauss.monitor.util.ColumnPlan;
+import io.prometheus.client.CollectorRegistry;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import javax.sql.rowset.RowSetMetaDataImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.LinkedCaseInsensitiveMap;
+
+/**
+ * 采集结果转换为样本:数值类型的列直接取值,null单独计数,文本列按值判断
+ *
+ * @author liu
+ * @since 2022-10-01
+ */
+class MeterServiceImplTest {
+    private static final Long JOB_ID = 920001L;
+
+    private static final Long DATA_SOURCE_ID = 1L;
+
+    private static final String SQL = "select relname, size, ratio from t";
+
+    private final List<CollectResult> results = new CopyOnWriteArrayList<>();
+
+    private CollectorRegistry registry;
+
+    private SinkManager sinkManager;
+
+    private MeterServiceImpl meterService;
+
+    private SysJob sysJob;
+
+    private SysConfig sysConfig;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        registry = new CollectorRegistry();
+        MetricSink sink = new MetricSink() {
+            @Override
+            public String getName() {
+                return "capture";
+            }
+
+            @Override
+            public boolean accept(SysJob job) {
+                return true;
+            }
+
+            @Override
+            public void write(CollectResult result) {
+                results.add(result);
+            }
+        };
+        sinkManager = new SinkManager();
+        ReflectionTestUtils.setField(sinkManager, "collectorRegistry", registry);
+        ReflectionTestUtils.setField(sinkManager, "sinks", Collections.singletonList(sink));
+        sinkManager.init();
+        meterService = new MeterServiceImpl();
+        ReflectionTestUtils.setField(meterService, "sinkManager", sinkManager);
+        ReflectionTestUtils.setField(meterService, "collectorRegistry", registry);
+        meterService.init();
+        sysJob = new SysJob();
+        sysJob.setJobId(JOB_ID);
+        sysConfig = new SysConfig();
+        sysConfig.setDataSourceId(DATA_SOURCE_ID);
+        RowSetMetaDataImpl metaData = new RowSetMetaDataImpl();
+        metaData.setColumnCount(3);
+        metaData.setColumnLabel(1, "relname");
+        metaData.setColumnType(1, Types.VARCHAR);
+        metaData.setColumnLabel(2, "size");
+        metaData.setColumnType(2, Types.BIGINT);
+        metaData.setColumnLabel(3, "ratio");
+        metaData.setColumnType(3, Types.VARCHAR);
+        ColumnPlan.prepare(JOB_ID, DATA_SOURCE_ID, SQL, metaData);
+    }
+
+    @AfterEach
+    void tearDown() {
+        sinkManager.shutdown();
+        ColumnPlan.remove(JOB_ID);
+    }
+
+    private static Map<String, Object> row(String relname, Object size, Object ratio) {
+        Map<String, Object> row = new LinkedCaseInsensitiveMap<>();
+        row.put("relname", relname);
+        row.put("size", size);
+        row.put("ratio", ratio);
+        return row;
+    }
+
+    private Map<String, CollectResult.Sample> publish(List<Map<String, Object>> rows) {
+        meterService.publish(rows, sysConfig, "table_size", sysJob);
+        sinkManager.shutdown();
+        assertEquals(1, results.size());
+        Map<String, CollectResult.Sample> samples = new HashMap<>();
+        for (CollectResult.Sample sample : results.get(0).getSamples()) {
+            samples.put(sample.getColumn() + "#" + sample.getRow(), sample);
+        }
+        return samples;
+    }
+
+    @Test
+    void typedColumnIsReadAsNumber() {
+        Long size = 8192L;
+        Map<String, CollectResult.Sample> samples = publish(
+                new ArrayList<>(Collections.singletonList(row("t1", size, ".5"))));
+        assertEquals(2, samples.size());
+        CollectResult.Sample sample = samples.get("size#0");
+        assertEquals(8192.0, sample.getValue());
+        assertSame(size, sample.getCell());
+        assertArrayEquals(new String[] {"relname"}, sample.getLabelNames());
+        // 文本列中的数字文本仍作为指标值,补全前导0
+        assertEquals(0.5, samples.get("ratio#0").getValue());
+    }
+
+    @Test
+    void nullInTypedColumnIsCountedNotDefaulted() {
+        Map<String, CollectResult.Sample> samples = publish(new ArrayList<>(
+                Arrays.asList(row("t1", 8192L, "0.5"), row("t2", null, "0.25"))));
+        assertEquals(8192.0, samples.get("size#0").getValue());
+        assertNull(samples.get("size#1"));
+        assertEquals(0.25, samples.get("ratio#1").getValue());
+        // null既不变成"default"标签,也不会让标签集合变化
+        assertArrayEquals(new String[] {"relname"}, samples.get("ratio#1").getLabelNames());
+        assertArrayEquals(new String[] {"t2"}, samples.get("ratio#1").getLabelValues());
+        assertEquals(1.0, registry.getSampleValue("null_samples_total", new String[] {"task"},
+                new String[] {"table_size"}));
+    }
+
+    @Test
+    void nullInTextColumnStillBecomesDefaultLabel() {
+        Map<String, CollectResult.Sample> samples = publish(
+                new ArrayList<>(Collections.singletonList(row(null, 1L, "0.5"))));
+        assertArrayEquals(new String[] {"default"}, samples.get("size#0").getLabelValues());
+    }
+}
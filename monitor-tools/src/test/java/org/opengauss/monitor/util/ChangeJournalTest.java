@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) Huawei Technologies Co., Ltd. 2012-2022. All rights reserved.
+ */
+
+package org.opengauss.monitor.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.opengauss.monitor.config.FileConfig;
+import org.opengauss.monitor.entity.JournalRecord;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * 变更日志:追加、重放、末尾写了一半的记录、清空和合并阈值
+ *
+ * @author liu
+ * @since 2022-10-01
+ */
+class ChangeJournalTest {
+    @TempDir
+    Path dir;
+
+    private final FileConfig fileConfig = new FileConfig();
+
+    private String snapshot;
+
+    private Path journalFile;
+
+    @BeforeEach
+    void setUp() {
+        snapshot = dir.resolve("task.json").toString();
+        journalFile = dir.resolve("task.json.journal");
+    }
+
+    @AfterEach
+    void tearDown() {
+        fileConfig.setCompactSize(1000);
+    }
+
+    private static JournalRecord status(long id, String status) {
+        JournalRecord record = new JournalRecord();
+        record.setType(JournalRecord.JOB_STATUS);
+        record.setId(id);
+        record.setStatus(status);
+        return record;
+    }
+
+    @Test
+    void replayReturnsRecordsInOrder() {
+        ChangeJournal journal = new ChangeJournal(snapshot);
+        assertTrue(journal.isEmpty());
+        assertTrue(journal.replay().isEmpty());
+        journal.append(status(1L, "0"));
+        journal.append(status(2L, "1"));
+        JournalRecord delete = new JournalRecord();
+        delete.setType(JournalRecord.JOB_DELETE);
+        delete.setIds(Arrays.asList(3L, 4L));
+        journal.append(delete);
+        assertFalse(journal.isEmpty());
+
+        List<JournalRecord> records = new ChangeJournal(snapshot).replay();
+        assertEquals(3, records.size());
+        assertEquals(Long.valueOf(1L), records.get(0).getId());
+        assertEquals("1", records.get(1).getStatus());
+        assertEquals(Arrays.asList(3L, 4L), records.get(2).getIds());
+    }
+
+    @Test
+    void replayStopsAtTruncatedTrailingLine() throws IOException {
+        ChangeJournal journal = new ChangeJournal(snapshot);
+        journal.append(status(1L, "0"));
+        journal.append(status(2L, "1"));
+        // 写入第三条时进程退出,只留下半行
+        Files.write(journalFile, "{\"id\":3,\"status\":\"1\",\"ty".getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.APPEND);
+        List<JournalRecord> records = new ChangeJournal(snapshot).replay();
+        assertEquals(2, records.size());
+        assertEquals(Long.valueOf(2L), records.get(1).getId());
+    }
+
+    @Test
+    void blankLinesAreSkipped() throws IOException {
+        new ChangeJournal(snapshot).append(status(1L, "0"));
+        Files.write(journalFile, "\n\n".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        new ChangeJournal(snapshot).append(status(2L, "1"));
+        assertEquals(2, new ChangeJournal(snapshot).replay().size());
+    }
+
+    @Test
+    void resetTruncatesAndAppendContinues() throws IOException {
+        ChangeJournal journal = new ChangeJournal(snapshot);
+        journal.append(status(1L, "0"));
+        journal.reset();
+        assertTrue(journal.isEmpty());
+        assertEquals(0, Files.size(journalFile));
+        journal.append(status(2L, "1"));
+        List<JournalRecord> records = journal.replay();
+        assertEquals(1, records.size());
+        assertEquals(Long.valueOf(2L), records.get(0).getId());
+    }
+
+    @Test
+    void appendReportsCompactThreshold() {
+        fileConfig.setCompactSize(3);
+        ChangeJournal journal = new ChangeJournal(snapshot);
+        assertFalse(journal.append(status(1L, "0")));
+        assertFalse(journal.append(status(1L, "1")));
+        assertTrue(journal.append(status(1L, "0")));
+        journal.reset();
+        assertFalse(journal.append(status(1L, "1")));
+    }
+
+    @Test
+    void compactLaterIgnoresRequestsWhileRunning() throws InterruptedException {
+        ChangeJournal journal = new ChangeJournal(snapshot);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger runs = new AtomicInteger();
+        journal.compactLater(() -> {
+            runs.incrementAndGet();
+            started.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        journal.compactLater(runs::incrementAndGet);
+        release.countDown();
+        CountDownLatch next = new CountDownLatch(1);
+        // 上一次结束后可以再次提交,轮询等待isCompacting复位
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (next.getCount() > 0 && System.nanoTime() < deadline) {
+            journal.compactLater(next::countDown);
+            next.await(20, TimeUnit.MILLISECONDS);
+        }
+        assertEquals(0, next.getCount());
+        assertEquals(1, runs.get());
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) Huawei Technologies Co., Ltd. 2012-2022. All rights reserved.
+ */
+
+package org.opengauss.monitor.util;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.SQLException;
+import java.sql.Types;
+import javax.sql.rowset.RowSetMetaDataImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * 列分类按(任务, 实例)缓存,sql变化时重新生成,共享查询沿用同一实例上的分类
+ *
+ * @author liu
+ * @since 2022-10-01
+ */
+class ColumnPlanTest {
+    private static final Long JOB_ID = 910001L;
+
+    private static final Long SHARED_JOB_ID = 910002L;
+
+    private static final String SQL = "select relname, pg_total_relation_size(oid) size from pg_class";
+
+    /**
+     * 构造两列的元数据
+     *
+     * @param sizeType size列的类型
+     * @return 元数据
+     * @throws SQLException SQLException
+     */
+    static RowSetMetaDataImpl metaData(int sizeType) throws SQLException {
+        RowSetMetaDataImpl metaData = new RowSetMetaDataImpl();
+        metaData.setColumnCount(2);
+        metaData.setColumnLabel(1, "relname");
+        metaData.setColumnType(1, Types.VARCHAR);
+        metaData.setColumnLabel(2, "size");
+        metaData.setColumnType(2, sizeType);
+        return metaData;
+    }
+
+    @AfterEach
+    void tearDown() {
+        ColumnPlan.remove(JOB_ID);
+        ColumnPlan.remove(SHARED_JOB_ID);
+    }
+
+    @Test
+    void planIsKeptPerInstance() throws SQLException {
+        ColumnPlan.prepare(JOB_ID, 1L, SQL, metaData(Types.BIGINT));
+        // 另一个实例的驱动把同一列报告为文本
+        ColumnPlan.prepare(JOB_ID, 2L, SQL, metaData(Types.VARCHAR));
+        assertTrue(ColumnPlan.of(JOB_ID, 1L).isNumeric("size"));
+        assertFalse(ColumnPlan.of(JOB_ID, 2L).isNumeric("size"));
+        assertNull(ColumnPlan.of(JOB_ID, 3L));
+        assertFalse(ColumnPlan.isLabel(ColumnPlan.of(JOB_ID, 1L), "size", "default"));
+        assertTrue(ColumnPlan.isLabel(ColumnPlan.of(JOB_ID, 2L), "size", "default"));
+    }
+
+    @Test
+    void planIsRebuiltWhenSqlChanges() throws SQLException {
+        ColumnPlan.prepare(JOB_ID, 1L, SQL, metaData(Types.BIGINT));
+        ColumnPlan plan = ColumnPlan.of(JOB_ID, 1L);
+        ColumnPlan.prepare(JOB_ID, 1L, SQL, metaData(Types.VARCHAR));
+        assertSame(plan, ColumnPlan.of(JOB_ID, 1L));
+        ColumnPlan.prepare(JOB_ID, 1L, SQL + " where relkind = 'r'", metaData(Types.VARCHAR));
+        assertFalse(ColumnPlan.of(JOB_ID, 1L).isNumeric("size"));
+    }
+
+    @Test
+    void shareUsesPlanOfSameInstance() throws SQLException {
+        ColumnPlan.prepare(JOB_ID, 1L, SQL, metaData(Types.BIGINT));
+        ColumnPlan.share(JOB_ID, SHARED_JOB_ID, 1L, SQL);
+        ColumnPlan.share(JOB_ID, SHARED_JOB_ID, 2L, SQL);
+        assertTrue(ColumnPlan.of(SHARED_JOB_ID, 1L).isNumeric("size"));
+        assertNull(ColumnPlan.of(SHARED_JOB_ID, 2L));
+        ColumnPlan.remove(JOB_ID);
+        assertNull(ColumnPlan.of(JOB_ID, 1L));
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) Huawei Technologies Co., Ltd. 2012-2022. All rights reserved.
+ */
+
+package org.opengauss.monitor.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.opengauss.monitor.config.FileConfig;
+import org.opengauss.monitor.entity.JsonTask;
+import org.opengauss.monitor.quartz.domain.SysJob;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * 延迟写入合并为一次写入,flushAll立即写出待写入内容
+ *
+ * @author liu
+ * @since 2022-10-01
+ */
+class JsonUtilDataTest {
+    @TempDir
+    Path dir;
+
+    private final FileConfig fileConfig = new FileConfig();
+
+    @AfterEach
+    void tearDown() {
+        JsonUtilData.flushAll();
+        fileConfig.setFlushDelay(200L);
+    }
+
+    private static JsonTask task(long jobId, String status) {
+        SysJob sysJob = new SysJob();
+        sysJob.setJobId(jobId);
+        sysJob.setStatus(status);
+        JsonTask jsonTask = new JsonTask();
+        jsonTask.setSysJobs(new ArrayList<>(Collections.singletonList(sysJob)));
+        return jsonTask;
+    }
+
+    private static JsonTask read(Path path) {
+        // jsonFileToObject按当前目录解析路径
+        String relative = Paths.get("").toAbsolutePath().relativize(path).toString();
+        return JsonUtilData.jsonFileToObject(relative, JsonTask.class);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, String> pending() {
+        return (Map<String, String>) ReflectionTestUtils.getField(JsonUtilData.class, "pending");
+    }
+
+    private static boolean isScheduled() {
+        return ((AtomicBoolean) ReflectionTestUtils.getField(JsonUtilData.class, "isScheduled")).get();
+    }
+
+    @Test
+    void laterWritesAreCoalescedIntoOneFinalFile() throws InterruptedException {
+        fileConfig.setFlushDelay(300L);
+        Path file = dir.resolve("task.json");
+        for (int i = 0; i < 50; i++) {
+            JsonUtilData.objectToJsonFileLater(file.toString(), task(i, "0"));
+            // 第一次调用安排了一次写入,之后只替换待写入内容
+            assertTrue(isScheduled());
+        }
+        assertFalse(Files.exists(file));
+        assertEquals(1, pending().size());
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!Files.exists(file) && System.nanoTime() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(20);
+        }
+        assertTrue(Files.exists(file));
+        assertEquals(Long.valueOf(49L), read(file).getSysJobs().get(0).getJobId());
+        assertTrue(pending().isEmpty());
+        assertFalse(isScheduled());
+        assertFalse(Files.exists(Paths.get(file + ".tmp")));
+    }
+
+    @Test
+    void flushAllWritesPendingImmediately() {
+        fileConfig.setFlushDelay(60000L);
+        Path task = dir.resolve("task.json");
+        Path relation = dir.resolve("relation.json");
+        JsonUtilData.objectToJsonFileLater(task.toString(), task(1L, "0"));
+        JsonUtilData.objectToJsonFileLater(task.toString(), task(1L, "1"));
+        JsonUtilData.objectToJsonFileLater(relation.toString(), task(2L, "0"));
+        assertFalse(Files.exists(task));
+        assertFalse(Files.exists(relation));
+
+        JsonUtilData.flushAll();
+        assertEquals("1", read(task).getSysJobs().get(0).getStatus());
+        assertEquals(Long.valueOf(2L), read(relation).getSysJobs().get(0).getJobId());
+        assertTrue(pending().isEmpty());
+        // 计划标记复位,之后的延迟写入会重新安排
+        assertFalse(isScheduled());
+    }
+
+    @Test
+    void immediateWriteDropsOlderPendingState() {
+        fileConfig.setFlushDelay(60000L);
+        Path file = dir.resolve("task.json");
+        JsonUtilData.objectToJsonFileLater(file.toString(), task(1L, "0"));
+        assertTrue(JsonUtilData.objectToJsonFile(file.toString(), task(1L, "1")));
+        JsonUtilData.flushAll();
+        assertEquals("1", read(file).getSysJobs().get(0).getStatus());
+    }
+
+    @Test
+    void failedWriteKeepsPreviousFile() throws IOException {
+        Path file = dir.resolve("task.json");
+        assertTrue(JsonUtilData.objectToJsonFile(file.toString(), task(1L, "0")));
+        Path blocker = Paths.get(file + ".tmp");
+        Files.createDirectory(blocker);
+        assertFalse(JsonUtilData.objectToJsonFile(file.toString(), task(1L, "1")));
+        assertEquals("0", read(file).getSysJobs().get(0).getStatus());
+        Files.delete(blocker);
+        assertTrue(JsonUtilData.objectToJsonFile(file.toString(), task(1L, "1")));
+        assertEquals("1", read(file).getSysJobs().get(0).getStatus());
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) Huawei Technologies Co., Ltd. 2012-2022. All rights reserved.
+ */
+
+package org.opengauss.monitor.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+import org.junit.jupiter.api.Test;
+
+/**
+ * 手写的数值扫描与原先ISNUM/KEXUE两个正则的判断结果一致
+ *
+ * @author liu
+ * @since 2022-10-01
+ */
+class NumericUtilTest {
+    /**
+     * 原MeterServiceImpl/SysJobServiceImpl中的ISNUM
+     */
+    private static final Pattern ISNUM = Pattern.compile("^(\\-|\\+)?\\d+(\\.\\d+)?$");
+
+    /**
+     * 原MeterServiceImpl/SysJobServiceImpl中的KEXUE
+     */
+    private static final Pattern KEXUE = Pattern.compile("^[+-]?\\d+\\.?\\d*[Ee][+-]?\\d+$");
+
+    /**
+     * 覆盖数字、符号、小数点、指数和几个非法字符,包括非ASCII数字
+     */
+    private static final char[] ALPHABET = {'0', '7', '+', '-', '.', 'e', 'E', ' ', 'x', '٣'};
+
+    private static final int MAX_LENGTH = 6;
+
+    private static boolean oldIsNumeric(String text) {
+        return ISNUM.matcher(text).matches() || KEXUE.matcher(text).matches();
+    }
+
+    @Test
+    void scannerAcceptsExactlyWhatOldRegexesAccepted() {
+        int checked = 0;
+        char[] buffer = new char[MAX_LENGTH];
+        for (int length = 0; length <= MAX_LENGTH; length++) {
+            int total = (int) Math.pow(ALPHABET.length, length);
+            for (int n = 0; n < total; n++) {
+                int rest = n;
+                for (int i = 0; i < length; i++) {
+                    buffer[i] = ALPHABET[rest % ALPHABET.length];
+                    rest /= ALPHABET.length;
+                }
+                String text = new String(buffer, 0, length);
+                assertEquals(oldIsNumeric(text), NumericUtil.isNumeric(text), "\"" + text + "\"");
+                checked++;
+            }
+        }
+        assertEquals(1111111, checked);
+    }
+
+    @Test
+    void scannerMatchesOldRegexesOnLongerValues() {
+        List<String> values = Arrays.asList("12345678901234567890", "-0.000001", "+3.14159265358979",
+                "1.7976931348623157E308", "4.9E-324", "1e", "1e+", "1.e5", "1.5e10", "1.5e1.0", ".5", "5.",
+                "--1", "+-1", "1_000", "0x1F", "NaN", "Infinity", "-Infinity", " 1", "1 ", "", "default");
+        for (String value : values) {
+            assertEquals(oldIsNumeric(value), NumericUtil.isNumeric(value), value);
+        }
+    }
+
+    @Test
+    void boxedValuesMatchOldRegexesOnToString() {
+        List<Object> values = Arrays.asList(0, -42, Long.MAX_VALUE, (short) 7, (byte) -1,
+                new BigDecimal("123.456"), new BigDecimal("-0.5"), new BigDecimal("1E+5"), new BigDecimal("1E-7"),
+                new BigInteger("123456789012345678901234567890"), 1.0, -2.5, 1e20, 1e-20, Double.MIN_VALUE,
+                Double.MAX_VALUE, 3.5f, Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY,
+                Float.NaN, Float.NEGATIVE_INFINITY, "42", "4.2e1", "abc", Boolean.TRUE);
+        for (Object value : values) {
+            assertEquals(oldIsNumeric(value.toString()), NumericUtil.isNumeric(value),
+                    value.getClass().getSimpleName() + " " + value);
+        }
+    }
+
+    @Test
+    void toDoubleMatchesBigDecimalRoundTrip() {
+        List<Object> values = Arrays.asList(42, -7L, new BigDecimal("0.1"), new BigDecimal("1E+5"),
+                new BigInteger("123456789012345678901234567890"), 2.5, "0.30000000000000004", "-1.5e-3",
+                "12345678901234567890", "1e400", "-1e400");
+        for (Object value : values) {
+            double old = Double.valueOf(new BigDecimal(value.toString()).toPlainString());
+            assertEquals(old, NumericUtil.toDouble(value), value.toString());
+        }
+    }
+}
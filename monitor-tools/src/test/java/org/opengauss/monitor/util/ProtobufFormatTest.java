@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) Huawei Technologies Co., Ltd. 2012-2022. All rights reserved.
+ */
+
+package org.opengauss.monitor.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import io.prometheus.client.Collector;
+import io.prometheus.client.Collector.MetricFamilySamples;
+import io.prometheus.client.Collector.MetricFamilySamples.Sample;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/**
+ * protobuf输出格式的字段编码
+ *
+ * @author liu
+ * @since 2022-10-01
+ */
+class ProtobufFormatTest {
+    private static final int TYPE_COUNTER = 0;
+
+    private static final int TYPE_GAUGE = 1;
+
+    private static final int TYPE_SUMMARY = 2;
+
+    private static final int TYPE_HISTOGRAM = 4;
+
+    @Test
+    void writerEncodesFieldsLikeProtobuf() {
+        ProtobufWriter inner = new ProtobufWriter(4);
+        inner.writeString(1, "名称");
+        ProtobufWriter writer = new ProtobufWriter(4);
+        writer.writeVarint(1, 300);
+        writer.writeVarint(2, -1L);
+        writer.writeDouble(3, 1.5);
+        writer.writeMessage(4, inner);
+        byte[] bytes = writer.toByteArray();
+        // 300 = 0xAC 0x02
+        assertEquals(0x08, bytes[0]);
+        assertEquals((byte) 0xAC, bytes[1]);
+        assertEquals(0x02, bytes[2]);
+        ProtobufReader reader = ProtobufReader.parse(bytes);
+        assertEquals(300, reader.varint(1));
+        assertEquals(-1L, reader.varint(2));
+        assertEquals(1.5, reader.getDouble(3));
+        assertEquals("名称", reader.message(4).string(1));
+    }
+
+    @Test
+    void gaugeAndCounter() {
+        List<MetricFamilySamples> families = Arrays.asList(
+                new MetricFamilySamples("size", Collector.Type.GAUGE, "table size", Collections.singletonList(
+                        new Sample("size", Arrays.asList("table", "db"), Arrays.asList("t1", "postgres"), 8192.0,
+                                1000L))),
+                new MetricFamilySamples("calls", Collector.Type.COUNTER, "calls", Arrays.asList(
+                        new Sample("calls_total", Collections.emptyList(), Collections.emptyList(), 7),
+                        new Sample("calls_created", Collections.emptyList(), Collections.emptyList(), 1.0E9))));
+        List<ProtobufReader> decoded = ProtobufReader.parseDelimited(ProtobufFormat.write(families));
+        assertEquals(2, decoded.size());
+
+        ProtobufReader gauge = decoded.get(0);
+        assertEquals("size", gauge.string(1));
+        assertEquals("table size", gauge.string(2));
+        assertEquals(TYPE_GAUGE, gauge.varint(3));
+        ProtobufReader metric = gauge.message(4);
+        List<ProtobufReader> labels = metric.messages(1);
+        assertEquals("table", labels.get(0).string(1));
+        assertEquals("t1", labels.get(0).string(2));
+        assertEquals("db", labels.get(1).string(1));
+        assertEquals("postgres", labels.get(1).string(2));
+        assertEquals(8192.0, metric.message(2).getDouble(1));
+        assertEquals(1000L, metric.varint(6));
+
+        ProtobufReader counter = decoded.get(1);
+        assertEquals("calls_total", counter.string(1));
+        assertEquals(TYPE_COUNTER, counter.varint(3));
+        assertEquals(1, counter.messages(4).size());
+        assertEquals(7.0, counter.message(4).message(3).getDouble(1));
+        assertFalse(counter.message(4).has(6));
+    }
+
+    @Test
+    void summaryMergesQuantiles() {
+        List<String> names = Arrays.asList("job", "quantile");
+        MetricFamilySamples family = new MetricFamilySamples("latency", Collector.Type.SUMMARY, "latency",
+                Arrays.asList(new Sample("latency", names, Arrays.asList("a", "0.5"), 2.0),
+                        new Sample("latency", names, Arrays.asList("a", "0.99"), 9.0),
+                        new Sample("latency_count", Collections.singletonList("job"), Collections.singletonList("a"),
+                                10),
+                        new Sample("latency_sum", Collections.singletonList("job"), Collections.singletonList("a"),
+                                31.5)));
+        ProtobufReader decoded = ProtobufReader.parseDelimited(
+                ProtobufFormat.write(Collections.singletonList(family))).get(0);
+        assertEquals(TYPE_SUMMARY, decoded.varint(3));
+        List<ProtobufReader> metrics = decoded.messages(4);
+        assertEquals(1, metrics.size());
+        assertEquals(1, metrics.get(0).messages(1).size());
+        ProtobufReader summary = metrics.get(0).message(4);
+        assertEquals(10, summary.varint(1));
+        assertEquals(31.5, summary.getDouble(2));
+        List<ProtobufReader> quantiles = summary.messages(3);
+        assertEquals(0.5, quantiles.get(0).getDouble(1));
+        assertEquals(2.0, quantiles.get(0).getDouble(2));
+        assertEquals(0.99, quantiles.get(1).getDouble(1));
+        assertEquals(9.0, quantiles.get(1).getDouble(2));
+    }
+
+    @Test
+    void histogramBuckets() {
+        List<String> names = Collections.singletonList("le");
+        MetricFamilySamples family = new MetricFamilySamples("wait", Collector.Type.HISTOGRAM, "wait",
+                Arrays.asList(new Sample("wait_bucket", names, Collections.singletonList("0.1"), 3),
+                        new Sample("wait_bucket", names, Collections.singletonList("+Inf"), 5),
+                        new Sample("wait_count", Collections.emptyList(), Collections.emptyList(), 5),
+                        new Sample("wait_sum", Collections.emptyList(), Collections.emptyList(), 1.25)));
+        ProtobufReader decoded = ProtobufReader.parseDelimited(
+                ProtobufFormat.write(Collections.singletonList(family))).get(0);
+        assertEquals(TYPE_HISTOGRAM, decoded.varint(3));
+        ProtobufReader histogram = decoded.message(4).message(7);
+        assertEquals(5, histogram.varint(1));
+        assertEquals(1.25, histogram.getDouble(2));
+        List<ProtobufReader> buckets = histogram.messages(3);
+        assertEquals(2, buckets.size());
+        assertEquals(3, buckets.get(0).varint(1));
+        assertEquals(0.1, buckets.get(0).getDouble(2));
+        assertEquals(5, buckets.get(1).varint(1));
+        assertEquals(Double.POSITIVE_INFINITY, buckets.get(1).getDouble(2));
+    }
+}
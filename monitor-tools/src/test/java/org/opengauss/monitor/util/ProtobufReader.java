@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) Huawei Technologies Co., Ltd. 2012-2022. All rights reserved.
+ */
+
+package org.opengauss.monitor.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * 测试用的protobuf解码器,把消息解析为字段列表,用于校验ProtobufWriter的输出
+ *
+ * @author liu
+ * @since 2022-10-01
+ */
+public class ProtobufReader {
+    private final List<Field> fields = new ArrayList<>();
+
+    private ProtobufReader(byte[] bytes, int offset, int length) {
+        int[] position = {offset};
+        int end = offset + length;
+        while (position[0] < end) {
+            long tag = readVarint(bytes, position);
+            int number = (int) (tag >>> 3);
+            int wireType = (int) (tag & 7);
+            switch (wireType) {
+                case 0:
+                    fields.add(new Field(number, readVarint(bytes, position), null));
+                    break;
+                case 1:
+                    long bits = 0;
+                    for (int i = 0; i < 8; i++) {
+                        bits |= (bytes[position[0]++] & 0xFFL) << (i * 8);
+                    }
+                    fields.add(new Field(number, bits, null));
+                    break;
+                case 2:
+                    int size = (int) readVarint(bytes, position);
+                    fields.add(new Field(number, 0, Arrays.copyOfRange(bytes, position[0], position[0] + size)));
+                    position[0] += size;
+                    break;
+                default:
+                    throw new IllegalArgumentException("unsupported wire type " + wireType);
+            }
+        }
+    }
+
+    /**
+     * 解析一个消息
+     *
+     * @param bytes bytes
+     * @return ProtobufReader
+     */
+    public static ProtobufReader parse(byte[] bytes) {
+        return new ProtobufReader(bytes, 0, bytes.length);
+    }
+
+    /**
+     * 解析长度前缀的消息序列
+     *
+     * @param bytes bytes
+     * @return 各消息
+     */
+    public static List<ProtobufReader> parseDelimited(byte[] bytes) {
+        List<ProtobufReader> result = new ArrayList<>();
+        int[] position = {0};
+        while (position[0] < bytes.length) {
+            int size = (int) readVarint(bytes, position);
+            result.add(new ProtobufReader(bytes, position[0], size));
+            position[0] += size;
+        }
+        return result;
+    }
+
+    private static long readVarint(byte[] bytes, int[] position) {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte current = bytes[position[0]++];
+            value |= (long) (current & 0x7F) << shift;
+            if ((current & 0x80) == 0) {
+                return value;
+            }
+        }
+    }
+
+    private List<Field> get(int number) {
+        return fields.stream().filter(field -> field.number == number).collect(Collectors.toList());
+    }
+
+    /**
+     * varint字段
+     *
+     * @param number 字段号
+     * @return long
+     */
+    public long varint(int number) {
+        return get(number).get(0).value;
+    }
+
+    /**
+     * double字段
+     *
+     * @param number 字段号
+     * @return double
+     */
+    public double getDouble(int number) {
+        return Double.longBitsToDouble(get(number).get(0).value);
+    }
+
+    /**
+     * string字段
+     *
+     * @param number 字段号
+     * @return String
+     */
+    public String string(int number) {
+        return new String(get(number).get(0).bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 是否包含字段
+     *
+     * @param number 字段号
+     * @return boolean
+     */
+    public boolean has(int number) {
+        return !get(number).isEmpty();
+    }
+
+    /**
+     * 重复的嵌套消息字段
+     *
+     * @param number 字段号
+     * @return List<ProtobufReader>
+     */
+    public List<ProtobufReader> messages(int number) {
+        return get(number).stream().map(field -> parse(field.bytes)).collect(Collectors.toList());
+    }
+
+    /**
+     * 嵌套消息字段
+     *
+     * @param number 字段号
+     * @return ProtobufReader
+     */
+    public ProtobufReader message(int number) {
+        return messages(number).get(0);
+    }
+
+    /**
+     * 一个字段
+     */
+    private static final class Field {
+        private final int number;
+
+        private final long value;
+
+        private final byte[] bytes;
+
+        private Field(int number, long value, byte[] bytes) {
+            this.number = number;
+            this.value = value;
+            this.bytes = bytes;
+        }
+    }
+}
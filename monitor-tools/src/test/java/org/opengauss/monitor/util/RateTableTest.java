@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) Huawei Technologies Co., Ltd. 2012-2022. All rights reserved.
+ */
+
+package org.opengauss.monitor.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * 计数器转速率:首次、重置、时间不前进、空闲过期、扩容和清理后保留活跃序列、键0与键1互不影响
+ *
+ * @author liu
+ * @since 2022-10-01
+ */
+class RateTableTest {
+    private static final long IDLE = 90000L;
+
+    private static final long BASE = 1_700_000_000_000L;
+
+    private final RateTable table = new RateTable();
+
+    private int size() {
+        int size = 0;
+        for (Object stripe : (Object[]) ReflectionTestUtils.getField(table, "stripes")) {
+            size += (int) ReflectionTestUtils.getField(stripe, "size");
+            if ((boolean) ReflectionTestUtils.getField(stripe, "hasZero")) {
+                size++;
+            }
+        }
+        return size;
+    }
+
+    @Test
+    void firstSampleIsNaN() {
+        assertTrue(Double.isNaN(table.rate(42L, 100, BASE, IDLE)));
+        assertEquals(1.0, table.rate(42L, 160, BASE + 60000, IDLE));
+    }
+
+    @Test
+    void counterResetStartsFromZero() {
+        table.rate(42L, 1000, BASE, IDLE);
+        // 实例重启后计数器从0开始,10秒内增长到30
+        assertEquals(3.0, table.rate(42L, 30, BASE + 10000, IDLE));
+        assertEquals(7.0, table.rate(42L, 100, BASE + 20000, IDLE));
+    }
+
+    @Test
+    void timeNotAdvancingKeepsPreviousSample() {
+        table.rate(42L, 100, BASE, IDLE);
+        assertTrue(Double.isNaN(table.rate(42L, 500, BASE, IDLE)));
+        assertTrue(Double.isNaN(table.rate(42L, 500, BASE - 1000, IDLE)));
+        // 上面两次没有覆盖上一次的值和时间
+        assertEquals(2.0, table.rate(42L, 120, BASE + 10000, IDLE));
+    }
+
+    @Test
+    void sampleBeyondIdleRestarts() {
+        table.rate(42L, 100, BASE, IDLE);
+        assertTrue(Double.isNaN(table.rate(42L, 200, BASE + IDLE + 1, IDLE)));
+        // 过期的样本被替换,之后按新样本计算
+        assertEquals(1.0, table.rate(42L, 210, BASE + IDLE + 10001, IDLE));
+        // 恰好idleMillis仍然有效
+        table.rate(43L, 100, BASE, IDLE);
+        assertEquals(0.0, table.rate(43L, 100, BASE + IDLE, IDLE));
+    }
+
+    @Test
+    void nanValuesDoNotProduceRates() {
+        table.rate(42L, Double.NaN, BASE, IDLE);
+        assertTrue(Double.isNaN(table.rate(42L, 10, BASE + 1000, IDLE)));
+        assertEquals(5.0, table.rate(42L, 15, BASE + 2000, IDLE));
+    }
+
+    @Test
+    void growthKeepsAllSeries() {
+        int count = 5000;
+        for (int i = 0; i < count; i++) {
+            table.rate(RateTable.hash("job", i), i, BASE, IDLE);
+        }
+        assertEquals(count, size());
+        for (int i = 0; i < count; i++) {
+            assertEquals(2.0, table.rate(RateTable.hash("job", i), i + 20, BASE + 10000, IDLE), "series " + i);
+        }
+    }
+
+    @Test
+    void sweepDropsIdleAndKeepsLiveSeries() {
+        int count = 2000;
+        for (int i = 0; i < count; i++) {
+            table.rate(RateTable.hash("idle", i), i, BASE, IDLE);
+            table.rate(RateTable.hash("live", i), i, BASE, IDLE);
+        }
+        for (int i = 0; i < count; i++) {
+            table.rate(RateTable.hash("live", i), i + 50, BASE + 50000, IDLE);
+        }
+        assertEquals(count * 2, size());
+        // 到下一次清理时间,idle序列早于cutoff=BASE+30000被删除,表缩小
+        long now = BASE + 120000;
+        for (int i = 0; i < count; i++) {
+            assertEquals(1.0, table.rate(RateTable.hash("live", i), i + 120, now, IDLE), "series " + i);
+        }
+        assertEquals(count, size());
+        for (int i = 0; i < count; i++) {
+            assertTrue(Double.isNaN(table.rate(RateTable.hash("idle", i), i, now, IDLE)));
+        }
+        assertEquals(count * 2, size());
+    }
+
+    @Test
+    void keyZeroAndKeyOneAreDistinct() {
+        assertTrue(Double.isNaN(table.rate(0L, 10, BASE, IDLE)));
+        // 键1是新序列,不能读到键0的值
+        assertTrue(Double.isNaN(table.rate(1L, 1000, BASE, IDLE)));
+        assertEquals(1.0, table.rate(0L, 20, BASE + 10000, IDLE));
+        assertEquals(100.0, table.rate(1L, 2000, BASE + 10000, IDLE));
+        // 扩容后键0仍然保留
+        for (int i = 2; i < 3000; i++) {
+            table.rate(i, 0, BASE + 10000, IDLE);
+        }
+        assertEquals(2.0, table.rate(0L, 40, BASE + 20000, IDLE));
+        assertEquals(3000, size());
+    }
+
+    @Test
+    void keyZeroExpiresOnSweep() {
+        table.rate(0L, 10, BASE, IDLE);
+        table.rate(16L, 10, BASE + 200000, IDLE);
+        // 与键0同一分段的调用触发清理
+        assertEquals(1, size());
+        assertTrue(Double.isNaN(table.rate(0L, 20, BASE + 200000, IDLE)));
+    }
+
+    @Test
+    void hashSeparatesParts() {
+        assertNotEquals(RateTable.hash("ab", "c"), RateTable.hash("a", "bc"));
+        assertEquals(RateTable.hash(1L, 2L, "size", "t1", "pg"),
+                RateTable.hash(1L, 2L, "size", new String[] {"t1", "pg"}));
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) Huawei Technologies Co., Ltd. 2012-2022. All rights reserved.
+ */
+
+package org.opengauss.monitor.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/**
+ * 单个精度预聚合的累加、读取与过期
+ *
+ * @author liu
+ * @since 2022-10-01
+ */
+class RollupTest {
+    private static final long MINUTE = 60000L;
+
+    private static final long BASE = 1665000000000L;
+
+    private static List<double[]> read(Rollup rollup, long start, long end) {
+        List<double[]> buckets = new ArrayList<>();
+        rollup.read(start, end, (time, min, max, sum, last, count) ->
+                buckets.add(new double[] {time, min, max, sum, last, count}));
+        return buckets;
+    }
+
+    @Test
+    void aggregatesEachBucket() {
+        Rollup rollup = new Rollup(MINUTE);
+        rollup.add(BASE, 3, 4);
+        rollup.add(BASE + 15000L, 1, 4);
+        rollup.add(BASE + 45000L, 5, 4);
+        rollup.add(BASE + MINUTE, 7, 4);
+        List<double[]> buckets = read(rollup, BASE, BASE + MINUTE);
+        assertEquals(2, buckets.size());
+        // 已关闭的桶来自压缩块
+        assertEquals(BASE, (long) buckets.get(0)[0]);
+        assertEquals(1.0, buckets.get(0)[1]);
+        assertEquals(5.0, buckets.get(0)[2]);
+        assertEquals(9.0, buckets.get(0)[3]);
+        assertEquals(5.0, buckets.get(0)[4]);
+        assertEquals(3.0, buckets.get(0)[5]);
+        // 当前桶尚未关闭,直接读取
+        assertEquals(BASE + MINUTE, (long) buckets.get(1)[0]);
+        assertEquals(7.0, buckets.get(1)[4]);
+        assertEquals(1.0, buckets.get(1)[5]);
+        assertEquals(BASE, rollup.getFirstTime());
+    }
+
+    @Test
+    void nanOnlyUpdatesLast() {
+        Rollup rollup = new Rollup(MINUTE);
+        rollup.add(BASE, Double.NaN, 4);
+        rollup.add(BASE + 10000L, 2, 4);
+        rollup.add(BASE + 20000L, Double.NaN, 4);
+        rollup.add(BASE + MINUTE, Double.NaN, 4);
+        rollup.add(BASE + 2 * MINUTE, 1, 4);
+        List<double[]> buckets = read(rollup, BASE, BASE + 2 * MINUTE);
+        assertEquals(2.0, buckets.get(0)[1]);
+        assertEquals(2.0, buckets.get(0)[2]);
+        assertEquals(2.0, buckets.get(0)[3]);
+        assertTrue(Double.isNaN(buckets.get(0)[4]));
+        assertEquals(1.0, buckets.get(0)[5]);
+        // 只有NaN的桶min/max为NaN,count为0
+        assertTrue(Double.isNaN(buckets.get(1)[1]));
+        assertTrue(Double.isNaN(buckets.get(1)[2]));
+        assertEquals(0.0, buckets.get(1)[3]);
+        assertEquals(0.0, buckets.get(1)[5]);
+    }
+
+    @Test
+    void readsAcrossChunksWithinRange() {
+        Rollup rollup = new Rollup(MINUTE);
+        for (int i = 0; i < 50; i++) {
+            rollup.add(BASE + i * MINUTE, i, 4);
+        }
+        List<double[]> buckets = read(rollup, BASE + 10 * MINUTE + 1, BASE + 20 * MINUTE);
+        // start向下对齐到所在的桶
+        assertEquals(11, buckets.size());
+        for (int i = 0; i < buckets.size(); i++) {
+            assertEquals(BASE + (10 + i) * MINUTE, (long) buckets.get(i)[0]);
+            assertEquals(10.0 + i, buckets.get(i)[4]);
+        }
+    }
+
+    @Test
+    void trimDropsWholeChunks() {
+        Rollup rollup = new Rollup(MINUTE);
+        for (int i = 0; i < 20; i++) {
+            rollup.add(BASE + i * MINUTE, i, 4);
+        }
+        long before = rollup.getBytes();
+        long delta = rollup.trim(BASE + 9 * MINUTE);
+        assertTrue(delta < 0);
+        assertEquals(before + delta, rollup.getBytes());
+        // 4个桶一块,最后一个点早于cutoff的块才删除
+        assertEquals(BASE + 8 * MINUTE, rollup.getFirstTime());
+        rollup.trim(BASE + 30 * MINUTE);
+        assertTrue(rollup.isEmpty());
+        assertEquals(Long.MAX_VALUE, rollup.getFirstTime());
+        assertFalse(read(rollup, BASE, BASE + 30 * MINUTE).size() > 0);
+    }
+}
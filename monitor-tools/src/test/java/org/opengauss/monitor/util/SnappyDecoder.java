@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) Huawei Technologies Co., Ltd. 2012-2022. All rights reserved.
+ */
+
+package org.opengauss.monitor.util;
+
+/**
+ * 测试用的snappy块格式解压,支持全部字面量与复制标记,用于校验SnappyUtil的输出
+ *
+ * @author liu
+ * @since 2022-10-01
+ */
+public class SnappyDecoder {
+    /**
+     * 解压
+     *
+     * @param input input
+     * @return byte[]
+     */
+    public static byte[] decompress(byte[] input) {
+        int[] position = {0};
+        int length = (int) readVarint(input, position);
+        byte[] output = new byte[length];
+        int size = 0;
+        int index = position[0];
+        while (index < input.length) {
+            int tag = input[index++] & 0xFF;
+            int type = tag & 3;
+            if (type == 0) {
+                int literal = tag >>> 2;
+                if (literal >= 60) {
+                    int bytes = literal - 59;
+                    literal = 0;
+                    for (int i = 0; i < bytes; i++) {
+                        literal |= (input[index++] & 0xFF) << (i * 8);
+                    }
+                }
+                literal++;
+                System.arraycopy(input, index, output, size, literal);
+                index += literal;
+                size += literal;
+                continue;
+            }
+            int copy;
+            int offset;
+            if (type == 1) {
+                copy = ((tag >>> 2) & 7) + 4;
+                offset = (tag >>> 5) << 8 | input[index++] & 0xFF;
+            } else if (type == 2) {
+                copy = (tag >>> 2) + 1;
+                offset = input[index] & 0xFF | (input[index + 1] & 0xFF) << 8;
+                index += 2;
+            } else {
+                copy = (tag >>> 2) + 1;
+                offset = 0;
+                for (int i = 0; i < 4; i++) {
+                    offset |= (input[index++] & 0xFF) << (i * 8);
+                }
+            }
+            if (offset <= 0 || offset > size) {
+                throw new IllegalArgumentException("bad copy offset " + offset + " at " + size);
+            }
+            for (int i = 0; i < copy; i++) {
+                output[size] = output[size - offset];
+                size++;
+            }
+        }
+        if (size != length) {
+            throw new IllegalArgumentException("length mismatch " + size + " != " + length);
+        }
+        return output;
+    }
+
+    private static long readVarint(byte[] bytes, int[] position) {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte current = bytes[position[0]++];
+            value |= (long) (current & 0x7F) << shift;
+            if ((current & 0x80) == 0) {
+                return value;
+            }
+        }
+    }
+}
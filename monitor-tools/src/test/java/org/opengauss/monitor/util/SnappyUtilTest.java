@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) Huawei Technologies Co., Ltd. 2012-2022. All rights reserved.
+ */
+
+package org.opengauss.monitor.util;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * snappy块格式压缩的往返校验
+ *
+ * @author liu
+ * @since 2022-10-01
+ */
+class SnappyUtilTest {
+    private static void assertRoundTrip(byte[] input) {
+        assertArrayEquals(input, SnappyDecoder.decompress(SnappyUtil.compress(input)));
+    }
+
+    @Test
+    void emptyAndShortInputs() {
+        assertRoundTrip(new byte[0]);
+        assertRoundTrip(new byte[] {1});
+        assertRoundTrip(new byte[] {1, 2, 3});
+        assertRoundTrip("abcd".getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void repetitiveInputIsCompressed() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            builder.append("pg_stat_activity_count{datname=\"postgres\",state=\"idle\"} ").append(i % 7).append('\n');
+        }
+        byte[] input = builder.toString().getBytes(StandardCharsets.UTF_8);
+        byte[] compressed = SnappyUtil.compress(input);
+        assertTrue(compressed.length < input.length / 4, "compressed " + compressed.length);
+        assertArrayEquals(input, SnappyDecoder.decompress(compressed));
+    }
+
+    @Test
+    void longRunsUseChainedCopies() {
+        byte[] input = new byte[10000];
+        Arrays.fill(input, (byte) 'x');
+        assertRoundTrip(input);
+    }
+
+    @Test
+    void longLiteralsAndBlockBoundaries() {
+        Random random = new Random(7);
+        for (int length : new int[] {59, 60, 61, 255, 256, 257, 65535, 65536, 65537, 200000}) {
+            byte[] input = new byte[length];
+            random.nextBytes(input);
+            assertRoundTrip(input);
+        }
+    }
+
+    @Test
+    void mixedContentAcrossBlocks() {
+        Random random = new Random(11);
+        byte[] input = new byte[300000];
+        for (int i = 0; i < input.length; i++) {
+            input[i] = (byte) (random.nextInt(10) < 7 ? 'a' + (i % 13) : random.nextInt(256));
+        }
+        assertRoundTrip(input);
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) Huawei Technologies Co., Ltd. 2012-2022. All rights reserved.
+ */
+
+package org.opengauss.monitor.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * 压缩样本块的编码解码往返校验
+ *
+ * @author liu
+ * @since 2022-10-01
+ */
+class XorChunkTest {
+    private static void assertRoundTrip(long[] times, double[] values) {
+        XorChunk chunk = new XorChunk();
+        for (int i = 0; i < times.length; i++) {
+            chunk.append(times[i], values[i]);
+        }
+        assertDecoded(chunk, times, values, times.length);
+        chunk.seal();
+        assertDecoded(chunk, times, values, times.length);
+    }
+
+    private static void assertDecoded(XorChunk chunk, long[] times, double[] values, int count) {
+        assertEquals(count, chunk.getCount());
+        if (count > 0) {
+            assertEquals(times[0], chunk.getFirstTime());
+            assertEquals(times[count - 1], chunk.getLastTime());
+        }
+        XorChunk.Reader reader = chunk.reader();
+        for (int i = 0; i < count; i++) {
+            assertTrue(reader.next(), "missing sample " + i);
+            assertEquals(times[i], reader.getTime(), "time " + i);
+            // 按位比较,区分NaN、-0.0与0.0
+            assertEquals(Double.doubleToRawLongBits(values[i]), Double.doubleToRawLongBits(reader.getValue()),
+                    "value " + i);
+        }
+        assertFalse(reader.next());
+    }
+
+    @Test
+    void emptyAndSingleSample() {
+        assertRoundTrip(new long[0], new double[0]);
+        assertRoundTrip(new long[] {1665000000000L}, new double[] {42.0});
+    }
+
+    @Test
+    void specialValues() {
+        double[] values = {Double.NaN, 1.0, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NaN,
+            -0.0, 0.0, Double.MIN_VALUE, Double.MAX_VALUE, -Double.MAX_VALUE, Double.NaN, Double.NaN};
+        long[] times = new long[values.length];
+        for (int i = 0; i < times.length; i++) {
+            times[i] = 1665000000000L + i * 15000L;
+        }
+        assertRoundTrip(times, values);
+    }
+
+    @Test
+    void repeatedValuesUseOneBitPerSample() {
+        int count = 120;
+        long[] times = new long[count];
+        double[] values = new double[count];
+        for (int i = 0; i < count; i++) {
+            times[i] = 1665000000000L + i * 60000L;
+            values[i] = 8192.0;
+        }
+        XorChunk chunk = new XorChunk();
+        for (int i = 0; i < count; i++) {
+            chunk.append(times[i], values[i]);
+        }
+        chunk.seal();
+        // 首点16字节,其后每点时间和数值各1位
+        assertTrue(chunk.getBytes() <= 16 + (2 * (count - 1) + 7) / 8 + 3, "bytes " + chunk.getBytes());
+        assertRoundTrip(times, values);
+    }
+
+    @Test
+    void timestampGapsCoverEveryBucket() {
+        // 二阶差分依次落在0、14位、17位、20位和64位的桶,并包含负值与各桶的边界
+        long[] deltas = {15000L, 15000L, 15000L + 8191L, 15000L - 8192L, 15000L + 8192L, 15000L + 65535L,
+            15000L - 65536L, 15000L + 65536L, 15000L + 524287L, 15000L - 524288L, 15000L + 524288L,
+            86400000L * 30, 1L, 1L, 15000L};
+        long[] times = new long[deltas.length + 1];
+        double[] values = new double[times.length];
+        times[0] = 1665000000000L;
+        for (int i = 0; i < deltas.length; i++) {
+            times[i + 1] = times[i] + deltas[i];
+            values[i + 1] = i * 1.5;
+        }
+        assertRoundTrip(times, values);
+    }
+
+    @Test
+    void irregularSeriesRoundTrip() {
+        Random random = new Random(3);
+        int count = 1000;
+        long[] times = new long[count];
+        double[] values = new double[count];
+        long time = 1665000000000L;
+        double value = 100;
+        for (int i = 0; i < count; i++) {
+            time += random.nextInt(10) == 0 ? random.nextInt(1 << 22) : 15000L + random.nextInt(100) - 50;
+            value = random.nextInt(5) == 0 ? value : random.nextBoolean() ? value + random.nextGaussian()
+                    : random.nextLong();
+            times[i] = time;
+            values[i] = value;
+        }
+        assertRoundTrip(times, values);
+    }
+
+    @Test
+    void readerSeesOnlySamplesBeforeCreation() {
+        XorChunk chunk = new XorChunk();
+        chunk.append(1000L, 1.0);
+        chunk.append(2000L, 2.0);
+        XorChunk.Reader reader = chunk.reader();
+        chunk.append(3000L, 3.0);
+        assertTrue(reader.next());
+        assertTrue(reader.next());
+        assertEquals(2.0, reader.getValue());
+        assertFalse(reader.next());
+    }
+
+    @Test
+    void chunkBoundaryKeepsSeriesContinuous() {
+        // HistoryStore每chunkPoints个点换一个新块,相邻块各自独立编码
+        int chunkPoints = 120;
+        int count = chunkPoints * 2 + 1;
+        long[] times = new long[count];
+        double[] values = new double[count];
+        for (int i = 0; i < count; i++) {
+            times[i] = 1665000000000L + i * 15000L;
+            values[i] = i % 10 == 0 ? Double.NaN : i * 0.25;
+        }
+        XorChunk[] chunks = new XorChunk[3];
+        for (int i = 0; i < count; i++) {
+            int index = i / chunkPoints;
+            if (chunks[index] == null) {
+                if (index > 0) {
+                    chunks[index - 1].seal();
+                }
+                chunks[index] = new XorChunk();
+            }
+            chunks[index].append(times[i], values[i]);
+        }
+        int position = 0;
+        for (XorChunk chunk : chunks) {
+            XorChunk.Reader reader = chunk.reader();
+            while (reader.next()) {
+                assertEquals(times[position], reader.getTime());
+                assertEquals(Double.doubleToRawLongBits(values[position]),
+                        Double.doubleToRawLongBits(reader.getValue()));
+                position++;
+            }
+        }
+        assertEquals(count, position);
+        assertEquals(chunkPoints, chunks[0].getCount());
+        assertEquals(1, chunks[2].getCount());
+        assertEquals(times[chunkPoints], chunks[1].getFirstTime());
+    }
+}
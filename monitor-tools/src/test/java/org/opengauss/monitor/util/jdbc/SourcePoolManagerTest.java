@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) Huawei Technologies Co., Ltd. 2012-2022. All rights reserved.
+ */
+
+package org.opengauss.monitor.util.jdbc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.alibaba.druid.pool.DruidDataSource;
+import org.opengauss.monitor.entity.SysConfig;
+import org.opengauss.monitor.util.Base64;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverPropertyInfo;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Logger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * 实例连接池:删除时关闭旧连接池,之后按修改后的地址和密码重新创建
+ *
+ * @author liu
+ * @since 2022-10-01
+ */
+class SourcePoolManagerTest {
+    private static final Long DATA_SOURCE_ID = 960001L;
+
+    /**
+     * 各连接池建立物理连接时使用的地址和密码
+     */
+    private static final List<String> CONNECTS = new CopyOnWriteArrayList<>();
+
+    private SysConfig sysConfig;
+
+    @BeforeEach
+    void setUp() {
+        CONNECTS.clear();
+        sysConfig = new SysConfig();
+        sysConfig.setDataSourceId(DATA_SOURCE_ID);
+        sysConfig.setConnectName("pg");
+        sysConfig.setDriver(RecordingDriver.class.getName());
+        sysConfig.setUrl("jdbc:recording://10.0.0.1:5432/postgres");
+        sysConfig.setUserName("monitor");
+        sysConfig.setPassword(Base64.encode("old-password"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        SourcePoolManager.removeSourcePool(DATA_SOURCE_ID);
+    }
+
+    private static DruidDataSource pool(JdbcTemplate template) {
+        return (DruidDataSource) template.getDataSource();
+    }
+
+    @Test
+    void templateIsReusedUntilRemoved() throws SQLException {
+        int count = SourcePoolManager.getPoolCount();
+        JdbcTemplate template = SourcePoolManager.getTemplate(sysConfig);
+        assertSame(template, SourcePoolManager.getTemplate(sysConfig));
+        assertEquals(count + 1, SourcePoolManager.getPoolCount());
+        pool(template).getConnection().close();
+        assertEquals("jdbc:recording://10.0.0.1:5432/postgres|monitor|old-password", CONNECTS.get(0));
+
+        // 未删除时修改配置不生效,仍使用常驻连接池
+        sysConfig.setUrl("jdbc:recording://10.0.0.2:5432/postgres");
+        assertSame(template, SourcePoolManager.getTemplate(sysConfig));
+    }
+
+    @Test
+    void removeClosesPoolAndNextTemplateUsesUpdatedConfig() throws SQLException {
+        JdbcTemplate old = SourcePoolManager.getTemplate(sysConfig);
+        pool(old).getConnection().close();
+        assertFalse(pool(old).isClosed());
+        int count = SourcePoolManager.getPoolCount();
+
+        SourcePoolManager.removeSourcePool(DATA_SOURCE_ID);
+        assertTrue(pool(old).isClosed());
+        assertEquals(count - 1, SourcePoolManager.getPoolCount());
+
+        sysConfig.setUrl("jdbc:recording://10.0.0.2:5432/postgres");
+        sysConfig.setPassword(Base64.encode("new-password"));
+        JdbcTemplate current = SourcePoolManager.getTemplate(sysConfig);
+        assertNotSame(old, current);
+        assertFalse(pool(current).isClosed());
+        assertEquals("jdbc:recording://10.0.0.2:5432/postgres", pool(current).getUrl());
+        CONNECTS.clear();
+        pool(current).getConnection().close();
+        assertEquals("jdbc:recording://10.0.0.2:5432/postgres|monitor|new-password", CONNECTS.get(0));
+    }
+
+    @Test
+    void removeUnknownOrNullIdIsIgnored() {
+        int count = SourcePoolManager.getPoolCount();
+        SourcePoolManager.removeSourcePool((Long) null);
+        SourcePoolManager.removeSourcePool(DATA_SOURCE_ID);
+        assertEquals(count, SourcePoolManager.getPoolCount());
+    }
+
+    /**
+     * 记录连接参数的驱动,返回的连接、语句和结果集只返回默认值
+     */
+    public static class RecordingDriver implements Driver {
+        @Override
+        public Connection connect(String url, Properties info) {
+            if (!acceptsURL(url)) {
+                return null;
+            }
+            CONNECTS.add(url + "|" + info.getProperty("user") + "|" + info.getProperty("password"));
+            return stub(Connection.class);
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <T> T stub(Class<T> type) {
+            return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type},
+                (proxy, method, args) -> {
+                    Class<?> result = method.getReturnType();
+                    if (result.isInterface() && result.getName().startsWith("java.sql.")) {
+                        return stub(result);
+                    }
+                    if (result == boolean.class) {
+                        // next/isValid/execute返回true,isClosed/isReadOnly等返回false
+                        return !method.getName().startsWith("is") || "isValid".equals(method.getName());
+                    }
+                    if (result == int.class) {
+                        return 0;
+                    }
+                    if (result == long.class) {
+                        return 0L;
+                    }
+                    if ("toString".equals(method.getName())) {
+                        return type.getSimpleName() + "@stub";
+                    }
+                    if ("hashCode".equals(method.getName())) {
+                        return System.identityHashCode(proxy);
+                    }
+                    if ("equals".equals(method.getName())) {
+                        return proxy == args[0];
+                    }
+                    return null;
+                });
+        }
+
+        @Override
+        public boolean acceptsURL(String url) {
+            return url != null && url.startsWith("jdbc:recording:");
+        }
+
+        @Override
+        public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) {
+            return new DriverPropertyInfo[0];
+        }
+
+        @Override
+        public int getMajorVersion() {
+            return 1;
+        }
+
+        @Override
+        public int getMinorVersion() {
+            return 0;
+        }
+
+        @Override
+        public boolean jdbcCompliant() {
+            return false;
+        }
+
+        @Override
+        public Logger getParentLogger() {
+            return Logger.getGlobal();
+        }
+    }
+}